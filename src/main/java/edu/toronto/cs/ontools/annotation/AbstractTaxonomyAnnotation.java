@@ -20,13 +20,18 @@
 package edu.toronto.cs.ontools.annotation;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
+import edu.toronto.cs.ontools.taxonomy.IdResolver;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+import edu.toronto.cs.ontools.taxonomy.TaxonomyDiff;
 import edu.toronto.cs.ontools.utils.graph.BGraph;
 
 public abstract class AbstractTaxonomyAnnotation extends BGraph<AnnotationTerm>
@@ -46,14 +51,97 @@ public abstract class AbstractTaxonomyAnnotation extends BGraph<AnnotationTerm>
 
 	public abstract int load(File source);
 
+	/**
+	 * Turns this (empty) annotation into a copy of another one, keeping the
+	 * taxonomy of this annotation.
+	 */
+	protected void copyFrom(AbstractTaxonomyAnnotation source) {
+		for (AnnotationTerm annTerm : source.getAnnotations()) {
+			AnnotationTerm copy = new AnnotationTerm(annTerm, this.taxonomy);
+			addNode(copy, ANNOTATION);
+			for (String id : annTerm.getNeighbors()) {
+				addConnection(copy, new AnnotationTerm(id));
+			}
+		}
+	}
+
 	public void propagateTaxonomyAnnotations() {
+		Set<String> unresolved = new TreeSet<String>();
 		for (AnnotationTerm t : this.getAnnotations()) {
-			propagateTaxonomyAnnotations(t);
+			t.propagateAnnotations(this, this.taxonomy, unresolved);
 		}
+		reportUnresolved(unresolved);
 	}
 
 	public void propagateTaxonomyAnnotations(AnnotationTerm annTerm) {
-		annTerm.propagateAnnotations(this, this.taxonomy);
+		Set<String> unresolved = new TreeSet<String>();
+		annTerm.propagateAnnotations(this, this.taxonomy, unresolved);
+		reportUnresolved(unresolved);
+	}
+
+	/**
+	 * Reports, in a single message, the term ids which could not be found in
+	 * the taxonomy.
+	 */
+	protected void reportUnresolved(Collection<String> ids) {
+		if (!ids.isEmpty()) {
+			System.err.println("No matching term found in the taxonomy for "
+					+ ids.size() + " ids: " + ids);
+		}
+	}
+
+	/**
+	 * Updates the annotations after their taxonomy was reloaded. Only the
+	 * annotations originally attached to terms affected by the changes are
+	 * propagated again; original annotations to terms which were replaced by
+	 * another term are moved to the replacement.
+	 * 
+	 * @param diff
+	 *            the changes returned by {@link Taxonomy#reload(File)}
+	 * @return the identifiers of the updated annotations
+	 */
+	public Set<String> update(TaxonomyDiff diff) {
+		Set<String> result = new TreeSet<String>();
+		Set<String> dropped = new TreeSet<String>();
+		IdResolver resolver = this.taxonomy.getIdResolver();
+		for (AnnotationTerm annTerm : getAnnotations()) {
+			if (!isAffected(annTerm, diff)) {
+				continue;
+			}
+			Set<String> originals = new LinkedHashSet<String>();
+			for (int ordinal : resolver.resolveAll(annTerm
+					.getOriginalAnnotations(), dropped)) {
+				originals.add(resolver.getIndex().getId(ordinal));
+			}
+			for (String id : new ArrayList<String>(annTerm.getNeighbors())) {
+				AnnotationTerm taxonomyNode = getTaxonomyNode(id);
+				removeConnection(annTerm, taxonomyNode);
+				if (taxonomyNode.getNeighborsCount() == 0) {
+					removeNode(id, TAXONOMY);
+				}
+			}
+			annTerm.getOriginalAnnotations().clear();
+			for (String id : originals) {
+				addConnection(annTerm, new AnnotationTerm(id));
+			}
+			annTerm.propagateAnnotations(this, this.taxonomy, dropped);
+			result.add(annTerm.getId());
+		}
+		if (!dropped.isEmpty()) {
+			System.err.println("Dropping annotations with " + dropped.size()
+					+ " terms removed from the taxonomy: " + dropped);
+		}
+		return result;
+	}
+
+	private boolean isAffected(AnnotationTerm annTerm, TaxonomyDiff diff) {
+		for (String id : annTerm.getOriginalAnnotations()) {
+			if (diff.getAffected().contains(id)
+					|| diff.getRemappedIds().contains(id)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public Set<String> getAnnotationIds() {
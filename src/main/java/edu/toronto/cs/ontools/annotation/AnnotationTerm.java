@@ -19,15 +19,17 @@
  */
 package edu.toronto.cs.ontools.annotation;
 
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
+import edu.toronto.cs.ontools.taxonomy.IdResolver;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
 import edu.toronto.cs.ontools.taxonomy.TaxonomyTerm;
-import edu.toronto.cs.ontools.utils.graph.IDAGNode;
+import edu.toronto.cs.ontools.utils.graph.DAGTraversal;
 import edu.toronto.cs.ontools.utils.graph.Node;
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
 
 public class AnnotationTerm extends Node {
 
@@ -44,6 +46,17 @@ public class AnnotationTerm extends Node {
 		super(id, name);
 	}
 
+	/**
+	 * Copies an annotated object, without its neighbors, for an annotation
+	 * attached to another version of the taxonomy.
+	 */
+	AnnotationTerm(AnnotationTerm source, Taxonomy taxonomy) {
+		super(source.getId(), source.getName());
+		this.taxonomyTerm = source.taxonomyTerm;
+		this.taxonomy = taxonomy;
+		this.originalAnnotations.addAll(source.originalAnnotations);
+	}
+
 	public void setTaxonomyTerm(TaxonomyTerm taxonomyTerm) {
 		this.taxonomyTerm = taxonomyTerm;
 	}
@@ -56,41 +69,31 @@ public class AnnotationTerm extends Node {
 		return this.originalAnnotations;
 	}
 
+	/**
+	 * Annotates this object with all the ancestors of the terms it is
+	 * annotated with.
+	 * 
+	 * @param unresolved
+	 *            receives the annotations unknown to the taxonomy, which are
+	 *            ignored
+	 */
 	protected void propagateAnnotations(TaxonomyAnnotation ann,
-			Taxonomy taxonomy) {
+			Taxonomy taxonomy, Collection<String> unresolved) {
 		this.taxonomy = taxonomy;
 		this.originalAnnotations.addAll(this.getNeighbors());
 
-		Set<String> newAnnotations = new HashSet<String>();
-		Set<String> front = new HashSet<String>();
-
-		front.addAll(this.getNeighbors());
-		Set<String> newFront = new HashSet<String>();
-		while (!front.isEmpty()) {
-			for (String nextTermId : front) {
-				IDAGNode nextNode = taxonomy.getTerm(nextTermId);
-				if (nextNode == null) {
-					System.err
-							.println("No matching term found in the taxonomy for "
-									+ nextTermId + " (" + this + ")");
-					continue;
-				}
-				for (String parentTermId : nextNode.getParents()) {
-					if (!newAnnotations.contains(parentTermId)) {
-						newFront.add(parentTermId);
-						newAnnotations.add(parentTermId);
-					}
-				}
-			}
-			front.clear();
-			front.addAll(newFront);
-			newFront.clear();
+		// Walk up the taxonomy on term ordinals
+		IdResolver resolver = taxonomy.getIdResolver();
+		OrdinalIndex index = resolver.getIndex();
+		int[] direct = resolver.resolveAll(this.getNeighbors(), unresolved);
+		BitSet newAnnotations = taxonomy.getTraversal().getReachable(direct,
+				DAGTraversal.Direction.UP);
+		for (int ordinal : direct) {
+			newAnnotations.clear(ordinal);
 		}
-		newAnnotations.removeAll(this.getNeighbors());
-		for (String tID : newAnnotations) {
-			ann
-					.addConnection(this, new AnnotationTerm(taxonomy
-							.getRealId(tID)));
+		for (int i = newAnnotations.nextSetBit(0); i >= 0; i = newAnnotations
+				.nextSetBit(i + 1)) {
+			ann.addConnection(this, new AnnotationTerm(index.getId(i)));
 		}
 	}
 
@@ -22,7 +22,6 @@ package edu.toronto.cs.ontools.annotation;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import edu.toronto.cs.ontools.main.LocalFileUtils;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
@@ -59,16 +59,31 @@ public class GeneGOAnnotations extends AbstractTaxonomyAnnotation {
 	private List<String> validEvds = new LinkedList<String>();
 	private List<String> validRels = Arrays.asList(VALID_RELS);
 
+	public static final String DEFAULT_LOCATION = "http://www.cs.toronto.edu/~marta/d/gene_association.goa_human";
+
 	public GeneGOAnnotations(Taxonomy go, List<String> evidenceSources) {
+		this(go, evidenceSources, LocalFileUtils.getInputFileHandler(
+				DEFAULT_LOCATION, false));
+	}
+
+	public GeneGOAnnotations(Taxonomy go, List<String> evidenceSources,
+			File source) {
 		super(go);
 		if (evidenceSources != null) {
 			this.validEvds.addAll(evidenceSources);
 		}
-		this
-				.load(LocalFileUtils
-						.getInputFileHandler(
-								"http://www.cs.toronto.edu/~marta/d/gene_association.goa_human",
-								false));
+		this.load(source);
+	}
+
+	private GeneGOAnnotations(GeneGOAnnotations source, Taxonomy go) {
+		super(go);
+		this.validEvds = source.validEvds;
+		this.validRels = source.validRels;
+		copyFrom(source);
+	}
+
+	public GeneGOAnnotations copy(Taxonomy go) {
+		return new GeneGOAnnotations(this, go);
 	}
 
 	public void setValidEvidenceSources(String input) {
@@ -96,9 +111,10 @@ public class GeneGOAnnotations extends AbstractTaxonomyAnnotation {
 		// Load data
 		clear();
 		try {
-			BufferedReader in = new BufferedReader(new FileReader(source));
+			BufferedReader in = LocalFileUtils.getReader(source);
 			String line;
 			Map<Side, AnnotationTerm> connection = new HashMap<Side, AnnotationTerm>();
+			Set<String> unresolved = new TreeSet<String>();
 			while ((line = in.readLine()) != null) {
 				if (line.startsWith(COMMENT_MARKER)) {
 					continue;
@@ -110,14 +126,20 @@ public class GeneGOAnnotations extends AbstractTaxonomyAnnotation {
 				}
 				if (this.validEvds.contains(pieces[EVIDENCE_IDX])
 						&& this.validRels.contains(pieces[REL_IDX])) {
+					String goId = this.taxonomy.getRealId(pieces[GO_IDX]);
+					if (goId == null) {
+						unresolved.add(pieces[GO_IDX]);
+						continue;
+					}
 					connection.clear();
 					connection.put(GENE, new AnnotationTerm(pieces[GENE_IDX],
 							pieces[GENE_IDX]));
-					connection.put(GO, new AnnotationTerm(pieces[GO_IDX]));
+					connection.put(GO, new AnnotationTerm(goId));
 					this.addConnection(connection);
 				}
 			}
 			in.close();
+			reportUnresolved(unresolved);
 			propagateTaxonomyAnnotations();
 		} catch (NullPointerException ex) {
 			ex.printStackTrace();
@@ -22,12 +22,12 @@ package edu.toronto.cs.ontools.annotation;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,13 +55,24 @@ public class GeneHPOAnnotations extends AbstractTaxonomyAnnotation {
 
 	private static final int LIST_IDX = 3;
 
+	public static final String DEFAULT_LOCATION = "http://compbio.charite.de/svn/hpo/trunk/src/annotation/phenotype_to_genes.txt";
+
 	public GeneHPOAnnotations(Taxonomy hpo) {
+		this(hpo, LocalFileUtils.getInputFileHandler(DEFAULT_LOCATION, false));
+	}
+
+	public GeneHPOAnnotations(Taxonomy hpo, File source) {
 		super(hpo);
-		this
-				.load(LocalFileUtils
-						.getInputFileHandler(
-								"http://compbio.charite.de/svn/hpo/trunk/src/annotation/phenotype_to_genes.txt",
-								false));
+		this.load(source);
+	}
+
+	private GeneHPOAnnotations(GeneHPOAnnotations source, Taxonomy hpo) {
+		super(hpo);
+		copyFrom(source);
+	}
+
+	public GeneHPOAnnotations copy(Taxonomy hpo) {
+		return new GeneHPOAnnotations(this, hpo);
 	}
 
 	@Override
@@ -73,9 +84,10 @@ public class GeneHPOAnnotations extends AbstractTaxonomyAnnotation {
 		// Load data
 		clear();
 		try {
-			BufferedReader in = new BufferedReader(new FileReader(source));
+			BufferedReader in = LocalFileUtils.getReader(source);
 			String line;
 			Map<Side, AnnotationTerm> connection = new HashMap<Side, AnnotationTerm>();
+			Set<String> unresolved = new TreeSet<String>();
 			while ((line = in.readLine()) != null) {
 				if (line.startsWith(COMMENT_MARKER)) {
 					continue;
@@ -85,6 +97,10 @@ public class GeneHPOAnnotations extends AbstractTaxonomyAnnotation {
 					// String hpoName = m.group(NAME_IDX);
 					final String hpoId = this.taxonomy.getRealId(m
 							.group(ID_IDX));
+					if (hpoId == null) {
+						unresolved.add(m.group(ID_IDX));
+						continue;
+					}
 					String geneList = m.group(LIST_IDX);
 					if (geneList != null) {
 						final Matcher mi = GENE_REG_EXP.matcher(geneList);
@@ -99,6 +115,7 @@ public class GeneHPOAnnotations extends AbstractTaxonomyAnnotation {
 				}
 			}
 			in.close();
+			reportUnresolved(unresolved);
 			propagateTaxonomyAnnotations();
 		} catch (NullPointerException ex) {
 			ex.printStackTrace();
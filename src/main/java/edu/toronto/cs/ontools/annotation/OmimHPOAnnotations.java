@@ -22,12 +22,12 @@ package edu.toronto.cs.ontools.annotation;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import edu.toronto.cs.ontools.main.LocalFileUtils;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
@@ -43,13 +43,24 @@ public class OmimHPOAnnotations extends AbstractTaxonomyAnnotation {
 
 	private static final int MIN_EXPECTED_FIELDS = 8;
 
+	public static final String DEFAULT_LOCATION = "http://compbio.charite.de/hudson/job/hpo.annotations/lastStableBuild/artifact/misc/phenotype_annotation.tab";
+
 	public OmimHPOAnnotations(Taxonomy hpo) {
+		this(hpo, LocalFileUtils.getInputFileHandler(DEFAULT_LOCATION, false));
+	}
+
+	public OmimHPOAnnotations(Taxonomy hpo, File source) {
+		super(hpo);
+		this.load(source);
+	}
+
+	private OmimHPOAnnotations(OmimHPOAnnotations source, Taxonomy hpo) {
 		super(hpo);
-		this
-				.load(LocalFileUtils
-						.getInputFileHandler(
-								"http://compbio.charite.de/hudson/job/hpo.annotations/lastStableBuild/artifact/misc/phenotype_annotation.tab",
-								false));
+		copyFrom(source);
+	}
+
+	public OmimHPOAnnotations copy(Taxonomy hpo) {
+		return new OmimHPOAnnotations(this, hpo);
 	}
 
 	@Override
@@ -61,9 +72,10 @@ public class OmimHPOAnnotations extends AbstractTaxonomyAnnotation {
 		clear();
 		// Load data
 		try {
-			BufferedReader in = new BufferedReader(new FileReader(source));
+			BufferedReader in = LocalFileUtils.getReader(source);
 			String line;
 			Map<Side, AnnotationTerm> connection = new HashMap<Side, AnnotationTerm>();
+			Set<String> unresolved = new TreeSet<String>();
 			while ((line = in.readLine()) != null) {
 				if (!line.startsWith(OMIM_ANNOTATION_MARKER)) {
 					continue;
@@ -74,7 +86,9 @@ public class OmimHPOAnnotations extends AbstractTaxonomyAnnotation {
 				}
 				final String omimId = OMIM_ANNOTATION_MARKER + ":" + pieces[1], omimName = pieces[2], hpoId = this.taxonomy
 						.getRealId(pieces[4]), rel = pieces[3];
-				if (!"NOT".equals(rel)) {
+				if (hpoId == null) {
+					unresolved.add(pieces[4]);
+				} else if (!"NOT".equals(rel)) {
 					connection.clear();
 					connection.put(OMIM, new AnnotationTerm(omimId, omimName));
 					connection.put(HPO, new AnnotationTerm(hpoId));
@@ -82,6 +96,7 @@ public class OmimHPOAnnotations extends AbstractTaxonomyAnnotation {
 				}
 			}
 			in.close();
+			reportUnresolved(unresolved);
 			propagateTaxonomyAnnotations();
 		} catch (NullPointerException ex) {
 			ex.printStackTrace();
@@ -25,10 +25,20 @@ import java.util.Map;
 import java.util.Set;
 
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+import edu.toronto.cs.ontools.taxonomy.TaxonomyDiff;
 
 public interface TaxonomyAnnotation {
 	public int load(File source);
 
+	public Set<String> update(TaxonomyDiff diff);
+
+	/**
+	 * Returns a copy of this annotation attached to another version of its
+	 * taxonomy, which must then be {@link #update(TaxonomyDiff) updated} with
+	 * the changes between the two versions.
+	 */
+	public TaxonomyAnnotation copy(Taxonomy taxonomy);
+
 	public String getAnnotationType();
 
 	public Taxonomy getTaxonomy();
@@ -8,6 +8,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -15,14 +17,10 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
-import edu.toronto.cs.ontools.annotation.GeneGOAnnotations;
-import edu.toronto.cs.ontools.annotation.GeneHPOAnnotations;
-import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
 import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.main.ConcurrentLoader.AnnotationFactory;
 import edu.toronto.cs.ontools.similarity.Lookup;
 import edu.toronto.cs.ontools.similarity.SimilarityGenerator;
-import edu.toronto.cs.ontools.taxonomy.GO;
-import edu.toronto.cs.ontools.taxonomy.HPO;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
 import edu.toronto.cs.ontools.taxonomy.clustering.BottomUpAnnClustering;
 
@@ -319,10 +317,11 @@ public class CommandDispatcher {
 				}
 
 				// Get the Taxonomy
-				String taxonomyName = this.getOptionValue(
+				final String taxonomyName = this.getOptionValue(
 						CmdLineOptions.TAXONOMY).toUpperCase();
-				String annotationType = this.getOptionValue(
+				final String annotationType = this.getOptionValue(
 						CmdLineOptions.ANNOTATION).toUpperCase();
+				final List<String> annotationEvidenceSources = evidenceSources;
 				TreeMap<String, Boolean> supportedAnnotations = (TreeMap<String, Boolean>) SUPPORTED_TAXONOMY_ANNOTATIONS
 						.get(taxonomyName);
 
@@ -330,32 +329,51 @@ public class CommandDispatcher {
 					failWithMessage("Unsupported taxonomy: " + taxonomyName
 							+ ". please choose one of: "
 							+ CmdLineOptions.TAXONOMY.getValues());
-				} else {
-					System.out.print("Loading taxonomy (" + taxonomyName
-							+ ")... ");
-					System.out.flush();
-					taxonomy = taxonomyName.equals("HPO") ? new HPO()
-							: new GO();
-					System.out.println("Done");
 				}
-
-				// Get the annotation
 				if (supportedAnnotations.get(annotationType) == null) {
 					failWithMessage("Unsupported annotation type: "
 							+ annotationType + ". please choose one of: "
 							+ CmdLineOptions.ANNOTATION.getValues());
-				} else {
-					System.out.print("Loading annotations (" + annotationType
-							+ ")... ");
-					System.out.flush();
-					ann = annotationType.equals("OMIM") ? new OmimHPOAnnotations(
-							taxonomy)
-							: (taxonomyName.equals("HPO") ? new GeneHPOAnnotations(
-									taxonomy)
-									: new GeneGOAnnotations(taxonomy,
-											evidenceSources));
-					System.out.println("Done");
 				}
+
+				// Load the taxonomy and the annotation; the reduction modifies
+				// them, so it can't use the shared instances
+				final OntologyRegistry registry = OntologyRegistry
+						.getInstance();
+				final boolean privateCopy = this
+						.hasOption(CmdLineOptions.REDUCE);
+				ConcurrentLoader loader = new ConcurrentLoader();
+				Future<Taxonomy> futureTaxonomy = loader
+						.loadTaxonomy(new Callable<Taxonomy>() {
+							public Taxonomy call() {
+								return privateCopy ? registry
+										.createTaxonomy(taxonomyName)
+										: registry.getTaxonomy(taxonomyName);
+							}
+						});
+				Future<TaxonomyAnnotation> futureAnn = loader.loadAnnotation(
+						futureTaxonomy,
+						new AnnotationFactory<TaxonomyAnnotation>() {
+							public TaxonomyAnnotation create(Taxonomy taxonomy) {
+								return privateCopy ? registry.createAnnotation(
+										taxonomy, taxonomyName,
+										annotationType,
+										annotationEvidenceSources) : registry
+										.getAnnotation(taxonomyName,
+												annotationType,
+												annotationEvidenceSources);
+							}
+						});
+				loader.shutdown();
+				System.out.print("Loading taxonomy (" + taxonomyName + ")... ");
+				System.out.flush();
+				taxonomy = ConcurrentLoader.get(futureTaxonomy);
+				System.out.println("Done");
+				System.out.print("Loading annotations (" + annotationType
+						+ ")... ");
+				System.out.flush();
+				ann = ConcurrentLoader.get(futureAnn);
+				System.out.println("Done");
 			}
 			// What does the user want to do?
 			if (this.hasOption(CmdLineOptions.REDUCE)) {
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+
+/**
+ * Loads taxonomies and their annotations concurrently. Independent
+ * taxonomies are loaded at the same time, and each annotation is loaded as
+ * soon as its own taxonomy is available, so the total loading time is close
+ * to the time needed by the slowest taxonomy + annotation chain.
+ */
+public class ConcurrentLoader {
+	/**
+	 * Creates an annotation once its taxonomy is loaded.
+	 */
+	public interface AnnotationFactory<A extends TaxonomyAnnotation> {
+		public A create(Taxonomy taxonomy);
+	}
+
+	private final ExecutorService executor;
+
+	public ConcurrentLoader() {
+		this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+	}
+
+	public ConcurrentLoader(int threads) {
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Starts loading a taxonomy.
+	 * 
+	 * @param loader
+	 *            creates and loads the taxonomy
+	 * @return the future taxonomy
+	 */
+	public <T extends Taxonomy> Future<T> loadTaxonomy(Callable<T> loader) {
+		return this.executor.submit(loader);
+	}
+
+	/**
+	 * Starts loading an annotation, which waits only for its own taxonomy.
+	 * 
+	 * @param taxonomy
+	 *            the future taxonomy, as returned by
+	 *            {@link #loadTaxonomy(Callable)}
+	 * @param factory
+	 *            creates and loads the annotation
+	 * @return the future annotation
+	 */
+	public <A extends TaxonomyAnnotation> Future<A> loadAnnotation(
+			final Future<? extends Taxonomy> taxonomy,
+			final AnnotationFactory<A> factory) {
+		return this.executor.submit(new Callable<A>() {
+			public A call() throws Exception {
+				return factory.create(taxonomy.get());
+			}
+		});
+	}
+
+	/**
+	 * Waits for a load to finish.
+	 * 
+	 * @param result
+	 *            a future returned by this loader
+	 * @return the loaded taxonomy or annotation
+	 * @throws RuntimeException
+	 *             if the loading failed
+	 */
+	public static <T> T get(Future<T> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+			throw new RuntimeException("Loading failed", ex.getCause());
+		}
+	}
+
+	/**
+	 * Releases the loading threads once all the pending loads are done.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+}
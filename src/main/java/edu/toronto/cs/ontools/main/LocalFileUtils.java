@@ -1,15 +1,25 @@
 package edu.toronto.cs.ontools.main;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
 
 public class LocalFileUtils {
+	private static final int GZIP_MAGIC = GZIPInputStream.GZIP_MAGIC;
+
+	private static final int DECOMPRESSION_BUFFER_SIZE = 1 << 16;
+
 	public static File getInputFileHandler(String inputLocation,
 			boolean forceUpdate) {
 		try {
@@ -18,7 +28,7 @@ public class LocalFileUtils {
 				String name = inputLocation.substring(inputLocation
 						.lastIndexOf('/') + 1);
 				result = getTemporaryFile(name);
-				if (!result.exists()) {
+				if (!result.exists() || forceUpdate) {
 					result.createNewFile();
 					BufferedInputStream in = new BufferedInputStream((new URL(
 							inputLocation)).openStream());
@@ -35,6 +45,45 @@ public class LocalFileUtils {
 		}
 	}
 
+	/**
+	 * Checks if a file is gzip-compressed, looking at its first bytes.
+	 */
+	public static boolean isCompressed(File source) throws IOException {
+		InputStream in = new FileInputStream(source);
+		try {
+			return in.read() == (GZIP_MAGIC & 0xff)
+					&& in.read() == (GZIP_MAGIC >> 8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Opens a file for reading. Gzip-compressed files are transparently
+	 * decompressed on a background thread; other files are read directly.
+	 */
+	public static InputStream getInputStream(File source) throws IOException {
+		if (isCompressed(source)) {
+			return new PipelinedInputStream(new GZIPInputStream(
+					new FileInputStream(source), DECOMPRESSION_BUFFER_SIZE),
+					source.getName());
+		}
+		return new FileInputStream(source);
+	}
+
+	/**
+	 * Opens a text file for reading, transparently decompressing gzip files.
+	 * 
+	 * @see #getInputStream(File)
+	 */
+	public static BufferedReader getReader(File source) throws IOException {
+		if (isCompressed(source)) {
+			return new BufferedReader(new InputStreamReader(
+					getInputStream(source)));
+		}
+		return new BufferedReader(new FileReader(source));
+	}
+
 	public static File getTemporaryFile(String name) {
 		return getInternalFile(name, "tmp");
 	}
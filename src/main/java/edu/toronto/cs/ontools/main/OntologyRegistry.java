@@ -0,0 +1,376 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import edu.toronto.cs.ontools.annotation.GeneGOAnnotations;
+import edu.toronto.cs.ontools.annotation.GeneHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.taxonomy.AbstractTaxonomy;
+import edu.toronto.cs.ontools.taxonomy.GO;
+import edu.toronto.cs.ontools.taxonomy.HPO;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+import edu.toronto.cs.ontools.taxonomy.TaxonomyDiff;
+
+/**
+ * Process-wide registry of taxonomies and annotations. Each taxonomy, and
+ * each taxonomy + annotation pair, is loaded only once, on first use, and the
+ * same instance is then handed out to all the callers. Shared instances must
+ * be treated as read-only; code which modifies a taxonomy or an annotation
+ * (e.g. a taxonomy reduction) must work on a private copy, obtained with
+ * {@link #createTaxonomy(String)} and
+ * {@link #createAnnotation(Taxonomy, String, String, List)}.
+ */
+public class OntologyRegistry {
+	public static final String TAXONOMY_HPO = "HPO";
+
+	public static final String TAXONOMY_GO = "GO";
+
+	public static final String ANNOTATION_OMIM = "OMIM";
+
+	public static final String ANNOTATION_GENE = "GENE";
+
+	private static final String KEY_SEPARATOR = "/";
+
+	private static final OntologyRegistry INSTANCE = new OntologyRegistry();
+
+	private final ConcurrentMap<String, String> locations = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<String, Future<Taxonomy>> taxonomies = new ConcurrentHashMap<String, Future<Taxonomy>>();
+
+	private final ConcurrentMap<String, Future<TaxonomyAnnotation>> annotations = new ConcurrentHashMap<String, Future<TaxonomyAnnotation>>();
+
+	/** The parameters of each shared annotation, for reloading it. */
+	private final ConcurrentMap<String, AnnotationSource> annotationSources = new ConcurrentHashMap<String, AnnotationSource>();
+
+	private static class AnnotationSource {
+		private final String taxonomyName;
+
+		private final String annotationType;
+
+		private final List<String> evidenceSources;
+
+		public AnnotationSource(String taxonomyName, String annotationType,
+				List<String> evidenceSources) {
+			this.taxonomyName = taxonomyName;
+			this.annotationType = annotationType;
+			this.evidenceSources = evidenceSources;
+		}
+	}
+
+	public static OntologyRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Sets where a taxonomy should be loaded from. Only affects taxonomies
+	 * which are not loaded yet.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @param location
+	 *            a local file path or a URL
+	 */
+	public void registerLocation(String taxonomyName, String location) {
+		this.locations.put(taxonomyName.toUpperCase(), location);
+	}
+
+	/**
+	 * Sets where an annotation should be loaded from. Only affects
+	 * annotations which are not loaded yet.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @param annotationType
+	 *            {@link #ANNOTATION_OMIM} or {@link #ANNOTATION_GENE}
+	 * @param location
+	 *            a local file path or a URL
+	 */
+	public void registerLocation(String taxonomyName, String annotationType,
+			String location) {
+		this.locations.put(getKey(taxonomyName, annotationType), location);
+	}
+
+	/**
+	 * Returns the shared instance of a taxonomy, loading it if needed.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 */
+	public Taxonomy getTaxonomy(final String taxonomyName) {
+		final String key = taxonomyName.toUpperCase();
+		return getOrLoad(this.taxonomies, key, new Callable<Taxonomy>() {
+			public Taxonomy call() {
+				return createTaxonomy(key);
+			}
+		});
+	}
+
+	/**
+	 * Returns the shared instance of an annotation, loading it and its
+	 * taxonomy if needed.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @param annotationType
+	 *            {@link #ANNOTATION_OMIM} or {@link #ANNOTATION_GENE}
+	 */
+	public TaxonomyAnnotation getAnnotation(String taxonomyName,
+			String annotationType) {
+		return getAnnotation(taxonomyName, annotationType, null);
+	}
+
+	/**
+	 * Returns the shared instance of an annotation, loading it and its
+	 * taxonomy if needed.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @param annotationType
+	 *            {@link #ANNOTATION_OMIM} or {@link #ANNOTATION_GENE}
+	 * @param evidenceSources
+	 *            the trusted evidence sources, only used for GO annotations
+	 */
+	public TaxonomyAnnotation getAnnotation(final String taxonomyName,
+			final String annotationType, final List<String> evidenceSources) {
+		String key = getKey(taxonomyName, annotationType);
+		if (TAXONOMY_GO.equalsIgnoreCase(taxonomyName)
+				&& evidenceSources != null) {
+			List<String> sortedSources = new ArrayList<String>(
+					evidenceSources);
+			Collections.sort(sortedSources);
+			key += KEY_SEPARATOR + sortedSources;
+		}
+		this.annotationSources.putIfAbsent(key, new AnnotationSource(
+				taxonomyName, annotationType, evidenceSources));
+		return getOrLoad(this.annotations, key,
+				new Callable<TaxonomyAnnotation>() {
+					public TaxonomyAnnotation call() {
+						return createAnnotation(getTaxonomy(taxonomyName),
+								taxonomyName, annotationType, evidenceSources);
+					}
+				});
+	}
+
+	/**
+	 * Loads a new, unshared, instance of a taxonomy.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 */
+	public Taxonomy createTaxonomy(String taxonomyName) {
+		String key = taxonomyName.toUpperCase();
+		if (TAXONOMY_HPO.equals(key)) {
+			return new HPO(getSource(key, HPO.DEFAULT_LOCATION));
+		} else if (TAXONOMY_GO.equals(key)) {
+			return new GO(getSource(key, GO.DEFAULT_LOCATION));
+		}
+		throw new IllegalArgumentException("Unsupported taxonomy: "
+				+ taxonomyName);
+	}
+
+	/**
+	 * Loads a new, unshared, instance of an annotation.
+	 * 
+	 * @param taxonomy
+	 *            the annotated taxonomy
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @param annotationType
+	 *            {@link #ANNOTATION_OMIM} or {@link #ANNOTATION_GENE}
+	 * @param evidenceSources
+	 *            the trusted evidence sources, only used for GO annotations
+	 */
+	public TaxonomyAnnotation createAnnotation(Taxonomy taxonomy,
+			String taxonomyName, String annotationType,
+			List<String> evidenceSources) {
+		String key = getKey(taxonomyName, annotationType);
+		if (getKey(TAXONOMY_HPO, ANNOTATION_OMIM).equals(key)) {
+			return new OmimHPOAnnotations(taxonomy, getSource(key,
+					OmimHPOAnnotations.DEFAULT_LOCATION));
+		} else if (getKey(TAXONOMY_HPO, ANNOTATION_GENE).equals(key)) {
+			return new GeneHPOAnnotations(taxonomy, getSource(key,
+					GeneHPOAnnotations.DEFAULT_LOCATION));
+		} else if (getKey(TAXONOMY_GO, ANNOTATION_GENE).equals(key)) {
+			return new GeneGOAnnotations(taxonomy, evidenceSources, getSource(
+					key, GeneGOAnnotations.DEFAULT_LOCATION));
+		}
+		throw new IllegalArgumentException("Unsupported annotation type: "
+				+ annotationType + " for " + taxonomyName);
+	}
+
+	/**
+	 * Loads the latest release of a shared taxonomy, downloading it again if
+	 * it comes from a URL. The release is applied to a copy of the shared
+	 * taxonomy, which keeps the ancestors already looked up for the terms
+	 * not affected by the changes, and the shared annotations of the
+	 * taxonomy are copied and {@link TaxonomyAnnotation#update(TaxonomyDiff)
+	 * updated} on top of it; annotations still loading are waited for. The
+	 * shared instances are then replaced, annotations first. Callers still
+	 * using the previous instances are not affected, and
+	 * {@link TaxonomyAnnotation#getTaxonomy()} always returns the taxonomy
+	 * the annotation was propagated on.
+	 * 
+	 * @param taxonomyName
+	 *            {@link #TAXONOMY_HPO} or {@link #TAXONOMY_GO}
+	 * @return the applied changes, or {@code null} if the taxonomy was not
+	 *         loaded yet or the new release could not be read
+	 */
+	public synchronized TaxonomyDiff reloadTaxonomy(String taxonomyName) {
+		String key = taxonomyName.toUpperCase();
+		Future<Taxonomy> loaded = this.taxonomies.get(key);
+		if (loaded == null || !loaded.isDone()) {
+			return null;
+		}
+		String defaultLocation = TAXONOMY_HPO.equals(key) ? HPO.DEFAULT_LOCATION
+				: GO.DEFAULT_LOCATION;
+		// Constant time copy of the same class, only the changed terms are
+		// duplicated
+		Taxonomy current = ConcurrentLoader.get(loaded);
+		AbstractTaxonomy release = ((AbstractTaxonomy) current).clone();
+		TaxonomyDiff diff = release.reload(getSource(key, defaultLocation,
+				true));
+		if (diff == null) {
+			return null;
+		}
+
+		Map<String, TaxonomyAnnotation> updated = updateAnnotations(key,
+				current, release, diff, Collections.<String> emptySet());
+		for (Map.Entry<String, TaxonomyAnnotation> entry : updated.entrySet()) {
+			this.annotations.put(entry.getKey(), done(entry.getValue()));
+		}
+		this.taxonomies.put(key, done((Taxonomy) release));
+		// Annotations requested in the meantime were propagated on the
+		// previous version
+		for (Map.Entry<String, TaxonomyAnnotation> entry : updateAnnotations(
+				key, current, release, diff, updated.keySet()).entrySet()) {
+			this.annotations.put(entry.getKey(), done(entry.getValue()));
+		}
+		return diff;
+	}
+
+	/**
+	 * Copies the shared annotations of a taxonomy onto its new release.
+	 * 
+	 * @param skipped
+	 *            the keys of the annotations already updated
+	 * @return the updated annotations, by key
+	 */
+	private Map<String, TaxonomyAnnotation> updateAnnotations(String key,
+			Taxonomy current, Taxonomy release, TaxonomyDiff diff,
+			Set<String> skipped) {
+		Map<String, TaxonomyAnnotation> result = new HashMap<String, TaxonomyAnnotation>();
+		for (Map.Entry<String, Future<TaxonomyAnnotation>> entry : this.annotations
+				.entrySet()) {
+			if (!entry.getKey().startsWith(key + KEY_SEPARATOR)
+					|| skipped.contains(entry.getKey())) {
+				continue;
+			}
+			TaxonomyAnnotation annotation;
+			try {
+				annotation = ConcurrentLoader.get(entry.getValue());
+			} catch (RuntimeException ex) {
+				// Failed loads are attempted again on the next request
+				continue;
+			}
+			if (annotation.getTaxonomy() == release) {
+				continue;
+			}
+			if (annotation.getTaxonomy() == current) {
+				TaxonomyAnnotation copy = annotation.copy(release);
+				copy.update(diff);
+				result.put(entry.getKey(), copy);
+				continue;
+			}
+			// Propagated on an unknown version, the diff doesn't apply
+			AnnotationSource source = this.annotationSources.get(entry
+					.getKey());
+			if (source != null) {
+				result.put(entry.getKey(), createAnnotation(release,
+						source.taxonomyName, source.annotationType,
+						source.evidenceSources));
+			}
+		}
+		return result;
+	}
+
+	private static <T> Future<T> done(final T value) {
+		FutureTask<T> result = new FutureTask<T>(new Callable<T>() {
+			public T call() {
+				return value;
+			}
+		});
+		result.run();
+		return result;
+	}
+
+	private File getSource(String key, String defaultLocation) {
+		return getSource(key, defaultLocation, false);
+	}
+
+	private File getSource(String key, String defaultLocation,
+			boolean forceUpdate) {
+		String location = this.locations.get(key);
+		return LocalFileUtils.getInputFileHandler(
+				location != null ? location : defaultLocation, forceUpdate);
+	}
+
+	private static String getKey(String taxonomyName, String annotationType) {
+		return taxonomyName.toUpperCase() + KEY_SEPARATOR
+				+ annotationType.toUpperCase();
+	}
+
+	/**
+	 * Returns the value of a memoized load, making sure that concurrent
+	 * requests for the same key only load it once.
+	 */
+	private static <T> T getOrLoad(ConcurrentMap<String, Future<T>> cache,
+			String key, Callable<T> loader) {
+		Future<T> result = cache.get(key);
+		if (result == null) {
+			FutureTask<T> task = new FutureTask<T>(loader);
+			result = cache.putIfAbsent(key, task);
+			if (result == null) {
+				result = task;
+				task.run();
+			}
+		}
+		try {
+			return ConcurrentLoader.get(result);
+		} catch (RuntimeException ex) {
+			// Allow a new attempt later
+			cache.remove(key, result);
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads an input stream on a background thread, in blocks, so that expensive
+ * streams (for example decompression) run in parallel with the code consuming
+ * the data.
+ */
+public class PipelinedInputStream extends InputStream {
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private static final int QUEUE_SIZE = 16;
+
+	/** Marks the end of the data. */
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(
+			QUEUE_SIZE);
+
+	private final Thread producer;
+
+	/** The failure of the producer, if any, rethrown by the reader. */
+	private volatile Throwable error;
+
+	private volatile boolean closed = false;
+
+	private byte[] block;
+
+	private int blockLength;
+
+	private int position;
+
+	public PipelinedInputStream(final InputStream in, String name) {
+		this.producer = new Thread(new Runnable() {
+			public void run() {
+				produce(in);
+			}
+		}, "Pipelined reader: " + name);
+		this.producer.setDaemon(true);
+		this.producer.start();
+	}
+
+	private void produce(InputStream in) {
+		try {
+			try {
+				byte[] buffer = new byte[BLOCK_SIZE];
+				int length = 0, read;
+				while (!this.closed
+						&& (read = in.read(buffer, length, BLOCK_SIZE - length)) != -1) {
+					length += read;
+					if (length == BLOCK_SIZE) {
+						this.blocks.put(buffer);
+						buffer = new byte[BLOCK_SIZE];
+						length = 0;
+					}
+				}
+				if (length > 0) {
+					byte[] last = new byte[length];
+					System.arraycopy(buffer, 0, last, 0, length);
+					this.blocks.put(last);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (InterruptedException ex) {
+			this.error = new InterruptedIOException();
+		} catch (Throwable ex) {
+			// Runtime exceptions and errors must reach the reader as well
+			this.error = ex;
+		} finally {
+			// The reader always gets the end of the data, even after a failure
+			try {
+				while (!this.closed
+						&& !this.blocks.offer(END, 100, TimeUnit.MILLISECONDS)) {
+					// Wait for the consumer
+				}
+			} catch (InterruptedException ex) {
+				// The consumer is closing the stream
+			}
+		}
+	}
+
+	private boolean nextBlock() throws IOException {
+		if (this.block != END) {
+			try {
+				this.block = this.blocks.take();
+			} catch (InterruptedException ex) {
+				throw new InterruptedIOException();
+			}
+			this.blockLength = this.block.length;
+			this.position = 0;
+		}
+		if (this.block == END) {
+			checkError();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Rethrows the failure of the producer, if any, as an
+	 * {@link IOException}.
+	 */
+	private void checkError() throws IOException {
+		Throwable error = this.error;
+		if (error == null || this.closed) {
+			return;
+		}
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		}
+		IOException result = new IOException("Failed reading the stream: "
+				+ error);
+		result.initCause(error);
+		throw result;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (this.position >= this.blockLength && !nextBlock()) {
+			return -1;
+		}
+		return this.block[this.position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (this.position >= this.blockLength && !nextBlock()) {
+			return -1;
+		}
+		int count = Math.min(len, this.blockLength - this.position);
+		System.arraycopy(this.block, this.position, b, off, count);
+		this.position += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return this.blockLength - this.position;
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		this.producer.interrupt();
+		this.blocks.clear();
+		this.block = END;
+		this.blockLength = 0;
+		this.position = 0;
+	}
+}
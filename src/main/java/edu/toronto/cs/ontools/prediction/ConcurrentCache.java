@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.prediction;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache which can be read and filled by several threads at once. When the
+ * size limit is exceeded, arbitrary entries are evicted.
+ */
+public class ConcurrentCache<K, V> implements Cache<K, V> {
+	protected static final int DEFAULT_CACHE_SIZE_LIMIT = 50000000;
+
+	private final ConcurrentMap<K, V> cache = new ConcurrentHashMap<K, V>();
+
+	private final V defaultValue;
+
+	private final int limit;
+
+	public ConcurrentCache(V defaultValue) {
+		this(defaultValue, DEFAULT_CACHE_SIZE_LIMIT);
+	}
+
+	public ConcurrentCache(V defaultValue, int limit) {
+		this.defaultValue = defaultValue;
+		this.limit = limit > 0 ? limit : DEFAULT_CACHE_SIZE_LIMIT;
+	}
+
+	public V put(K key, V value) {
+		V result = this.cache.put(key, value);
+		if (this.cache.size() > this.limit) {
+			Iterator<K> keys = this.cache.keySet().iterator();
+			while (this.cache.size() > this.limit && keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		return result;
+	}
+
+	public V get(K key) {
+		return this.cache.get(key);
+	}
+
+	public V safeGet(K key) {
+		V result = this.cache.get(key);
+		return result == null ? this.defaultValue : result;
+	}
+
+	public V remove(K key) {
+		return this.cache.remove(key);
+	}
+
+	public int size() {
+		return this.cache.size();
+	}
+
+	public void clear() {
+		this.cache.clear();
+	}
+
+	public boolean isEmpty() {
+		return this.cache.isEmpty();
+	}
+}
@@ -29,16 +29,112 @@ import java.util.Set;
 
 import edu.toronto.cs.ontools.annotation.AnnotationTerm;
 import edu.toronto.cs.ontools.annotation.SearchResult;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
 import edu.toronto.cs.ontools.taxonomy.TaxonomyTerm;
 
 public class ICPredictor extends AbstractPredictor {
 	private static final boolean ENABLE_CUMMULATIVE_IC = false;
 
-	private final Cache<String, Double> icCache = new SimpleCache<String, Double>(
-			0.0);
-	private final Cache<String, Double> simCache = new SimpleCache<String, Double>(
+	private final Cache<String, Double> icCache = new ConcurrentCache<String, Double>(
 			0.0);
 
+	/** The IC of the taxonomy terms, for the current taxonomy version. */
+	private volatile ICTable icTable;
+
+	@Override
+	public void setAnnotation(TaxonomyAnnotation annotations) {
+		super.setAnnotation(annotations);
+		this.icTable = null;
+	}
+
+	/**
+	 * The IC of each taxonomy term, indexed by ordinal, and the MICA index
+	 * and term similarities computed from it. Replaced as a whole when the
+	 * taxonomy or the annotations change, so that concurrent readers always
+	 * see matching values.
+	 */
+	private static final class ICTable {
+		final int version;
+
+		final double[] ic;
+
+		volatile MICAIndex micaIndex;
+
+		final Cache<TermPair, Double> similarities = new ConcurrentCache<TermPair, Double>(
+				0.0);
+
+		ICTable(int version, double[] ic) {
+			this.version = version;
+			this.ic = ic;
+		}
+	}
+
+	/**
+	 * Key of the similarity cache; the similarity is symmetric, so the order
+	 * of the terms doesn't matter.
+	 */
+	private static final class TermPair {
+		private final String first;
+
+		private final String second;
+
+		TermPair(String q, String r) {
+			boolean ordered = q.compareTo(r) <= 0;
+			this.first = ordered ? q : r;
+			this.second = ordered ? r : q;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TermPair)) {
+				return false;
+			}
+			TermPair other = (TermPair) o;
+			return this.first.equals(other.first)
+					&& this.second.equals(other.second);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.first.hashCode() + this.second.hashCode();
+		}
+	}
+
+	private ICTable getICTable() {
+		Taxonomy taxonomy = this.annotations.getTaxonomy();
+		ICTable result = this.icTable;
+		int version = taxonomy.getVersion();
+		if (result == null || result.version != version) {
+			double[] ic = new double[taxonomy.size()];
+			for (int i = 0; i < ic.length; ++i) {
+				ic[i] = getIC(this.annotations.getTaxonomyNode(taxonomy
+						.getTermId(i)));
+			}
+			result = new ICTable(version, ic);
+			this.icTable = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the MICA index for the current taxonomy and annotations,
+	 * building it if needed.
+	 */
+	public MICAIndex getMICAIndex() {
+		ICTable table = getICTable();
+		MICAIndex result = table.micaIndex;
+		if (result == null) {
+			result = new MICAIndex(this.annotations.getTaxonomy(), table.ic);
+			table.micaIndex = result;
+		}
+		return result;
+	}
+
+	public double getIC(int ordinal) {
+		return getICTable().ic[ordinal];
+	}
+
 	public double getIC(String taxonomyTermID) {
 		return getIC(this.annotations.getTaxonomyNode(taxonomyTermID));
 	}
@@ -100,22 +196,15 @@ public class ICPredictor extends AbstractPredictor {
 		if (taxonomyTerm1.equals(taxonomyTerm2)) {
 			return taxonomyTerm1;
 		}
-		// TODO: implement more efficiently!
-		Set<String> intersection = new HashSet<String>();
-		intersection.addAll(this.annotations.getTaxonomy().getAncestors(
-				taxonomyTerm1));
-		intersection.retainAll(this.annotations.getTaxonomy().getAncestors(
-				taxonomyTerm2));
-		double max = -1;
-		String micaId = this.annotations.getTaxonomy().getRootId();
-		for (String a : intersection) {
-			double ic = this.getIC(a);
-			if (ic >= max) {
-				max = ic;
-				micaId = a;
-			}
-		}
-		return micaId;
+		return getMICAIndex().getMICAId(taxonomyTerm1, taxonomyTerm2);
+	}
+
+	/**
+	 * @return the ordinal of the most informative common ancestor of two
+	 *         terms, or {@code -1} if they have no common ancestor
+	 */
+	public int getMICAOrdinal(int ordinal1, int ordinal2) {
+		return getMICAIndex().getMICAOrdinal(ordinal1, ordinal2);
 	}
 
 	public List<AnnotationTerm> getMICAIds(String taxonomyTerm1,
@@ -167,14 +256,14 @@ public class ICPredictor extends AbstractPredictor {
 	}
 
 	private double similarity(String q, String r) {
-		Double result = this.simCache.get(q + r);
-		if (result == null) {
-			result = this.simCache.get(r + q);
-		}
+		// Cached with the IC table, so a new taxonomy version starts afresh
+		Cache<TermPair, Double> cache = getICTable().similarities;
+		TermPair key = new TermPair(q, r);
+		Double result = cache.get(key);
 		if (result == null) {
 			result = ENABLE_CUMMULATIVE_IC ? this.getCummulativeIC(this
 					.getMICAIds(q, r)) : this.getIC(this.getMICAId(q, r));
-			this.simCache.put(q + r, result);
+			cache.put(key, result);
 		}
 		return result;
 	}
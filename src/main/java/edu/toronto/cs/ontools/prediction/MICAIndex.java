@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.prediction;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+import edu.toronto.cs.ontools.utils.graph.AncestorClosure;
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
+
+/**
+ * Finds the most informative common ancestor (MICA) of two terms. The
+ * ancestors of each term are kept sorted by descending information content,
+ * so the MICA of two terms is the first ancestor of one of them which is also
+ * an ancestor of the other; queries stop there, and don't allocate anything.
+ * 
+ * The index is built for a given version of the taxonomy and a given IC of
+ * the terms, and must be rebuilt when either changes.
+ */
+public class MICAIndex {
+	private final Taxonomy taxonomy;
+
+	private final OrdinalIndex index;
+
+	private final AncestorClosure closure;
+
+	private final double[] ic;
+
+	/** Where the sorted ancestors of each term start in {@link #ancestors}. */
+	private final int[] offsets;
+
+	private final int[] ancestors;
+
+	/**
+	 * @param taxonomy
+	 *            the taxonomy
+	 * @param ic
+	 *            the information content of each term, indexed by ordinal
+	 */
+	public MICAIndex(Taxonomy taxonomy, final double[] ic) {
+		this.taxonomy = taxonomy;
+		this.closure = taxonomy.getAncestorClosure();
+		this.index = this.closure.getIndex();
+		this.ic = ic;
+		int size = this.index.size();
+
+		// Rank all the terms by descending IC; on ties, deeper terms first
+		Integer[] byIC = new Integer[size];
+		for (int i = 0; i < size; ++i) {
+			byIC[i] = i;
+		}
+		Arrays.sort(byIC, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				int result = Double.compare(ic[o2], ic[o1]);
+				return result != 0 ? result : o2.compareTo(o1);
+			}
+		});
+		int[] rank = new int[size];
+		for (int i = 0; i < size; ++i) {
+			rank[byIC[i]] = i;
+		}
+
+		this.offsets = new int[size + 1];
+		for (int i = 0; i < size; ++i) {
+			this.offsets[i + 1] = this.offsets[i]
+					+ this.closure.getAncestorCount(i);
+		}
+		this.ancestors = new int[this.offsets[size]];
+		for (int i = 0; i < size; ++i) {
+			int[] termAncestors = this.closure.getAncestors(i);
+			for (int j = 0; j < termAncestors.length; ++j) {
+				termAncestors[j] = rank[termAncestors[j]];
+			}
+			Arrays.sort(termAncestors);
+			for (int j = 0; j < termAncestors.length; ++j) {
+				this.ancestors[this.offsets[i] + j] = byIC[termAncestors[j]];
+			}
+		}
+	}
+
+	/**
+	 * @return the ordinals index this MICA index was computed for
+	 */
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the ordinal of the most informative common ancestor of two
+	 *         terms, or {@code -1} if they have no common ancestor
+	 */
+	public int getMICAOrdinal(int ordinal1, int ordinal2) {
+		// Scan the shorter ancestor list
+		if (this.offsets[ordinal1 + 1] - this.offsets[ordinal1] > this.offsets[ordinal2 + 1]
+				- this.offsets[ordinal2]) {
+			int tmp = ordinal1;
+			ordinal1 = ordinal2;
+			ordinal2 = tmp;
+		}
+		for (int k = this.offsets[ordinal1], end = this.offsets[ordinal1 + 1]; k < end; ++k) {
+			if (this.closure.isAncestor(this.ancestors[k], ordinal2)) {
+				return this.ancestors[k];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the information content of the most informative common
+	 *         ancestor of two terms, or {@code 0} if they have no common
+	 *         ancestor
+	 */
+	public double getMICAIC(int ordinal1, int ordinal2) {
+		int mica = getMICAOrdinal(ordinal1, ordinal2);
+		return mica < 0 ? 0 : this.ic[mica];
+	}
+
+	/**
+	 * @return the identifier of the most informative common ancestor of two
+	 *         terms, or the root identifier if one of the terms is unknown or
+	 *         they have no common ancestor
+	 */
+	public String getMICAId(String termId1, String termId2) {
+		int ordinal1 = this.taxonomy.getOrdinal(termId1);
+		int ordinal2 = this.taxonomy.getOrdinal(termId2);
+		int mica = (ordinal1 < 0 || ordinal2 < 0) ? -1 : getMICAOrdinal(
+				ordinal1, ordinal2);
+		return mica < 0 ? this.taxonomy.getRootId() : this.index.getId(mica);
+	}
+}
@@ -8,14 +8,17 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
-import edu.toronto.cs.ontools.annotation.GeneGOAnnotations;
-import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
 import edu.toronto.cs.ontools.main.AbstractCommandAction;
+import edu.toronto.cs.ontools.main.ConcurrentLoader;
+import edu.toronto.cs.ontools.main.ConcurrentLoader.AnnotationFactory;
+import edu.toronto.cs.ontools.main.OntologyRegistry;
 import edu.toronto.cs.ontools.prediction.ICPredictor;
 import edu.toronto.cs.ontools.prediction.Predictor;
-import edu.toronto.cs.ontools.taxonomy.GO;
-import edu.toronto.cs.ontools.taxonomy.HPO;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
 
 public class Lookup extends AbstractCommandAction {
 
@@ -26,16 +29,44 @@ public class Lookup extends AbstractCommandAction {
 	private boolean lazy = false;
 
 	public void run(String queryFileName, String refFileName,
-			String outputFileName, List<String> evidenceSources) {
+			String outputFileName, final List<String> evidenceSources) {
 		Predictor hP = new ICPredictor(), gP = new ICPredictor();
 
-		System.out.print("Loading OMIM HPO annotations... ");
+		System.out.print("Loading OMIM HPO and Gene GO annotations... ");
 		System.out.flush();
-		hP.setAnnotation(new OmimHPOAnnotations(new HPO()));
-		System.out.println("Done");
-		System.out.print("Loading Gene GO annotations... ");
-		System.out.flush();
-		gP.setAnnotation(new GeneGOAnnotations(new GO(), evidenceSources));
+		// Both taxonomy + annotation chains are loaded at the same time
+		final OntologyRegistry registry = OntologyRegistry.getInstance();
+		ConcurrentLoader loader = new ConcurrentLoader();
+		Future<Taxonomy> hpo = loader.loadTaxonomy(new Callable<Taxonomy>() {
+			public Taxonomy call() {
+				return registry.getTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+			}
+		});
+		Future<Taxonomy> go = loader.loadTaxonomy(new Callable<Taxonomy>() {
+			public Taxonomy call() {
+				return registry.getTaxonomy(OntologyRegistry.TAXONOMY_GO);
+			}
+		});
+		Future<TaxonomyAnnotation> omimHpo = loader.loadAnnotation(hpo,
+				new AnnotationFactory<TaxonomyAnnotation>() {
+					public TaxonomyAnnotation create(Taxonomy taxonomy) {
+						return registry.getAnnotation(
+								OntologyRegistry.TAXONOMY_HPO,
+								OntologyRegistry.ANNOTATION_OMIM);
+					}
+				});
+		Future<TaxonomyAnnotation> geneGo = loader.loadAnnotation(go,
+				new AnnotationFactory<TaxonomyAnnotation>() {
+					public TaxonomyAnnotation create(Taxonomy taxonomy) {
+						return registry.getAnnotation(
+								OntologyRegistry.TAXONOMY_GO,
+								OntologyRegistry.ANNOTATION_GENE,
+								evidenceSources);
+					}
+				});
+		loader.shutdown();
+		hP.setAnnotation(ConcurrentLoader.get(omimHpo));
+		gP.setAnnotation(ConcurrentLoader.get(geneGo));
 		System.out.println("Done");
 
 		try {
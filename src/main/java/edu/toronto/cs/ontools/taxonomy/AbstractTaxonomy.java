@@ -19,45 +19,96 @@
  */
 package edu.toronto.cs.ontools.taxonomy;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
-
-import org.apache.commons.io.IOUtils;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
+import edu.toronto.cs.ontools.main.ConcurrentLoader;
 import edu.toronto.cs.ontools.main.LocalFileUtils;
+import edu.toronto.cs.ontools.utils.graph.AncestorClosure;
+import edu.toronto.cs.ontools.utils.graph.CompressedAncestorClosure;
 import edu.toronto.cs.ontools.utils.graph.DAG;
 import edu.toronto.cs.ontools.utils.graph.DAGNode;
+import edu.toronto.cs.ontools.utils.graph.DenseAncestorClosure;
+import edu.toronto.cs.ontools.utils.graph.DepthIndex;
+import edu.toronto.cs.ontools.utils.graph.DescendantClosure;
 import edu.toronto.cs.ontools.utils.graph.IDAGNode;
+import edu.toronto.cs.ontools.utils.graph.OffHeapAncestorClosure;
+import edu.toronto.cs.ontools.utils.graph.OffHeapStorage;
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
+import edu.toronto.cs.ontools.utils.graph.PathDistanceOracle;
+import edu.toronto.cs.ontools.utils.graph.ReachabilityIndex;
 import edu.toronto.cs.ontools.utils.maps.CounterMap;
 
 public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 		Taxonomy {
 	public final static String PARENT_ID_REGEX = "^([A-Z]{2}\\:[0-9]{7})\\s*!\\s*.*";
 
-	private final static String TERM_MARKER = "[Term]";
-
-	private final static String END_OF_TERM_LIST_MARKER = "[Typedef]";
+	/**
+	 * Dense closures of larger taxonomies take more than a few tens of MB.
+	 */
+	public static final int DEFAULT_DENSE_CLOSURE_LIMIT = 20000;
 
-	private final static String FIELD_NAME_VALUE_SEPARATOR = "\\s*:\\s+";
+	private Map<String, String> alternateIdMapping = new HashMap<String, String>();
 
-	private final Map<String, String> alternateIdMapping = new HashMap<String, String>();
+	/**
+	 * Whether the alternative id mapping is shared with a copy of this
+	 * taxonomy, in which case it is copied before being changed.
+	 */
+	private boolean alternateIdMappingShared;
 
 	private IDAGNode root;
 
-	private final Map<String, Set<String>> ancestorCache = new HashMap<String, Set<String>>();
+	/**
+	 * Ancestors already looked up; the first lookup of a term computes its
+	 * ancestors, concurrent lookups of the same term wait for that result.
+	 */
+	private final ConcurrentMap<String, Future<Set<String>>> ancestorCache = new ConcurrentHashMap<String, Future<Set<String>>>();
+
+	private volatile AncestorClosure ancestorClosure;
+
+	/**
+	 * The last ancestor closure built for this taxonomy or for its copies,
+	 * shared by all of them; a new closure reuses its unchanged rows.
+	 */
+	private AtomicReference<AncestorClosure> lastClosure = new AtomicReference<AncestorClosure>();
+
+	private volatile DescendantClosure descendantClosure;
+
+	private volatile ReachabilityIndex reachabilityIndex;
+
+	private volatile IdResolver idResolver;
+
+	private ForkJoinPool closurePool;
+
+	private int denseClosureLimit = DEFAULT_DENSE_CLOSURE_LIMIT;
+
+	private OffHeapStorage offHeapStorage;
+
+	private boolean snapshotsEnabled = true;
+
+	private boolean eagerIndexing = true;
+
+	private OBOParser parser = new ParallelOBOParser();
+
+	private FieldRetentionPolicy fieldRetentionPolicy = FieldRetentionPolicy.NONE;
 
 	/*
 	 * (non-Javadoc)
@@ -69,40 +120,30 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 		if (source == null) {
 			return -1;
 		}
+		// Use the binary snapshot of a previous parse, if still valid
+		File snapshot = getSnapshotFile(source);
+		if (this.snapshotsEnabled
+				&& TaxonomySnapshotFile.isUpToDate(snapshot, source,
+						this.fieldRetentionPolicy)) {
+			clear();
+			if (TaxonomySnapshotFile.read(snapshot, this)) {
+				prepare();
+				return size();
+			}
+		}
+		int result = parse(source);
+		prepare();
+		if (this.snapshotsEnabled && result > 0) {
+			TaxonomySnapshotFile.write(this, source, snapshot);
+		}
+		return result;
+	}
+
+	protected int parse(File source) {
 		// Load data
 		clear();
-		TermData data = new TermData();
 		try {
-			BufferedReader in = new BufferedReader(new FileReader(source));
-			String line;
-			while ((line = in.readLine()) != null) {
-				if (line.trim().equalsIgnoreCase(END_OF_TERM_LIST_MARKER)) {
-					break;
-				}
-				if (line.trim().equalsIgnoreCase(TERM_MARKER)) {
-					if (data.isValid()) {
-						this.createTaxonomyTerm(data);
-					} else if (data.getReplacement() != null) {
-						this.alternateIdMapping.put(data.getId(), data
-								.getReplacement());
-					}
-					data.clear();
-					continue;
-				}
-				String pieces[] = line.split(FIELD_NAME_VALUE_SEPARATOR, 2);
-				if (pieces.length != 2) {
-					continue;
-				}
-				String name = pieces[0], value = pieces[1];
-				data.addTo(name, value);
-			}
-			if (data.isValid()) {
-				this.createTaxonomyTerm(data);
-			} else if (data.getReplacement() != null) {
-				this.alternateIdMapping
-						.put(data.getId(), data.getReplacement());
-			}
-			in.close();
+			this.parser.parse(source, this);
 		} catch (NullPointerException ex) {
 			ex.printStackTrace();
 			System.err.println("File does not exist");
@@ -115,10 +156,197 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 			ex.printStackTrace();
 		}
 		cleanArcs();
+		invalidateIndex();
 		// How much did we load:
 		return size();
 	}
 
+	/**
+	 * Loads a new release of the taxonomy, applying only the differences with
+	 * the currently loaded one. Unchanged terms are kept as they are, and only
+	 * the cached ancestors of the terms affected by the changes are
+	 * discarded. If the new release cannot be read, the current content is
+	 * kept.
+	 * 
+	 * @param source
+	 *            the new release
+	 * @return the applied changes, or {@code null} if the release could not
+	 *         be read
+	 */
+	public TaxonomyDiff reload(File source) {
+		if (source == null) {
+			return null;
+		}
+		final Set<String> obsoleteIds = new HashSet<String>();
+		final AbstractTaxonomy owner = this;
+		AbstractTaxonomy release = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return owner.getIDPrefix();
+			}
+
+			@Override
+			protected void processTermData(TermData data) {
+				if (data.isObsolete() && data.getId() != null) {
+					obsoleteIds.add(data.getId());
+				}
+				super.processTermData(data);
+			}
+		};
+		release.setParser(this.parser);
+		release.setFieldRetentionPolicy(this.fieldRetentionPolicy);
+		if (release.parse(source) <= 0) {
+			System.err.println("Could not read the new release from "
+					+ source.getAbsolutePath());
+			return null;
+		}
+
+		TaxonomyDiff diff = new TaxonomyDiff();
+		for (TaxonomyTerm term : release.getNodes()) {
+			TaxonomyTerm current = (TaxonomyTerm) getNode(term.getId());
+			if (current == null) {
+				diff.getAddedSet().add(term.getId());
+				continue;
+			}
+			if (!new HashSet<String>(current.getParents())
+					.equals(new HashSet<String>(term.getParents()))) {
+				diff.getReparentedSet().add(term.getId());
+			}
+			if (!current.getName().equals(term.getName())
+					|| !Arrays.equals(current.getFields(), term.getFields())) {
+				diff.getUpdatedSet().add(term.getId());
+			}
+		}
+		for (String id : getNodesIds()) {
+			if (release.getNode(id) == null) {
+				diff.getRemovedSet().add(id);
+				if (obsoleteIds.contains(id)) {
+					diff.getObsoletedSet().add(id);
+				}
+			}
+		}
+		for (Map.Entry<String, String> entry : this.alternateIdMapping
+				.entrySet()) {
+			if (!entry.getValue().equals(
+					release.alternateIdMapping.get(entry.getKey()))) {
+				diff.getRemappedIdsSet().add(entry.getKey());
+			}
+		}
+		for (String id : release.alternateIdMapping.keySet()) {
+			if (!this.alternateIdMapping.containsKey(id)) {
+				diff.getRemappedIdsSet().add(id);
+			}
+		}
+
+		// The ancestors of the old descendants of removed and moved terms
+		// change...
+		Set<String> affected = diff.getAffectedSet();
+		collectDescendants(diff.getRemovedSet(), affected);
+		collectDescendants(diff.getReparentedSet(), affected);
+
+		for (String id : diff.getRemovedSet()) {
+			removeNode(id);
+		}
+		for (String id : diff.getAddedSet()) {
+			TaxonomyTerm term = (TaxonomyTerm) release.getNode(id);
+			TaxonomyTerm newTerm = new TaxonomyTerm(id, term.getName());
+			newTerm.setFields(term.getFields());
+			newTerm.getParents().addAll(term.getParents());
+			addNode(newTerm);
+		}
+		for (String id : diff.getUpdatedSet()) {
+			// Names are immutable, replace the term but keep its arcs
+			TaxonomyTerm current = (TaxonomyTerm) getNode(id);
+			TaxonomyTerm term = (TaxonomyTerm) release.getNode(id);
+			TaxonomyTerm newTerm = new TaxonomyTerm(id, term.getName());
+			newTerm.setFields(term.getFields());
+			newTerm.getParents().addAll(current.getParents());
+			newTerm.getChildren().addAll(current.getChildren());
+			addNode(newTerm);
+		}
+		for (String id : diff.getReparentedSet()) {
+			DAGNode current = getNodeForUpdate(id);
+			for (String parentId : current.getParents()) {
+				// Parents may be given by an alternative id
+				String realId = this.alternateIdMapping.get(parentId);
+				DAGNode parent = realId == null ? null
+						: getNodeForUpdate(realId);
+				if (parent != null) {
+					parent.removeChild(id);
+				}
+			}
+			current.getParents().clear();
+			current.getParents().addAll(release.getNode(id).getParents());
+		}
+		Set<String> linked = new HashSet<String>(diff.getAddedSet());
+		linked.addAll(diff.getReparentedSet());
+		for (String id : linked) {
+			for (String parentId : getNode(id).getParents()) {
+				String realId = release.alternateIdMapping.get(parentId);
+				DAGNode parent = realId == null ? null : getNode(realId);
+				if (parent != null && !parent.hasChild(id)) {
+					getNodeForUpdate(realId).addChild(id);
+				}
+			}
+		}
+		this.root = getNode(release.getRootId());
+		this.alternateIdMapping = release.alternateIdMapping;
+		this.alternateIdMappingShared = false;
+
+		// ...and so do those of the new descendants of added and moved terms
+		collectDescendants(linked, affected);
+		Iterator<String> cached = this.ancestorCache.keySet().iterator();
+		while (cached.hasNext()) {
+			String id = cached.next();
+			if (affected.contains(id)
+					|| diff.getRemappedIdsSet().contains(id)
+					|| affected.contains(getRealId(id))) {
+				cached.remove();
+			}
+		}
+
+		invalidateIndex();
+		prepare();
+
+		if (this.snapshotsEnabled) {
+			TaxonomySnapshotFile.write(this, source, getSnapshotFile(source));
+		}
+		return diff;
+	}
+
+	/**
+	 * Adds some terms, and all the terms below them, to a set of
+	 * identifiers.
+	 */
+	private void collectDescendants(Set<String> ids, Set<String> result) {
+		LinkedList<String> front = new LinkedList<String>(ids);
+		while (!front.isEmpty()) {
+			String id = front.removeFirst();
+			if (!result.add(id)) {
+				continue;
+			}
+			DAGNode node = getNode(id);
+			if (node != null) {
+				front.addAll(node.getChildren());
+			}
+		}
+	}
+
+	/**
+	 * Called by the {@link OBOParser} for each parsed term stanza.
+	 * 
+	 * @param data
+	 *            the fields of the stanza; the parser may reuse this object
+	 *            after this method returns
+	 */
+	protected void processTermData(TermData data) {
+		if (data.isValid()) {
+			this.createTaxonomyTerm(data);
+		} else if (data.getReplacement() != null) {
+			getAlternateIdMapping().put(data.getId(),
+					data.getReplacement());
+		}
+	}
+
 	private void cleanArcs() {
 		Set<IDAGNode> roots = new HashSet<IDAGNode>();
 		// Redo all links
@@ -148,7 +376,7 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 		} else {
 			this.root = new TaxonomyTerm("", "FAKE ROOT");
 			this.addNode((TaxonomyTerm) this.root);
-			this.alternateIdMapping.put(this.root.getId(), this.root.getId());
+			getAlternateIdMapping().put(this.root.getId(), this.root.getId());
 			for (IDAGNode n : roots) {
 				this.root.addChild(n);
 				n.addParent(this.root);
@@ -156,12 +384,82 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 		}
 	}
 
+	@Override
+	public void clear() {
+		super.clear();
+		this.alternateIdMapping = new HashMap<String, String>();
+		this.alternateIdMappingShared = false;
+		this.ancestorCache.clear();
+		this.root = null;
+	}
+
+	public OBOParser getParser() {
+		return this.parser;
+	}
+
+	/**
+	 * Selects how OBO files are read: {@link ParallelOBOParser} (default),
+	 * the sequential {@link MappedOBOParser} or the line based
+	 * {@link TextOBOParser}.
+	 */
+	public void setParser(OBOParser parser) {
+		this.parser = parser;
+	}
+
+	public FieldRetentionPolicy getFieldRetentionPolicy() {
+		return this.fieldRetentionPolicy;
+	}
+
+	/**
+	 * Selects which OBO fields, besides the indexed ones, are kept on the
+	 * loaded terms and available through
+	 * {@link TaxonomyTerm#getFieldValues(String)}. Must be set before
+	 * loading.
+	 */
+	public void setFieldRetentionPolicy(FieldRetentionPolicy policy) {
+		this.fieldRetentionPolicy = (policy == null) ? FieldRetentionPolicy.NONE
+				: policy;
+	}
+
+	public boolean isSnapshotsEnabled() {
+		return this.snapshotsEnabled;
+	}
+
+	public void setSnapshotsEnabled(boolean snapshotsEnabled) {
+		this.snapshotsEnabled = snapshotsEnabled;
+	}
+
+	protected File getSnapshotFile(File source) {
+		// Sources with the same name in different directories get their own
+		return LocalFileUtils.getTemporaryFile(source.getName()
+				+ "-"
+				+ Integer.toHexString(source.getAbsolutePath().hashCode())
+				+ TaxonomySnapshotFile.SNAPSHOT_SUFFIX);
+	}
+
+	/**
+	 * @return the alternative id mapping, ready to be changed
+	 */
+	Map<String, String> getAlternateIdMapping() {
+		if (this.alternateIdMappingShared) {
+			this.alternateIdMapping = new HashMap<String, String>(
+					this.alternateIdMapping);
+			this.alternateIdMappingShared = false;
+		}
+		return this.alternateIdMapping;
+	}
+
+	void setRoot(IDAGNode root) {
+		this.root = root;
+	}
+
 	protected void createTaxonomyTerm(TermData data) {
 		TaxonomyTerm term = new TaxonomyTerm(data);
 		this.addNode(term);
-		this.alternateIdMapping.put(term.getId(), term.getId());
+		Map<String, String> mapping = getAlternateIdMapping();
+		mapping.put(term.getId(), term.getId());
 		for (String altId : data.safeGet(TermData.ALT_ID_FIELD_NAME)) {
-			this.alternateIdMapping.put(altId, term.getId());
+			mapping.put(altId, term.getId());
 		}
 	}
 
@@ -172,7 +470,41 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 	 * edu.toronto.cs.cidb.hpoa.taxonomy.Taxonomy#getRealId(java.lang.String)
 	 */
 	public String getRealId(String id) {
-		return this.alternateIdMapping.get(id);
+		if (isFrozen()) {
+			return getIdResolver().getRealId(id);
+		}
+		if (id == null || getNode(id) != null) {
+			return id;
+		}
+		// Same resolution as the IdResolver, on the node map
+		String target = this.alternateIdMapping.get(id);
+		for (int i = 0; target != null && getNode(target) == null
+				&& i < IdResolver.MAX_REPLACEMENT_CHAIN; ++i) {
+			target = this.alternateIdMapping.get(target);
+		}
+		return target != null && getNode(target) != null ? target : null;
+	}
+
+	/**
+	 * Returns the table resolving term ids, alternative ids and replaced ids
+	 * to live terms for the current version of the taxonomy, building it if
+	 * needed. Once the taxonomy is frozen, all the lookups by id go through
+	 * this table.
+	 */
+	public IdResolver getIdResolver() {
+		OrdinalIndex index = getOrdinalIndex();
+		IdResolver result = this.idResolver;
+		if (result == null || result.getIndex() != index) {
+			synchronized (this) {
+				result = this.idResolver;
+				if (result == null || result.getIndex() != index) {
+					result = new IdResolver(this, index,
+							this.alternateIdMapping);
+					this.idResolver = result;
+				}
+			}
+		}
+		return result;
 	}
 
 	/*
@@ -181,6 +513,9 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 	 * @see edu.toronto.cs.cidb.hpoa.taxonomy.Taxonomy#getTerm(java.lang.String)
 	 */
 	public TaxonomyTerm getTerm(String id) {
+		if (isFrozen()) {
+			return getIdResolver().getTerm(id);
+		}
 		String realId = this.getRealId(id);
 		if (realId != null) {
 			return (TaxonomyTerm) this.getNode(realId);
@@ -229,7 +564,69 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 	 * @see edu.toronto.cs.cidb.hpoa.taxonomy.Taxonomy#getRoot()
 	 */
 	public TaxonomyTerm getRoot() {
-		return (TaxonomyTerm) this.root;
+		// The root object may have been replaced by a private copy since
+		return (TaxonomyTerm) getNode(this.root.getId());
+	}
+
+	/**
+	 * Returns an immutable copy of the current version of the taxonomy, for
+	 * readers which must not see later changes, for example while the
+	 * taxonomy is being reduced. The copy shares the terms, the indexes and
+	 * the closures with this taxonomy; terms changed later are copied first,
+	 * so that the changes are only visible here. Without
+	 * {@link #setEagerIndexing(boolean) eager indexing}, the copy builds its
+	 * indexes on first use. Must be called from the thread changing the
+	 * taxonomy, if any.
+	 */
+	public ImmutableTaxonomy pinVersion() {
+		prepare();
+		return new ImmutableTaxonomy(this);
+	}
+
+	/**
+	 * Returns a copy of this taxonomy which can be changed independently,
+	 * for example for trying out term removals. Only the ancestors already
+	 * looked up are copied: the terms, the alternative id mapping and the
+	 * closures are shared until one of the taxonomies changes them, and then
+	 * only the changed terms are copied. Subclasses return a copy of their
+	 * own class.
+	 */
+	@Override
+	public AbstractTaxonomy clone() {
+		final String idPrefix = getIDPrefix();
+		AbstractTaxonomy result = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return idPrefix;
+			}
+		};
+		result.copyFrom(this);
+		return result;
+	}
+
+	/**
+	 * Turns this (empty) taxonomy into a copy of another one, sharing the
+	 * terms, the alternative id mapping and the computed closures.
+	 */
+	protected void copyFrom(AbstractTaxonomy source) {
+		super.copyFrom(source);
+		// The copy can reuse the ancestors already looked up
+		this.ancestorCache.putAll(source.ancestorCache);
+		this.root = source.root;
+		this.alternateIdMapping = source.alternateIdMapping;
+		this.alternateIdMappingShared = true;
+		source.alternateIdMappingShared = true;
+		this.ancestorClosure = source.ancestorClosure;
+		this.lastClosure = source.lastClosure;
+		this.descendantClosure = source.descendantClosure;
+		this.reachabilityIndex = source.reachabilityIndex;
+		this.idResolver = source.idResolver;
+		this.closurePool = source.closurePool;
+		this.denseClosureLimit = source.denseClosureLimit;
+		this.offHeapStorage = source.offHeapStorage;
+		this.snapshotsEnabled = source.snapshotsEnabled;
+		this.eagerIndexing = source.eagerIndexing;
+		this.parser = source.parser;
+		this.fieldRetentionPolicy = source.fieldRetentionPolicy;
 	}
 
 	@Override
@@ -239,32 +636,31 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 
 	@Override
 	public boolean removeNode(TaxonomyTerm node) {
-		return super.removeNode(node);
+		return removeNode((DAGNode) node);
+	}
+
+	@Override
+	public int removeNodes(Collection<String> ids) {
+		// The ancestors of the terms below the removed ones change
+		Set<String> affected = new HashSet<String>();
+		collectDescendants(new HashSet<String>(ids), affected);
+		for (String id : affected) {
+			this.ancestorCache.remove(id);
+		}
+		return super.removeNodes(ids);
 	}
 
 	protected Set<String> findAncestors(String id) {
 		Set<String> result = new HashSet<String>();
-		if (this.getTerm(id) == null) {
+		int ordinal = this.getOrdinal(id);
+		if (ordinal < 0) {
 			return result;
 		}
-		Set<String> front = new HashSet<String>();
-		Set<String> newFront = new HashSet<String>();
-		front.add(this.getRealId(id));
-		result.add(this.getRealId(id));
-		while (!front.isEmpty()) {
-			for (String nextTermId : front) {
-
-				for (String parentTermId : this.getTerm(nextTermId)
-						.getParents()) {
-					if (!result.contains(parentTermId)) {
-						newFront.add(parentTermId);
-						result.add(parentTermId);
-					}
-				}
-			}
-			front.clear();
-			front.addAll(newFront);
-			newFront.clear();
+		OrdinalIndex index = getOrdinalIndex();
+		AncestorClosure closure = getAncestorClosure();
+		for (int a = closure.nextAncestor(ordinal, 0); a >= 0; a = closure
+				.nextAncestor(ordinal, a + 1)) {
+			result.add(index.getId(a));
 		}
 		return result;
 	}
@@ -276,36 +672,302 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 	 * edu.toronto.cs.cidb.hpoa.taxonomy.Taxonomy#getAncestors(java.lang.String)
 	 */
 	public Set<String> getAncestors(String termId) {
-		if (this.ancestorCache.get(termId) == null) {
-			this.ancestorCache.put(termId, this.findAncestors(termId));
+		// Cache by real id, so that removals only have to evict real ids
+		String realId = this.getRealId(termId);
+		final String key = realId != null ? realId : termId;
+		Future<Set<String>> result = this.ancestorCache.get(key);
+		if (result == null) {
+			FutureTask<Set<String>> task = new FutureTask<Set<String>>(
+					new Callable<Set<String>>() {
+						public Set<String> call() {
+							return Collections.unmodifiableSet(findAncestors(key));
+						}
+					});
+			result = this.ancestorCache.putIfAbsent(key, task);
+			if (result == null) {
+				result = task;
+				task.run();
+			}
+		}
+		try {
+			return ConcurrentLoader.get(result);
+		} catch (RuntimeException ex) {
+			// Don't cache failures
+			this.ancestorCache.remove(key, result);
+			throw ex;
 		}
-		return this.ancestorCache.get(termId);
 	}
 
-	public File getInputFileHandler(String inputLocation, boolean forceUpdate) {
-		try {
-			File result = new File(inputLocation);
-			if (!result.exists()) {
-				String name = inputLocation.substring(inputLocation
-						.lastIndexOf('/') + 1);
-				result = LocalFileUtils.getTemporaryFile(name);
-				if (!result.exists()) {
-					result.createNewFile();
-					BufferedInputStream in = new BufferedInputStream((new URL(
-							inputLocation)).openStream());
-					OutputStream out = new FileOutputStream(result);
-					IOUtils.copy(in, out);
-					out.flush();
-					out.close();
+	/**
+	 * Returns the ordinal of a term, resolving alternative identifiers.
+	 * 
+	 * @return the ordinal, or {@code -1} if there is no such term
+	 */
+	@Override
+	public int getOrdinal(String id) {
+		if (isFrozen()) {
+			return getIdResolver().resolve(id);
+		}
+		String realId = this.getRealId(id);
+		return realId == null ? -1 : super.getOrdinal(realId);
+	}
+
+	public String getTermId(int ordinal) {
+		return getOrdinalIndex().getId(ordinal);
+	}
+
+	public TaxonomyTerm getTerm(int ordinal) {
+		if (isFrozen()) {
+			return getIdResolver().getTerm(ordinal);
+		}
+		return getNode(ordinal);
+	}
+
+	/**
+	 * Ordinal equivalent of {@link #getAncestors(String)}. Each call returns
+	 * a new array; {@link AncestorClosure#isAncestor(int, int)} and
+	 * {@link AncestorClosure#nextAncestor(int, int)} on
+	 * {@link #getAncestorClosure()} read the ancestors without copying them.
+	 * 
+	 * @return the sorted ordinals of the ancestors of the term, including the
+	 *         term itself
+	 */
+	public int[] getAncestorOrdinals(int ordinal) {
+		return getAncestorClosure().getAncestors(ordinal);
+	}
+
+	/**
+	 * Returns the ancestors of all the terms, computing them if the taxonomy
+	 * changed since the last call. The closure is computed when the taxonomy
+	 * is loaded, and shared by all its users.
+	 */
+	public AncestorClosure getAncestorClosure() {
+		OrdinalIndex index = getOrdinalIndex();
+		AncestorClosure result = this.ancestorClosure;
+		if (result == null || result.getIndex() != index) {
+			synchronized (this) {
+				result = this.ancestorClosure;
+				if (result == null || result.getIndex() != index) {
+					result = buildAncestorClosure(index);
+					this.ancestorClosure = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private AncestorClosure buildAncestorClosure(OrdinalIndex index) {
+		AncestorClosure result = null;
+		if (this.offHeapStorage != null) {
+			result = OffHeapAncestorClosure.build(index, this.offHeapStorage,
+					getIDPrefix().replaceAll("[^A-Za-z0-9]", ""),
+					this.closurePool);
+			if (result == null) {
+				System.err.println("Cannot store the closure of "
+						+ getIDPrefix() + " off-heap, keeping it on the heap");
+			}
+		}
+		if (result == null) {
+			// Terms whose ancestors didn't change share their rows with the
+			// closure of the previous version
+			AncestorClosure previous = this.lastClosure.get();
+			if (index.size() <= this.denseClosureLimit) {
+				result = DenseAncestorClosure.build(index, this.closurePool,
+						previous instanceof DenseAncestorClosure
+								? (DenseAncestorClosure) previous : null);
+			} else {
+				result = CompressedAncestorClosure.build(index,
+						this.closurePool,
+						previous instanceof CompressedAncestorClosure
+								? (CompressedAncestorClosure) previous : null);
+			}
+		}
+		this.lastClosure.set(result);
+		return result;
+	}
+
+	/**
+	 * Returns the descendants of all the terms, computing them on first use
+	 * and again after the taxonomy changes.
+	 */
+	public DescendantClosure getDescendantClosure() {
+		OrdinalIndex index = getOrdinalIndex();
+		DescendantClosure result = this.descendantClosure;
+		if (result == null || result.getIndex() != index) {
+			synchronized (this) {
+				result = this.descendantClosure;
+				if (result == null || result.getIndex() != index) {
+					result = DescendantClosure.build(index);
+					this.descendantClosure = result;
 				}
 			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the identifiers of the descendants of a term, including the
+	 * term itself.
+	 */
+	public Set<String> getDescendants(String termId) {
+		Set<String> result = new HashSet<String>();
+		int ordinal = this.getOrdinal(termId);
+		if (ordinal < 0) {
 			return result;
-		} catch (IOException ex) {
-			ex.printStackTrace();
-			return null;
+		}
+		OrdinalIndex index = getOrdinalIndex();
+		for (int descendant : getDescendantClosure().getDescendants(ordinal)) {
+			result.add(index.getId(descendant));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the interval labels used for answering
+	 * {@link #isAncestor(String, String)}, computing them on first use and
+	 * again after the taxonomy changes.
+	 */
+	public ReachabilityIndex getReachabilityIndex() {
+		OrdinalIndex index = getOrdinalIndex();
+		ReachabilityIndex result = this.reachabilityIndex;
+		if (result == null || result.getIndex() != index) {
+			synchronized (this) {
+				result = this.reachabilityIndex;
+				if (result == null || result.getIndex() != index) {
+					result = ReachabilityIndex.build(index);
+					this.reachabilityIndex = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if a term subsumes another term, without computing ancestor
+	 * sets.
+	 * 
+	 * @return {@code true} if the first term is an ancestor of, or the same
+	 *         as, the second term
+	 */
+	public boolean isAncestor(String ancestorId, String termId) {
+		int ancestor = this.getOrdinal(ancestorId);
+		int term = this.getOrdinal(termId);
+		return ancestor >= 0 && term >= 0
+				&& getReachabilityIndex().isAncestor(ancestor, term);
+	}
+
+	/**
+	 * @return the number of arcs on the shortest path between two terms going
+	 *         through a common ancestor, or {@code -1} if a term is unknown
+	 * @see PathDistanceOracle#getDistance(int, int)
+	 */
+	public int getPathDistance(String termId1, String termId2) {
+		int ordinal1 = this.getOrdinal(termId1);
+		int ordinal2 = this.getOrdinal(termId2);
+		if (ordinal1 < 0 || ordinal2 < 0) {
+			return -1;
+		}
+		return getPathDistanceOracle().getDistance(ordinal1, ordinal2);
+	}
+
+	/**
+	 * @return the Wu-Palmer similarity of two terms, {@code 0} if a term is
+	 *         unknown
+	 * @see PathDistanceOracle#getWuPalmerSimilarity(int, int)
+	 */
+	public double getWuPalmerSimilarity(String termId1, String termId2) {
+		int ordinal1 = this.getOrdinal(termId1);
+		int ordinal2 = this.getOrdinal(termId2);
+		if (ordinal1 < 0 || ordinal2 < 0) {
+			return 0;
+		}
+		return getPathDistanceOracle().getWuPalmerSimilarity(ordinal1,
+				ordinal2);
+	}
+
+	public ForkJoinPool getClosurePool() {
+		return this.closurePool;
+	}
+
+	/**
+	 * Sets the pool used for computing the ancestor closure in parallel; by
+	 * default the closure is computed in the loading thread.
+	 */
+	public void setClosurePool(ForkJoinPool closurePool) {
+		this.closurePool = closurePool;
+	}
+
+	public int getDenseClosureLimit() {
+		return this.denseClosureLimit;
+	}
+
+	/**
+	 * Sets the size up to which the ancestor closure is stored as plain
+	 * bitsets; larger taxonomies use a compressed closure.
+	 */
+	public void setDenseClosureLimit(int denseClosureLimit) {
+		this.denseClosureLimit = denseClosureLimit;
+	}
+
+	public OffHeapStorage getOffHeapStorage() {
+		return this.offHeapStorage;
+	}
+
+	/**
+	 * Sets where the ancestor closure is stored outside of the heap, which
+	 * keeps it out of the garbage collector's way; with
+	 * {@link OffHeapStorage#mapped(File)} the closure is also reused by later
+	 * loads of the same taxonomy, in this and other JVMs. The closure then
+	 * uses plain bitsets regardless of {@link #getDenseClosureLimit()}, about
+	 * {@code n * n / 16} bytes for {@code n} terms; closures too large for
+	 * one buffer stay on the heap. {@code null}, the default, keeps
+	 * everything on the heap.
+	 */
+	public synchronized void setOffHeapStorage(OffHeapStorage offHeapStorage) {
+		this.offHeapStorage = offHeapStorage;
+		this.ancestorClosure = null;
+	}
+
+	@Override
+	public void freeze() {
+		super.freeze();
+		getAncestorClosure();
+	}
+
+	/**
+	 * Freezes the taxonomy after a change, or only trims its arc lists when
+	 * the indexes are built on first use.
+	 */
+	private void prepare() {
+		if (this.eagerIndexing) {
+			freeze();
+		} else {
+			trimToSize();
 		}
 	}
 
+	public boolean isEagerIndexing() {
+		return this.eagerIndexing;
+	}
+
+	/**
+	 * Sets whether loading, reloading and pinning a version
+	 * {@link #freeze() freeze} the taxonomy, which builds the ordinal index
+	 * and the ancestor closure right away, as by default; otherwise they are
+	 * built on first use. Taxonomies kept only in case they are needed, like
+	 * old releases, are best left unindexed.
+	 */
+	public void setEagerIndexing(boolean eagerIndexing) {
+		this.eagerIndexing = eagerIndexing;
+	}
+
+	/**
+	 * @see LocalFileUtils#getInputFileHandler(String, boolean)
+	 */
+	public File getInputFileHandler(String inputLocation, boolean forceUpdate) {
+		return LocalFileUtils.getInputFileHandler(inputLocation, forceUpdate);
+	}
+
 	public void display() {
 		display(System.out);
 	}
@@ -323,20 +985,22 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 	}
 
 	protected void display(PrintStream out) {
-		Map<String, Boolean> visited = new HashMap<String, Boolean>();
-		Set<String> crt = new TreeSet<String>();
-		Set<String> next = new TreeSet<String>();
-		crt.add(this.getRootId());
+		DepthIndex depths = getDepthIndex();
+		OrdinalIndex index = depths.getIndex();
 		CounterMap<Integer> h = new CounterMap<Integer>();
 
 		int min = this.size(), max = 0;
 		double avg = 0;
 
-		while (!crt.isEmpty()) {
-			for (String id : crt) {
-				if (Boolean.TRUE.equals(visited.get(id))) {
-					continue;
-				}
+		// Terms are listed by level, in the order of a breadth-first traversal
+		for (int d = 0; d < depths.getDepthLevelCount(); ++d) {
+			int[] level = depths.getDepthLevel(d);
+			String[] ids = new String[level.length];
+			for (int i = 0; i < level.length; ++i) {
+				ids[i] = index.getId(level[i]);
+			}
+			Arrays.sort(ids);
+			for (String id : ids) {
 				TaxonomyTerm term = this.getTerm(id);
 				int p = term.getParents().size();
 				h.addTo(p);
@@ -348,12 +1012,7 @@ public abstract class AbstractTaxonomy extends DAG<TaxonomyTerm> implements
 				}
 				avg += p;
 				out.println(term);
-				visited.put(id, true);
-				next.addAll(term.getChildren());
 			}
-			crt.clear();
-			crt.addAll(next);
-			next.clear();
 		}
 		avg /= this.size();
 		out.println(h);
@@ -0,0 +1,120 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the OBO fields which, besides the ones always indexed by the
+ * taxonomy ({@code id}, {@code name}, {@code is_a}, {@code alt_id},
+ * {@code is_obsolete} and {@code replaced_by}), should be kept on the loaded
+ * {@link TaxonomyTerm}s, for example {@code synonym} or {@code xref}. All
+ * other fields are dropped while parsing.
+ */
+public class FieldRetentionPolicy {
+	/** Only keep the indexed fields. */
+	public static final FieldRetentionPolicy NONE = new FieldRetentionPolicy();
+
+	private final String[] names;
+
+	private final byte[][] nameBytes;
+
+	public FieldRetentionPolicy(String... names) {
+		Set<String> uniqueNames = new LinkedHashSet<String>(Arrays
+				.asList(names));
+		this.names = uniqueNames.toArray(new String[uniqueNames.size()]);
+		this.nameBytes = new byte[this.names.length][];
+		for (int i = 0; i < this.names.length; ++i) {
+			this.nameBytes[i] = this.names[i].getBytes();
+		}
+	}
+
+	public List<String> getFieldNames() {
+		return Collections.unmodifiableList(Arrays.asList(this.names));
+	}
+
+	public boolean isEmpty() {
+		return this.names.length == 0;
+	}
+
+	/**
+	 * Checks if a field must be retained.
+	 * 
+	 * @param name
+	 *            a field name
+	 * @return the canonical instance of the field name if it is retained,
+	 *         {@code null} otherwise
+	 */
+	public String getRetainedName(String name) {
+		for (String n : this.names) {
+			if (n.equals(name)) {
+				return n;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if a field must be retained, without decoding its name.
+	 * 
+	 * @param buffer
+	 *            the buffer holding the field name
+	 * @param start
+	 *            the offset of the field name
+	 * @param end
+	 *            the offset after the field name
+	 * @return the canonical instance of the field name if it is retained,
+	 *         {@code null} otherwise
+	 */
+	public String getRetainedName(ByteBuffer buffer, int start, int end) {
+		for (int i = 0; i < this.nameBytes.length; ++i) {
+			if (MappedOBOParser.matches(buffer, start, end, this.nameBytes[i])) {
+				return this.names[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.names);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return Arrays.equals(this.names, ((FieldRetentionPolicy) obj).names);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(this.names);
+	}
+}
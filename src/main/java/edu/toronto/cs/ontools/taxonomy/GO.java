@@ -19,13 +19,29 @@
  */
 package edu.toronto.cs.ontools.taxonomy;
 
+import java.io.File;
+
+import edu.toronto.cs.ontools.main.LocalFileUtils;
+
 public class GO extends AbstractTaxonomy {
+	public static final String DEFAULT_LOCATION = "http://www.geneontology.org/ontology/obo_format_1_2/gene_ontology_ext.obo";
+
 	public GO() {
+		this(LocalFileUtils.getInputFileHandler(DEFAULT_LOCATION, false));
+	}
+
+	public GO(File source) {
 		super();
-		this
-				.load(getInputFileHandler(
-						"http://www.geneontology.org/ontology/obo_format_1_2/gene_ontology_ext.obo",
-						false));
+		this.load(source);
+	}
+
+	private GO(GO source) {
+		copyFrom(source);
+	}
+
+	@Override
+	public GO clone() {
+		return new GO(this);
 	}
 
 	@Override
@@ -19,13 +19,29 @@
  */
 package edu.toronto.cs.ontools.taxonomy;
 
+import java.io.File;
+
+import edu.toronto.cs.ontools.main.LocalFileUtils;
+
 public class HPO extends AbstractTaxonomy {
+	public static final String DEFAULT_LOCATION = "http://compbio.charite.de/svn/hpo/trunk/src/ontology/human-phenotype-ontology.obo";
+
 	public HPO() {
+		this(LocalFileUtils.getInputFileHandler(DEFAULT_LOCATION, false));
+	}
+
+	public HPO(File source) {
 		super();
-		this
-				.load(getInputFileHandler(
-						"http://compbio.charite.de/svn/hpo/trunk/src/ontology/human-phenotype-ontology.obo",
-						false));
+		this.load(source);
+	}
+
+	private HPO(HPO source) {
+		copyFrom(source);
+	}
+
+	@Override
+	public HPO clone() {
+		return new HPO(this);
 	}
 
 	@Override
@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
+
+/**
+ * Maps any known identifier of a term (its own id, an {@code alt_id}, or the
+ * id of an obsolete term with a {@code replaced_by} replacement) to the
+ * ordinal of the live term. Live ids are looked up in the
+ * {@link OrdinalIndex}; the other ids in an open addressing hash table of
+ * their own, filled when the resolver is built, following chains of
+ * replacements. The terms are also kept by ordinal, so a lookup of a term by
+ * id doesn't go through the term map either.
+ */
+public class IdResolver {
+	/** Replacement chains longer than this are considered cycles. */
+	static final int MAX_REPLACEMENT_CHAIN = 16;
+
+	private final OrdinalIndex index;
+
+	private final String[] keys;
+
+	private final int[] ordinals;
+
+	private final int mask;
+
+	private final TaxonomyTerm[] terms;
+
+	private final int size;
+
+	IdResolver(AbstractTaxonomy taxonomy, OrdinalIndex index,
+			Map<String, String> alternateIdMapping) {
+		this.index = index;
+		int capacity = Integer.highestOneBit(Math.max(4,
+				2 * alternateIdMapping.size()) - 1) << 1;
+		this.keys = new String[capacity];
+		this.ordinals = new int[capacity];
+		this.mask = capacity - 1;
+		this.terms = new TaxonomyTerm[index.size()];
+
+		for (int o = 0; o < index.size(); ++o) {
+			this.terms[o] = (TaxonomyTerm) taxonomy.getNode(index.getId(o));
+		}
+		int count = index.size();
+		for (Map.Entry<String, String> entry : alternateIdMapping.entrySet()) {
+			if (index.getOrdinal(entry.getKey()) >= 0) {
+				// Live ids win over alternative ids
+				continue;
+			}
+			String target = entry.getValue();
+			int ordinal = index.getOrdinal(target);
+			for (int i = 0; ordinal < 0 && target != null
+					&& i < MAX_REPLACEMENT_CHAIN; ++i) {
+				target = alternateIdMapping.get(target);
+				ordinal = target == null ? -1 : index.getOrdinal(target);
+			}
+			if (ordinal >= 0 && put(entry.getKey(), ordinal)) {
+				++count;
+			}
+		}
+		this.size = count;
+	}
+
+	private static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return {@code true} if the id wasn't in the table yet
+	 */
+	private boolean put(String id, int ordinal) {
+		int slot = hash(id) & this.mask;
+		while (this.keys[slot] != null) {
+			if (this.keys[slot].equals(id)) {
+				return false;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = id;
+		this.ordinals[slot] = ordinal;
+		return true;
+	}
+
+	/**
+	 * @return the ordinal index the ordinals refer to
+	 */
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the number of known ids
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the ordinal of the live term identified by an id, or
+	 *         {@code -1} if the id is unknown
+	 */
+	public int resolve(String id) {
+		if (id == null) {
+			return -1;
+		}
+		int result = this.index.getOrdinal(id);
+		if (result >= 0) {
+			return result;
+		}
+		String[] keys = this.keys;
+		int slot = hash(id) & this.mask;
+		String key;
+		while ((key = keys[slot]) != null) {
+			if (key == id || key.equals(id)) {
+				return this.ordinals[slot];
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the id of the live term identified by an id, or {@code null}
+	 *         if the id is unknown
+	 */
+	public String getRealId(String id) {
+		int ordinal = resolve(id);
+		return ordinal < 0 ? null : this.index.getId(ordinal);
+	}
+
+	/**
+	 * @return the live term identified by an id, or {@code null} if the id
+	 *         is unknown
+	 */
+	public TaxonomyTerm getTerm(String id) {
+		int ordinal = resolve(id);
+		return ordinal < 0 ? null : this.terms[ordinal];
+	}
+
+	public TaxonomyTerm getTerm(int ordinal) {
+		return this.terms[ordinal];
+	}
+
+	/**
+	 * Resolves a list of ids at once.
+	 * 
+	 * @param ids
+	 *            the ids to resolve
+	 * @param unresolved
+	 *            receives the unknown ids; may be {@code null}
+	 * @return the ordinals of the known ids, in the order of the input, and
+	 *         without the unknown ids
+	 */
+	public int[] resolveAll(Collection<String> ids,
+			Collection<String> unresolved) {
+		int[] result = new int[ids.size()];
+		int count = 0;
+		for (String id : ids) {
+			int ordinal = resolve(id);
+			if (ordinal >= 0) {
+				result[count++] = ordinal;
+			} else if (unresolved != null) {
+				unresolved.add(id);
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+}
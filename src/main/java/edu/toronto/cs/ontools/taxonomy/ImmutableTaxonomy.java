@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import edu.toronto.cs.ontools.utils.graph.DAGNode;
+
+/**
+ * A version of a taxonomy which cannot change anymore, obtained with
+ * {@link AbstractTaxonomy#pinVersion()}. It shares its terms and closures
+ * with the taxonomy it was taken from, which remains free to change; all the
+ * methods changing the taxonomy throw an
+ * {@link UnsupportedOperationException}. The terms must not be changed
+ * directly either.
+ */
+public class ImmutableTaxonomy extends AbstractTaxonomy {
+	private final String idPrefix;
+
+	ImmutableTaxonomy(AbstractTaxonomy source) {
+		this.idPrefix = source.getIDPrefix();
+		copyFrom(source);
+	}
+
+	@Override
+	public String getIDPrefix() {
+		return this.idPrefix;
+	}
+
+	@Override
+	public ImmutableTaxonomy pinVersion() {
+		return this;
+	}
+
+	@Override
+	public Map<String, TaxonomyTerm> getNodesMap() {
+		return Collections.unmodifiableMap(super.getNodesMap());
+	}
+
+	@Override
+	public Set<String> getNodesIds() {
+		return Collections.unmodifiableSet(super.getNodesIds());
+	}
+
+	@Override
+	public Collection<TaxonomyTerm> getNodes() {
+		return Collections.unmodifiableCollection(super.getNodes());
+	}
+
+	@Override
+	public int load(File source) {
+		throw unsupported();
+	}
+
+	@Override
+	public TaxonomyDiff reload(File source) {
+		throw unsupported();
+	}
+
+	@Override
+	public void addNode(TaxonomyTerm n) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean removeNode(String id) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean removeNode(TaxonomyTerm node) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean removeNode(DAGNode node) {
+		throw unsupported();
+	}
+
+	@Override
+	public int removeNodes(Collection<String> ids) {
+		throw unsupported();
+	}
+
+	@Override
+	public void clear() {
+		throw unsupported();
+	}
+
+	private static UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException(
+				"Pinned taxonomy versions cannot be modified");
+	}
+}
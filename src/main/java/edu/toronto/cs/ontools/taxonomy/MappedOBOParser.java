@@ -0,0 +1,334 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.IOUtils;
+
+import edu.toronto.cs.ontools.main.LocalFileUtils;
+
+/**
+ * OBO parser working directly on the bytes of a memory-mapped file. Stanza
+ * and field boundaries are found by scanning the bytes, and strings are only
+ * created for the fields used by {@link TermData} ({@code id}, {@code name},
+ * {@code is_a}, {@code alt_id}, {@code is_obsolete} and {@code replaced_by})
+ * and for the fields retained by the taxonomy's
+ * {@link FieldRetentionPolicy}; all other lines are skipped without
+ * allocating anything.
+ */
+public class MappedOBOParser implements OBOParser {
+	/** The encoding {@link TextOBOParser} reads the files with. */
+	private static final Charset ENCODING = Charset.defaultCharset();
+
+	protected static final byte[] TERM_MARKER_BYTES = TERM_MARKER.getBytes();
+
+	protected static final byte[] END_OF_TERM_LIST_MARKER_BYTES = END_OF_TERM_LIST_MARKER
+			.getBytes();
+
+	private static final byte[] ID_TAG = TermData.ID_FIELD_NAME.getBytes();
+
+	private static final byte[] NAME_TAG = TermData.NAME_FIELD_NAME.getBytes();
+
+	private static final byte[] PARENT_TAG = TermData.PARENT_FIELD_NAME
+			.getBytes();
+
+	private static final byte[] ALT_ID_TAG = TermData.ALT_ID_FIELD_NAME
+			.getBytes();
+
+	private static final byte[] OBSOLETE_TAG = TermData.OBSOLETE_FIELD_NAME
+			.getBytes();
+
+	private static final byte[] REPLACEMENT_TAG = TermData.REPLACEMENT_FIELD_NAME
+			.getBytes();
+
+	private static final byte[] TRUE_VALUE = "true".getBytes();
+
+	protected static final byte NEW_LINE = '\n';
+
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private static final byte FIELD_NAME_VALUE_SEPARATOR_CHAR = ':';
+
+	private static final byte COMMENT_MARKER = '!';
+
+	public void parse(File source, AbstractTaxonomy taxonomy)
+			throws IOException {
+		parse(map(source), taxonomy);
+	}
+
+	/**
+	 * Parses OBO content already available in a buffer.
+	 * 
+	 * @param buffer
+	 *            the OBO content, between position 0 and the buffer's limit
+	 * @param taxonomy
+	 *            the taxonomy receiving the parsed terms
+	 */
+	public void parse(ByteBuffer buffer, final AbstractTaxonomy taxonomy) {
+		TermDataSink sink = new TermDataSink() {
+			public TermData stanzaDone(TermData data) {
+				taxonomy.processTermData(data);
+				data.clear();
+				return data;
+			}
+		};
+		new StanzaScanner(buffer, taxonomy.getFieldRetentionPolicy()).scan(0,
+				buffer.limit(), sink);
+	}
+
+	/**
+	 * Maps a file in memory. Compressed files cannot be mapped, so they are
+	 * decompressed in a heap buffer instead.
+	 */
+	protected ByteBuffer map(File source) throws IOException {
+		if (LocalFileUtils.isCompressed(source)) {
+			InputStream in = LocalFileUtils.getInputStream(source);
+			try {
+				return ByteBuffer.wrap(IOUtils.toByteArray(in));
+			} finally {
+				in.close();
+			}
+		}
+		FileInputStream in = new FileInputStream(source);
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File too large to be mapped: "
+						+ source.getAbsolutePath());
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+					.size());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Receives the stanzas found by a {@link StanzaScanner}.
+	 */
+	protected interface TermDataSink {
+		/**
+		 * Called for each parsed term stanza.
+		 * 
+		 * @param data
+		 *            the fields of the stanza
+		 * @return the (empty) object in which to collect the next stanza
+		 */
+		public TermData stanzaDone(TermData data);
+	}
+
+	/**
+	 * Parses ranges of OBO bytes. Not thread safe: each thread must use its
+	 * own scanner, but several scanners may share the same buffer.
+	 */
+	protected static class StanzaScanner {
+		private final ByteBuffer buffer;
+
+		private final FieldRetentionPolicy retentionPolicy;
+
+		private byte[] scratch = new byte[256];
+
+		public StanzaScanner(ByteBuffer buffer,
+				FieldRetentionPolicy retentionPolicy) {
+			this.buffer = buffer;
+			this.retentionPolicy = retentionPolicy;
+		}
+
+		/**
+		 * Parses all the stanzas between two offsets, stopping early at the
+		 * end of the term list.
+		 * 
+		 * @param start
+		 *            the offset of the first line to parse
+		 * @param end
+		 *            the offset after the last line to parse
+		 * @param sink
+		 *            receives the parsed stanzas, including the last one
+		 * @return {@code true} if the end of the term list was reached
+		 */
+		public boolean scan(int start, int end, TermDataSink sink) {
+			ByteBuffer buffer = this.buffer;
+			TermData data = new TermData(this.retentionPolicy);
+			boolean endOfTermList = false;
+			int lineStart = start;
+			while (lineStart < end) {
+				int lineEnd = lineStart;
+				while (lineEnd < end && buffer.get(lineEnd) != NEW_LINE) {
+					++lineEnd;
+				}
+				int next = lineEnd + 1;
+				if (lineEnd > lineStart
+						&& buffer.get(lineEnd - 1) == CARRIAGE_RETURN) {
+					--lineEnd;
+				}
+				if (isMarker(buffer, lineStart, lineEnd,
+						END_OF_TERM_LIST_MARKER_BYTES)) {
+					endOfTermList = true;
+					break;
+				}
+				if (isMarker(buffer, lineStart, lineEnd, TERM_MARKER_BYTES)) {
+					data = sink.stanzaDone(data);
+				} else {
+					parseField(lineStart, lineEnd, data);
+				}
+				lineStart = next;
+			}
+			sink.stanzaDone(data);
+			return endOfTermList;
+		}
+
+		private void parseField(int start, int end, TermData data) {
+			ByteBuffer buffer = this.buffer;
+			// Find the "name: value" separator
+			int separator = start;
+			while (separator < end - 1
+					&& !(buffer.get(separator) == FIELD_NAME_VALUE_SEPARATOR_CHAR && isWhitespace(buffer
+							.get(separator + 1)))) {
+				++separator;
+			}
+			if (separator >= end - 1) {
+				return;
+			}
+			int tagEnd = separator;
+			while (tagEnd > start && isWhitespace(buffer.get(tagEnd - 1))) {
+				--tagEnd;
+			}
+			int valueStart = separator + 1;
+			while (valueStart < end && isWhitespace(buffer.get(valueStart))) {
+				++valueStart;
+			}
+
+			if (matches(buffer, start, tagEnd, ID_TAG)) {
+				data.addTo(TermData.ID_FIELD_NAME, decode(valueStart, end));
+			} else if (matches(buffer, start, tagEnd, NAME_TAG)) {
+				data.addTo(TermData.NAME_FIELD_NAME, decode(valueStart, end));
+			} else if (matches(buffer, start, tagEnd, PARENT_TAG)) {
+				data.addParentId(decode(valueStart, getParentIdEnd(
+						valueStart, end)));
+			} else if (matches(buffer, start, tagEnd, ALT_ID_TAG)) {
+				data.addTo(TermData.ALT_ID_FIELD_NAME, decode(valueStart, end));
+			} else if (matches(buffer, start, tagEnd, OBSOLETE_TAG)) {
+				if (matches(buffer, valueStart, end, TRUE_VALUE)) {
+					data.addTo(TermData.OBSOLETE_FIELD_NAME, "true");
+				}
+			} else if (matches(buffer, start, tagEnd, REPLACEMENT_TAG)) {
+				data.addTo(TermData.REPLACEMENT_FIELD_NAME, decode(valueStart,
+						end));
+			} else if (!this.retentionPolicy.isEmpty()) {
+				String retainedName = this.retentionPolicy.getRetainedName(
+						buffer, start, tagEnd);
+				if (retainedName != null) {
+					data.addField(retainedName, decode(valueStart, end));
+				}
+			}
+		}
+
+		/**
+		 * Byte level equivalent of {@link TermData#PARENT_ID_REGEX}: in
+		 * {@code "HP:0000001 ! All"} only the identifier is kept, any other
+		 * value is kept as is.
+		 */
+		private int getParentIdEnd(int start, int end) {
+			ByteBuffer buffer = this.buffer;
+			int pos = start;
+			while (pos < end && buffer.get(pos) >= 'A'
+					&& buffer.get(pos) <= 'Z') {
+				++pos;
+			}
+			if (pos == start || pos >= end
+					|| buffer.get(pos) != FIELD_NAME_VALUE_SEPARATOR_CHAR) {
+				return end;
+			}
+			++pos;
+			for (int i = 0; i < 7; ++i, ++pos) {
+				if (pos >= end || buffer.get(pos) < '0'
+						|| buffer.get(pos) > '9') {
+					return end;
+				}
+			}
+			int idEnd = pos;
+			while (pos < end && isWhitespace(buffer.get(pos))) {
+				++pos;
+			}
+			return (pos < end && buffer.get(pos) == COMMENT_MARKER) ? idEnd
+					: end;
+		}
+
+		private String decode(int start, int end) {
+			int length = end - start;
+			if (this.scratch.length < length) {
+				this.scratch = new byte[Math.max(length,
+						2 * this.scratch.length)];
+			}
+			for (int i = 0; i < length; ++i) {
+				this.scratch[i] = this.buffer.get(start + i);
+			}
+			return new String(this.scratch, 0, length, ENCODING);
+		}
+	}
+
+	protected static boolean matches(ByteBuffer buffer, int start, int end,
+			byte[] expected) {
+		if (end - start != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; ++i) {
+			if (buffer.get(start + i) != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected static boolean isMarker(ByteBuffer buffer, int start, int end,
+			byte[] marker) {
+		while (start < end && isWhitespace(buffer.get(start))) {
+			++start;
+		}
+		while (end > start && isWhitespace(buffer.get(end - 1))) {
+			--end;
+		}
+		if (end - start != marker.length) {
+			return false;
+		}
+		for (int i = 0; i < marker.length; ++i) {
+			if (toLowerCase(buffer.get(start + i)) != toLowerCase(marker[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return (b >= 'A' && b <= 'Z') ? (byte) (b + 'a' - 'A') : b;
+	}
+
+	protected static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0x0B
+				|| b == '\f';
+	}
+}
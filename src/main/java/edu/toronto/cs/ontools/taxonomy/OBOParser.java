@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads the term stanzas of an OBO file and passes each of them, as a
+ * {@link TermData}, to the taxonomy being loaded. Linking the terms is left to
+ * the taxonomy.
+ */
+public interface OBOParser {
+	public final static String TERM_MARKER = "[Term]";
+
+	public final static String END_OF_TERM_LIST_MARKER = "[Typedef]";
+
+	public final static String FIELD_NAME_VALUE_SEPARATOR = "\\s*:\\s+";
+
+	/**
+	 * Parses an OBO file.
+	 * 
+	 * @param source
+	 *            the OBO file to read
+	 * @param taxonomy
+	 *            the taxonomy receiving the parsed terms through
+	 *            {@link AbstractTaxonomy#processTermData(TermData)}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public void parse(File source, AbstractTaxonomy taxonomy)
+			throws IOException;
+}
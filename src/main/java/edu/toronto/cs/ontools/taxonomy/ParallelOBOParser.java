@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Memory-mapped OBO parser which splits the file in chunks on {@code [Term]}
+ * boundaries and parses the chunks concurrently on a fork/join pool. The
+ * parsed batches are then passed to the taxonomy in file order, so the result
+ * is the same as with a sequential parser; linking the terms is still done
+ * once, by the taxonomy, after all the batches are merged.
+ */
+public class ParallelOBOParser extends MappedOBOParser {
+	/** Files smaller than this are not worth splitting. */
+	private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+	/** How many chunks to create for each thread, for load balancing. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static ForkJoinPool defaultPool;
+
+	private final ForkJoinPool pool;
+
+	public ParallelOBOParser() {
+		this(null);
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to run on; if {@code null}, a pool shared by all
+	 *            parsers and sized after the number of available processors
+	 *            is used
+	 */
+	public ParallelOBOParser(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void parse(File source, AbstractTaxonomy taxonomy)
+			throws IOException {
+		parse(map(source), taxonomy);
+	}
+
+	@Override
+	public void parse(ByteBuffer buffer, AbstractTaxonomy taxonomy) {
+		ForkJoinPool pool = getPool();
+		int maxChunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, buffer.limit() / maxChunks
+				+ 1);
+		if (pool.getParallelism() < 2 || buffer.limit() <= chunkSize) {
+			super.parse(buffer, taxonomy);
+			return;
+		}
+		List<ChunkTask> chunks = new ArrayList<ChunkTask>();
+		int start = 0;
+		while (start < buffer.limit()) {
+			int end = findTermStart(buffer, start + chunkSize);
+			chunks.add(new ChunkTask(buffer, start, end, taxonomy
+					.getFieldRetentionPolicy()));
+			start = end;
+		}
+		pool.invoke(new ChunksTask(chunks));
+
+		// Merge the batches in file order
+		for (ChunkTask chunk : chunks) {
+			for (TermData data : chunk.getBatch()) {
+				taxonomy.processTermData(data);
+			}
+			if (chunk.isEndOfTermList()) {
+				break;
+			}
+		}
+	}
+
+	private ForkJoinPool getPool() {
+		if (this.pool != null) {
+			return this.pool;
+		}
+		synchronized (ParallelOBOParser.class) {
+			if (defaultPool == null) {
+				defaultPool = new ForkJoinPool();
+			}
+			return defaultPool;
+		}
+	}
+
+	/**
+	 * Finds the first {@code [Term]} line starting at or after an offset.
+	 * 
+	 * @return the offset of the line, or the buffer's limit if there is none
+	 */
+	private static int findTermStart(ByteBuffer buffer, int from) {
+		int end = buffer.limit();
+		if (from >= end) {
+			return end;
+		}
+		// Move to the start of the next line
+		int lineStart = from;
+		if (buffer.get(lineStart - 1) != NEW_LINE) {
+			while (lineStart < end && buffer.get(lineStart) != NEW_LINE) {
+				++lineStart;
+			}
+			++lineStart;
+		}
+		while (lineStart < end) {
+			int lineEnd = lineStart;
+			while (lineEnd < end && buffer.get(lineEnd) != NEW_LINE) {
+				++lineEnd;
+			}
+			if (isMarker(buffer, lineStart, lineEnd, TERM_MARKER_BYTES)) {
+				return lineStart;
+			}
+			lineStart = lineEnd + 1;
+		}
+		return end;
+	}
+
+	private static class ChunksTask extends RecursiveAction {
+		private static final long serialVersionUID = 201210181200L;
+
+		private final List<ChunkTask> chunks;
+
+		public ChunksTask(List<ChunkTask> chunks) {
+			this.chunks = chunks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(this.chunks);
+		}
+	}
+
+	private static class ChunkTask extends RecursiveAction implements
+			TermDataSink {
+		private static final long serialVersionUID = 201210181200L;
+
+		private final ByteBuffer buffer;
+
+		private final int start;
+
+		private final int end;
+
+		private final FieldRetentionPolicy retentionPolicy;
+
+		private final List<TermData> batch = new ArrayList<TermData>();
+
+		private boolean endOfTermList;
+
+		public ChunkTask(ByteBuffer buffer, int start, int end,
+				FieldRetentionPolicy retentionPolicy) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.retentionPolicy = retentionPolicy;
+		}
+
+		@Override
+		protected void compute() {
+			this.endOfTermList = new StanzaScanner(this.buffer.duplicate(),
+					this.retentionPolicy).scan(this.start, this.end, this);
+		}
+
+		public TermData stanzaDone(TermData data) {
+			// Keep all the stanzas the sequential parsers pass on, obsolete
+			// terms included, so that the taxonomy sees the same data
+			if (data.getId() != null) {
+				this.batch.add(data);
+				return new TermData(this.retentionPolicy);
+			}
+			data.clear();
+			return data;
+		}
+
+		public List<TermData> getBatch() {
+			return this.batch;
+		}
+
+		public boolean isEndOfTermList() {
+			return this.endOfTermList;
+		}
+	}
+}
@@ -20,10 +20,18 @@
 package edu.toronto.cs.ontools.taxonomy;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import edu.toronto.cs.ontools.utils.graph.AncestorClosure;
 import edu.toronto.cs.ontools.utils.graph.DAGNode;
+import edu.toronto.cs.ontools.utils.graph.DAGTraversal;
+import edu.toronto.cs.ontools.utils.graph.DepthIndex;
+import edu.toronto.cs.ontools.utils.graph.DescendantClosure;
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
+import edu.toronto.cs.ontools.utils.graph.PathDistanceOracle;
+import edu.toronto.cs.ontools.utils.graph.ReachabilityIndex;
 
 public interface Taxonomy {
 
@@ -31,6 +39,8 @@ public interface Taxonomy {
 
 	public abstract int load(File source);
 
+	public abstract TaxonomyDiff reload(File source);
+
 	public abstract String getRealId(String id);
 
 	public abstract TaxonomyTerm getTerm(String id);
@@ -43,12 +53,65 @@ public interface Taxonomy {
 
 	public abstract Set<String> getAncestors(String termId);
 
+	public abstract Set<String> getDescendants(String termId);
+
+	public abstract boolean isAncestor(String ancestorId, String termId);
+
+	/**
+	 * Terms are also identified by dense ordinals, valid until the taxonomy
+	 * changes; see {@link #getVersion()}.
+	 * 
+	 * @return the ordinal of a term, or {@code -1} if there is no such term
+	 */
+	public abstract int getOrdinal(String id);
+
+	public abstract String getTermId(int ordinal);
+
+	public abstract TaxonomyTerm getTerm(int ordinal);
+
+	public abstract int[] getParentOrdinals(int ordinal);
+
+	public abstract int[] getChildOrdinals(int ordinal);
+
+	public abstract int[] getAncestorOrdinals(int ordinal);
+
+	public abstract int getVersion();
+
+	/**
+	 * @return the ordinal index of the current version of the taxonomy,
+	 *         giving allocation-free access to the arcs
+	 */
+	public abstract OrdinalIndex getOrdinalIndex();
+
+	public abstract DepthIndex getDepthIndex();
+
+	public abstract DAGTraversal getTraversal();
+
+	public abstract IdResolver getIdResolver();
+
+	public abstract PathDistanceOracle getPathDistanceOracle();
+
+	/**
+	 * @return an immutable copy of the current version of the taxonomy
+	 */
+	public abstract Taxonomy pinVersion();
+
+	public abstract List<String> getTopologicalOrder();
+
+	public abstract AncestorClosure getAncestorClosure();
+
+	public abstract DescendantClosure getDescendantClosure();
+
+	public abstract ReachabilityIndex getReachabilityIndex();
+
 	public abstract List<DAGNode> getLeaves();
 
 	public abstract boolean removeNode(String id);
 
 	public abstract boolean removeNode(TaxonomyTerm node);
 
+	public abstract int removeNodes(Collection<String> ids);
+
 	public abstract int size();
 
 	public void display();
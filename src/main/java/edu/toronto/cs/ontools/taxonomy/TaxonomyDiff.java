@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The changes applied to a taxonomy by
+ * {@link AbstractTaxonomy#reload(java.io.File)}.
+ */
+public class TaxonomyDiff {
+	private final Set<String> added = new TreeSet<String>();
+
+	private final Set<String> removed = new TreeSet<String>();
+
+	private final Set<String> obsoleted = new TreeSet<String>();
+
+	private final Set<String> reparented = new TreeSet<String>();
+
+	private final Set<String> updated = new TreeSet<String>();
+
+	private final Set<String> remappedIds = new TreeSet<String>();
+
+	private final Set<String> affected = new TreeSet<String>();
+
+	/**
+	 * @return the terms which did not exist in the previous release
+	 */
+	public Set<String> getAdded() {
+		return Collections.unmodifiableSet(this.added);
+	}
+
+	/**
+	 * @return the terms which no longer exist, including the obsoleted ones
+	 */
+	public Set<String> getRemoved() {
+		return Collections.unmodifiableSet(this.removed);
+	}
+
+	/**
+	 * @return the removed terms which are still listed, but marked as
+	 *         obsolete, in the new release
+	 */
+	public Set<String> getObsoleted() {
+		return Collections.unmodifiableSet(this.obsoleted);
+	}
+
+	/**
+	 * @return the terms whose parents changed
+	 */
+	public Set<String> getReparented() {
+		return Collections.unmodifiableSet(this.reparented);
+	}
+
+	/**
+	 * @return the terms whose name or retained fields changed
+	 */
+	public Set<String> getUpdated() {
+		return Collections.unmodifiableSet(this.updated);
+	}
+
+	/**
+	 * @return the identifiers (including alternative ones) which now resolve
+	 *         to a different term, or no longer resolve at all
+	 */
+	public Set<String> getRemappedIds() {
+		return Collections.unmodifiableSet(this.remappedIds);
+	}
+
+	/**
+	 * @return the terms whose set of ancestors changed: the added, removed
+	 *         and re-parented terms, and all their descendants
+	 */
+	public Set<String> getAffected() {
+		return Collections.unmodifiableSet(this.affected);
+	}
+
+	public boolean isEmpty() {
+		return this.added.isEmpty() && this.removed.isEmpty()
+				&& this.reparented.isEmpty() && this.updated.isEmpty()
+				&& this.remappedIds.isEmpty();
+	}
+
+	Set<String> getAddedSet() {
+		return this.added;
+	}
+
+	Set<String> getRemovedSet() {
+		return this.removed;
+	}
+
+	Set<String> getObsoletedSet() {
+		return this.obsoleted;
+	}
+
+	Set<String> getReparentedSet() {
+		return this.reparented;
+	}
+
+	Set<String> getUpdatedSet() {
+		return this.updated;
+	}
+
+	Set<String> getRemappedIdsSet() {
+		return this.remappedIds;
+	}
+
+	Set<String> getAffectedSet() {
+		return this.affected;
+	}
+
+	@Override
+	public String toString() {
+		return "added: " + this.added.size() + ", removed: "
+				+ this.removed.size() + " (obsoleted: " + this.obsoleted.size()
+				+ "), re-parented: " + this.reparented.size() + ", updated: "
+				+ this.updated.size() + ", affected: " + this.affected.size();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several releases of the same taxonomy, sharing their unchanged terms. The
+ * releases are loaded one after the other in a single working taxonomy,
+ * each new release being {@link AbstractTaxonomy#reload(File) applied as a
+ * diff}, and each release is then {@link AbstractTaxonomy#pinVersion()
+ * pinned}: a pinned release shares all the term objects not touched by the
+ * following diffs, so the memory used by the terms grows with the
+ * differences between the releases rather than with their number.
+ * 
+ * Indexes and closures are only computed for the releases which are used,
+ * on first use. The ordinal index of a release keeps the ordinals of the
+ * previously indexed release where possible, and its ancestor closure
+ * shares the rows of the terms whose ancestors didn't change.
+ * 
+ * Releases are best added in chronological order, which keeps the diffs
+ * small, but any order gives the same views.
+ */
+public class TaxonomyReleaseStore {
+	private final AbstractTaxonomy working;
+
+	private final Map<String, ImmutableTaxonomy> releases = new LinkedHashMap<String, ImmutableTaxonomy>();
+
+	private final Map<String, TaxonomyDiff> diffs = new LinkedHashMap<String, TaxonomyDiff>();
+
+	/**
+	 * @param working
+	 *            the taxonomy in which releases are loaded, either empty or
+	 *            already holding a release; it shouldn't be used elsewhere,
+	 *            and it is switched to indexing on first use
+	 */
+	public TaxonomyReleaseStore(AbstractTaxonomy working) {
+		this.working = working;
+		working.setEagerIndexing(false);
+	}
+
+	/**
+	 * Loads a release.
+	 * 
+	 * @param name
+	 *            the name of the release, e.g. its date; an existing release
+	 *            with the same name is replaced
+	 * @param source
+	 *            the OBO file of the release
+	 * @return a read-only view of the release, or {@code null} if it could
+	 *         not be loaded
+	 */
+	public synchronized Taxonomy addRelease(String name, File source) {
+		TaxonomyDiff diff = null;
+		if (this.working.size() == 0) {
+			if (this.working.load(source) <= 0) {
+				return null;
+			}
+		} else {
+			diff = this.working.reload(source);
+			if (diff == null) {
+				return null;
+			}
+		}
+		ImmutableTaxonomy result = this.working.pinVersion();
+		this.releases.remove(name);
+		this.releases.put(name, result);
+		this.diffs.put(name, diff);
+		return result;
+	}
+
+	/**
+	 * @return the release with the given name, or {@code null} if there is
+	 *         no such release
+	 */
+	public synchronized Taxonomy getRelease(String name) {
+		return this.releases.get(name);
+	}
+
+	/**
+	 * @return the names of the releases, in the order they were added
+	 */
+	public synchronized List<String> getReleaseNames() {
+		return new ArrayList<String>(this.releases.keySet());
+	}
+
+	/**
+	 * @return the changes made by a release to the release added before it,
+	 *         or {@code null} for the first release
+	 */
+	public synchronized TaxonomyDiff getDiff(String name) {
+		return this.diffs.get(name);
+	}
+
+	/**
+	 * Forgets a release; the terms used only by it can then be reclaimed.
+	 * 
+	 * @return {@code true} if the release existed
+	 */
+	public synchronized boolean removeRelease(String name) {
+		this.diffs.remove(name);
+		return this.releases.remove(name) != null;
+	}
+
+	public synchronized int getReleaseCount() {
+		return this.releases.size();
+	}
+
+	/**
+	 * @return the number of distinct term objects used by all the releases,
+	 *         which shows how much the releases share
+	 */
+	public synchronized int getDistinctTermCount() {
+		Map<TaxonomyTerm, Boolean> terms = new IdentityHashMap<TaxonomyTerm, Boolean>();
+		for (ImmutableTaxonomy release : this.releases.values()) {
+			for (TaxonomyTerm term : release.getNodes()) {
+				terms.put(term, Boolean.TRUE);
+			}
+		}
+		return terms.size();
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a fully linked taxonomy: the term table (ids, names and
+ * arcs, stored as indices in the term table), the alternative id mapping and
+ * the root. Snapshots are written after a successful OBO parse and are
+ * memory-mapped on later loads of the same (unchanged) source file, which
+ * skips the text parsing and the arc relinking altogether.
+ *
+ * <pre>
+ * int    MAGIC
+ * int    FORMAT_VERSION
+ * long   source file length
+ * long   source file last modification time
+ * int    retained field names count F
+ * F x    string field name
+ * int    term count N
+ * N x    { string id, string name,
+ *          int parent count, int[] parent indices,
+ *          int child count, int[] child indices,
+ *          int retained field values count V, V x { int field, string value } }
+ * int    root index
+ * int    alternative id count M
+ * M x    { string alt id, int term index (-1 if unknown), [string real id] }
+ * </pre>
+ *
+ * Strings are stored as an int byte length followed by UTF-8 bytes.
+ */
+public class TaxonomySnapshotFile {
+	private static final int MAGIC = 0x4f4e5453;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String ENCODING = "UTF-8";
+
+	private static final int NO_INDEX = -1;
+
+	public static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	/**
+	 * Checks if a snapshot exists and was generated from the current version
+	 * of the source file.
+	 *
+	 * @param snapshot
+	 *            the snapshot file
+	 * @param source
+	 *            the OBO file the snapshot was created from
+	 * @param policy
+	 *            the fields which should be retained on the terms
+	 * @return {@code true} if the snapshot can be used instead of the source
+	 */
+	public static boolean isUpToDate(File snapshot, File source,
+			FieldRetentionPolicy policy) {
+		if (snapshot == null || !snapshot.exists() || source == null
+				|| !source.exists()) {
+			return false;
+		}
+		MappedByteBuffer buffer = map(snapshot);
+		if (buffer == null) {
+			return false;
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+					|| buffer.getLong() != source.length()
+					|| buffer.getLong() != source.lastModified()) {
+				return false;
+			}
+			return policy.equals(new FieldRetentionPolicy(
+					readStrings(buffer)));
+		} catch (BufferUnderflowException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the current content of a taxonomy in a snapshot file.
+	 *
+	 * @param taxonomy
+	 *            the loaded and linked taxonomy to store
+	 * @param source
+	 *            the OBO file the taxonomy was loaded from
+	 * @param snapshot
+	 *            where to write the snapshot
+	 * @return {@code true} if the snapshot was successfully written
+	 */
+	public static boolean write(AbstractTaxonomy taxonomy, File source,
+			File snapshot) {
+		File tmp = null;
+		try {
+			// Each process writes its own file, published by renaming it
+			tmp = File.createTempFile(snapshot.getName() + ".", ".part",
+					snapshot.getAbsoluteFile().getParentFile());
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				writeContent(taxonomy, source, out);
+			} finally {
+				out.close();
+			}
+			if (tmp.renameTo(snapshot)) {
+				return true;
+			}
+			// Some platforms can't rename over an existing file
+			if (snapshot.exists() && !snapshot.delete()) {
+				tmp.delete();
+				return false;
+			}
+			if (!tmp.renameTo(snapshot)) {
+				tmp.delete();
+				return false;
+			}
+			return true;
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			if (tmp != null) {
+				tmp.delete();
+			}
+			return false;
+		}
+	}
+
+	private static void writeContent(AbstractTaxonomy taxonomy, File source,
+			DataOutputStream out) throws IOException {
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		int i = 0;
+		for (String id : taxonomy.getNodesIds()) {
+			index.put(id, i++);
+		}
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(source.length());
+		out.writeLong(source.lastModified());
+		List<String> fieldNames = taxonomy.getFieldRetentionPolicy()
+				.getFieldNames();
+		out.writeInt(fieldNames.size());
+		for (String fieldName : fieldNames) {
+			writeString(out, fieldName);
+		}
+		out.writeInt(taxonomy.size());
+		for (TaxonomyTerm term : taxonomy.getNodes()) {
+			writeString(out, term.getId());
+			writeString(out, term.getName());
+			writeIndices(out, term.getParents(), index);
+			writeIndices(out, term.getChildren(), index);
+			String[] fields = term.getFields();
+			out.writeInt(fields.length / 2);
+			for (int j = 0; j < fields.length; j += 2) {
+				out.writeInt(fieldNames.indexOf(fields[j]));
+				writeString(out, fields[j + 1]);
+			}
+		}
+		out.writeInt(index.get(taxonomy.getRootId()));
+		Map<String, String> altIds = taxonomy.getAlternateIdMapping();
+		out.writeInt(altIds.size());
+		for (Map.Entry<String, String> entry : altIds.entrySet()) {
+			writeString(out, entry.getKey());
+			Integer target = index.get(entry.getValue());
+			if (target != null) {
+				out.writeInt(target);
+			} else {
+				out.writeInt(NO_INDEX);
+				writeString(out, entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Loads a taxonomy from a snapshot file. The target taxonomy should be
+	 * empty.
+	 *
+	 * @param snapshot
+	 *            the snapshot file to read
+	 * @param taxonomy
+	 *            the taxonomy to fill
+	 * @return {@code true} if the snapshot was successfully read
+	 */
+	public static boolean read(File snapshot, AbstractTaxonomy taxonomy) {
+		MappedByteBuffer buffer = map(snapshot);
+		if (buffer == null) {
+			return false;
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				return false;
+			}
+			// Source length and modification date, already checked
+			buffer.getLong();
+			buffer.getLong();
+			String[] fieldNames = readStrings(buffer);
+
+			int size = buffer.getInt();
+			TaxonomyTerm[] terms = new TaxonomyTerm[size];
+			int[][] parents = new int[size][];
+			int[][] children = new int[size][];
+			for (int i = 0; i < size; ++i) {
+				terms[i] = new TaxonomyTerm(readString(buffer),
+						readString(buffer));
+				parents[i] = readIndices(buffer);
+				children[i] = readIndices(buffer);
+				int fieldsCount = buffer.getInt();
+				if (fieldsCount > 0) {
+					String[] fields = new String[2 * fieldsCount];
+					for (int j = 0; j < fields.length; j += 2) {
+						fields[j] = fieldNames[buffer.getInt()];
+						fields[j + 1] = readString(buffer);
+					}
+					terms[i].setFields(fields);
+				}
+			}
+			for (int i = 0; i < size; ++i) {
+				for (int p : parents[i]) {
+					terms[i].addParent(terms[p]);
+				}
+				for (int c : children[i]) {
+					terms[i].addChild(terms[c]);
+				}
+				taxonomy.addNode(terms[i]);
+			}
+			taxonomy.setRoot(terms[buffer.getInt()]);
+
+			Map<String, String> altIds = taxonomy.getAlternateIdMapping();
+			int altIdsCount = buffer.getInt();
+			for (int i = 0; i < altIdsCount; ++i) {
+				String altId = readString(buffer);
+				int target = buffer.getInt();
+				altIds.put(altId, target == NO_INDEX ? readString(buffer)
+						: terms[target].getId());
+			}
+			return true;
+		} catch (BufferUnderflowException ex) {
+			System.err.println("Corrupted taxonomy snapshot: "
+					+ snapshot.getAbsolutePath());
+			taxonomy.clear();
+			return false;
+		} catch (ArrayIndexOutOfBoundsException ex) {
+			System.err.println("Corrupted taxonomy snapshot: "
+					+ snapshot.getAbsolutePath());
+			taxonomy.clear();
+			return false;
+		}
+	}
+
+	private static MappedByteBuffer map(File file) {
+		try {
+			FileInputStream in = new FileInputStream(file);
+			FileChannel channel = in.getChannel();
+			MappedByteBuffer result = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			// The mapping stays valid after the channel is closed
+			in.close();
+			return result;
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return null;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes(ENCODING);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, ENCODING);
+		} catch (UnsupportedEncodingException ex) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String[] readStrings(MappedByteBuffer buffer) {
+		String[] result = new String[buffer.getInt()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = readString(buffer);
+		}
+		return result;
+	}
+
+	private static void writeIndices(DataOutputStream out,
+			Iterable<String> ids, Map<String, Integer> index)
+			throws IOException {
+		int count = 0;
+		for (String id : ids) {
+			if (index.containsKey(id)) {
+				++count;
+			}
+		}
+		out.writeInt(count);
+		for (String id : ids) {
+			Integer i = index.get(id);
+			if (i != null) {
+				out.writeInt(i);
+			}
+		}
+	}
+
+	private static int[] readIndices(MappedByteBuffer buffer) {
+		int[] result = new int[buffer.getInt()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = buffer.getInt();
+		}
+		return result;
+	}
+}
@@ -19,9 +19,19 @@
  */
 package edu.toronto.cs.ontools.taxonomy;
 
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
 import edu.toronto.cs.ontools.utils.graph.DAGNode;
 
 public class TaxonomyTerm extends DAGNode {
+	private static final String[] NO_FIELDS = new String[0];
+
+	/**
+	 * Extra OBO fields retained while loading, as name, value, name, value...
+	 */
+	private String[] fields = NO_FIELDS;
 
 	public TaxonomyTerm(String id) {
 		super(id);
@@ -36,6 +46,45 @@ public class TaxonomyTerm extends DAGNode {
 		for (String parentId : data.get(TermData.PARENT_FIELD_NAME)) {
 			this.addParent(parentId);
 		}
+		this.fields = data.getRetainedFields();
+	}
+
+	/**
+	 * Returns the values of an extra OBO field, only available if the field
+	 * was retained when the taxonomy was loaded.
+	 * 
+	 * @param fieldName
+	 *            the OBO field name, for example {@code synonym}
+	 * @return the values of the field, or an empty list
+	 */
+	public List<String> getFieldValues(String fieldName) {
+		List<String> result = null;
+		for (int i = 0; i < this.fields.length; i += 2) {
+			if (this.fields[i].equals(fieldName)) {
+				if (result == null) {
+					result = new LinkedList<String>();
+				}
+				result.add(this.fields[i + 1]);
+			}
+		}
+		return result == null ? Collections.<String> emptyList() : result;
+	}
+
+	String[] getFields() {
+		return this.fields;
+	}
+
+	void setFields(String[] fields) {
+		this.fields = fields;
+	}
+
+	@Override
+	public TaxonomyTerm clone() {
+		TaxonomyTerm clone = new TaxonomyTerm(this.getId(), this.getName());
+		clone.getParents().addAll(this.getParents());
+		clone.getChildren().addAll(this.getChildren());
+		clone.fields = this.fields;
+		return clone;
 	}
 
 }
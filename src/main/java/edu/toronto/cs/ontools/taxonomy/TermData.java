@@ -19,14 +19,18 @@
  */
 package edu.toronto.cs.ontools.taxonomy;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 
-import edu.toronto.cs.ontools.utils.maps.SetMap;
-
-public class TermData extends SetMap<String, String> {
-	private static final long serialVersionUID = 4880377023212693352L;
-
+/**
+ * The fields of an OBO term stanza. Only the fields indexed by the taxonomy
+ * are stored, plus the extra fields retained by a
+ * {@link FieldRetentionPolicy}; everything else is dropped.
+ */
+public class TermData {
 	public final static String ID_FIELD_NAME = "id";
 
 	public final static String NAME_FIELD_NAME = "name";
@@ -41,6 +45,10 @@ public class TermData extends SetMap<String, String> {
 
 	public final static String PARENT_ID_REGEX = "^([A-Z]+\\:[0-9]{7})\\s*!\\s*.*";
 
+	private static final String[] NO_FIELDS = new String[0];
+
+	private final FieldRetentionPolicy retentionPolicy;
+
 	private String id;
 
 	private String name;
@@ -49,12 +57,33 @@ public class TermData extends SetMap<String, String> {
 
 	private String replacement = null;
 
-	@Override
+	private final List<String> parents = new ArrayList<String>(2);
+
+	private final List<String> altIds = new ArrayList<String>(0);
+
+	/** Retained extra fields, as name, value, name, value... */
+	private final List<String> fields = new ArrayList<String>(0);
+
+	public TermData() {
+		this(FieldRetentionPolicy.NONE);
+	}
+
+	public TermData(FieldRetentionPolicy retentionPolicy) {
+		this.retentionPolicy = retentionPolicy;
+	}
+
+	public FieldRetentionPolicy getRetentionPolicy() {
+		return this.retentionPolicy;
+	}
+
 	public void clear() {
 		this.id = null;
 		this.name = null;
 		this.obsolete = false;
-		super.clear();
+		this.replacement = null;
+		this.parents.clear();
+		this.altIds.clear();
+		this.fields.clear();
 	};
 
 	public String getId() {
@@ -85,24 +114,31 @@ public class TermData extends SetMap<String, String> {
 		return this.id != null && !isObsolete();
 	}
 
-	@Override
 	public boolean addTo(String key, String value) {
 		if (ID_FIELD_NAME.equals(key)) {
 			this.id = value;
 		} else if (NAME_FIELD_NAME.equals(key)) {
 			this.name = value;
-		} else if (OBSOLETE_FIELD_NAME.equals(key) && "true".equals(value)) {
-			this.setObsolete(true);
+		} else if (OBSOLETE_FIELD_NAME.equals(key)) {
+			if ("true".equals(value)) {
+				this.setObsolete(true);
+			}
 		} else if (REPLACEMENT_FIELD_NAME.equals(key)) {
 			this.setReplacement(value);
 		} else if (PARENT_FIELD_NAME.equals(key)) {
-			return super.addTo(PARENT_FIELD_NAME, value.replaceAll(
-					PARENT_ID_REGEX, "$1"));
+			return addParentId(value.replaceAll(PARENT_ID_REGEX, "$1"));
+		} else if (ALT_ID_FIELD_NAME.equals(key)) {
+			return addUnique(this.altIds, value);
+		} else {
+			String retainedName = this.retentionPolicy.getRetainedName(key);
+			if (retainedName == null) {
+				return false;
+			}
+			return addField(retainedName, value);
 		}
-		return super.addTo(key, value);
+		return true;
 	}
 
-	@Override
 	public boolean addTo(String key, Collection<String> values) {
 		boolean result = true;
 		for (String value : values) {
@@ -111,11 +147,67 @@ public class TermData extends SetMap<String, String> {
 		return result;
 	}
 
+	/**
+	 * Adds a parent identifier which is already stripped of any trailing
+	 * comment, bypassing the {@link #PARENT_ID_REGEX} cleanup.
+	 */
+	public boolean addParentId(String parentId) {
+		return addUnique(this.parents, parentId);
+	}
+
+	/**
+	 * Adds the value of a field already known to be retained.
+	 * 
+	 * @param retainedName
+	 *            the canonical field name, as returned by
+	 *            {@link FieldRetentionPolicy#getRetainedName(String)}
+	 * @param value
+	 *            the field value
+	 */
+	public boolean addField(String retainedName, String value) {
+		for (int i = 0; i < this.fields.size(); i += 2) {
+			if (this.fields.get(i).equals(retainedName)
+					&& this.fields.get(i + 1).equals(value)) {
+				return false;
+			}
+		}
+		this.fields.add(retainedName);
+		this.fields.add(value);
+		return true;
+	}
+
 	public Collection<String> get(String key) {
-		Collection<String> result = super.get(key);
-		if (result == null) {
-			return Collections.emptyList();
+		if (PARENT_FIELD_NAME.equals(key)) {
+			return this.parents;
+		} else if (ALT_ID_FIELD_NAME.equals(key)) {
+			return this.altIds;
 		}
-		return result;
+		List<String> result = new LinkedList<String>();
+		for (int i = 0; i < this.fields.size(); i += 2) {
+			if (this.fields.get(i).equals(key)) {
+				result.add(this.fields.get(i + 1));
+			}
+		}
+		return result.isEmpty() ? Collections.<String> emptyList() : result;
+	}
+
+	public Collection<String> safeGet(String key) {
+		return get(key);
+	}
+
+	/**
+	 * @return the retained extra fields, as a compact name, value, name,
+	 *         value... array
+	 */
+	public String[] getRetainedFields() {
+		return this.fields.isEmpty() ? NO_FIELDS : this.fields
+				.toArray(new String[this.fields.size()]);
+	}
+
+	private static boolean addUnique(List<String> list, String value) {
+		if (list.contains(value)) {
+			return false;
+		}
+		return list.add(value);
 	}
 }
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+import edu.toronto.cs.ontools.main.LocalFileUtils;
+
+/**
+ * Line based OBO parser, splitting each line in a field name and a value and
+ * passing all the fields to {@link TermData}, which only keeps the indexed
+ * and the retained ones. Gzip-compressed files are decompressed on the fly.
+ */
+public class TextOBOParser implements OBOParser {
+	public void parse(File source, AbstractTaxonomy taxonomy)
+			throws IOException {
+		TermData data = new TermData(taxonomy.getFieldRetentionPolicy());
+		BufferedReader in = LocalFileUtils.getReader(source);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.trim().equalsIgnoreCase(END_OF_TERM_LIST_MARKER)) {
+					break;
+				}
+				if (line.trim().equalsIgnoreCase(TERM_MARKER)) {
+					taxonomy.processTermData(data);
+					data.clear();
+					continue;
+				}
+				String pieces[] = line.split(FIELD_NAME_VALUE_SEPARATOR, 2);
+				if (pieces.length != 2) {
+					continue;
+				}
+				String name = pieces[0], value = pieces[1];
+				data.addTo(name, value);
+			}
+			taxonomy.processTermData(data);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -25,6 +25,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,7 +43,9 @@ import edu.toronto.cs.ontools.prediction.ICPredictor;
 import edu.toronto.cs.ontools.prediction.Predictor;
 import edu.toronto.cs.ontools.taxonomy.Taxonomy;
 import edu.toronto.cs.ontools.taxonomy.TaxonomyTerm;
-import edu.toronto.cs.ontools.utils.graph.DAGNode;
+import edu.toronto.cs.ontools.utils.graph.DAGTraversal;
+import edu.toronto.cs.ontools.utils.graph.DepthIndex;
+import edu.toronto.cs.ontools.utils.graph.OrdinalIndex;
 import edu.toronto.cs.ontools.utils.maps.SetMap;
 
 public class BottomUpAnnClustering extends AbstractCommandAction {
@@ -169,11 +172,20 @@ public class BottomUpAnnClustering extends AbstractCommandAction {
 		Taxonomy taxonomy = this.annotation.getTaxonomy();// .clone()
 		this.predictor.setAnnotation(this.annotation);
 
+		// Terms become candidates once all their children were removed; the
+		// remaining children are counted on the index of the initial taxonomy
+		DepthIndex depths = taxonomy.getDepthIndex();
+		OrdinalIndex index = depths.getIndex();
+		int[] remainingChildren = new int[index.size()];
+		for (int o = 0; o < remainingChildren.length; ++o) {
+			remainingChildren[o] = index.getChildrenEnd(o)
+					- index.getChildrenStart(o);
+		}
+
 		Set<String> crtLevel = new HashSet<String>();
 		Set<String> nextLevel = new HashSet<String>();
-		for (DAGNode t : taxonomy.getLeaves()) {
-			// System.out.println("L0 " + t.getId() + " " + t.getName());
-			crtLevel.add(t.getId());
+		for (int o : depths.getHeightLevel(0)) {
+			crtLevel.add(index.getId(o));
 		}
 		logln();
 		logln("crt level size = " + crtLevel.size());
@@ -185,6 +197,9 @@ public class BottomUpAnnClustering extends AbstractCommandAction {
 			}
 			Collections.sort(sortedResults);
 			// Collections.reverse(sortedResults);
+			// A level never holds both a term and its parent, so the removals
+			// can wait until the whole level was processed
+			List<String> removedTerms = new LinkedList<String>();
 			int lCount = 0;
 			for (SearchResult r : sortedResults) {
 				TaxonomyTerm term = taxonomy.getTerm(r.getId());
@@ -196,19 +211,24 @@ public class BottomUpAnnClustering extends AbstractCommandAction {
 					logln("REMOVING: " + term);
 					removedNodes++;
 					removedArcs += term.getNeighborsCount();
-					for (String n : term.getParents()) {
-						if (taxonomy.getTerm(n).getChildren().size() == 1) {
-							nextLevel.add(taxonomy.getRealId(n));
+					int o = index.getOrdinal(term.getId());
+					for (int k = index.getParentsStart(o), end = index
+							.getParentsEnd(o); k < end; ++k) {
+						int p = index.getParent(k);
+						if (--remainingChildren[p] == 0) {
+							nextLevel.add(index.getId(p));
 						}
 					}
-					taxonomy.removeNode(term.getId());
+					removedTerms.add(term.getId());
 
 				}
 				if (lCount % 10 == 0 || lCount == crtLevel.size()) {
 					progress("Level:   ", lCount, crtLevel.size());
-					progress("Removed: ", removedNodes, taxonomy.size());
+					progress("Removed: ", removedNodes, taxonomy.size()
+							- removedTerms.size());
 				}
 			}
+			taxonomy.removeNodes(removedTerms);
 			logln("REMOVED: " + removedNodes + "n " + removedArcs + "a");
 			crtLevel.clear();
 			crtLevel.addAll(nextLevel);
@@ -315,7 +335,7 @@ public class BottomUpAnnClustering extends AbstractCommandAction {
 			BufferedReader in = new BufferedReader(new FileReader(
 					LocalFileUtils.getTemporaryFile(coreFileName)));
 			String line;
-			Set<String> core = new HashSet<String>();
+			final Set<String> core = new HashSet<String>();
 			while ((line = in.readLine()) != null) {
 				if (!line.startsWith(taxonomy.getIDPrefix())) {
 					continue;
@@ -341,30 +361,30 @@ public class BottomUpAnnClustering extends AbstractCommandAction {
 					continue;
 				}
 				++count;
-				Set<String> replacements = new HashSet<String>();
-				Set<String> front = new HashSet<String>();
-				Set<String> next = new HashSet<String>();
-				front.addAll(obsoleteTermMapping.safeGet(line.trim()));
-				if (front.isEmpty()) {
-					front.add(line.trim());
+				// Go up from the term until reaching core terms
+				final Set<String> replacements = Collections
+						.synchronizedSet(new HashSet<String>());
+				Collection<String> sources = obsoleteTermMapping.safeGet(line.trim());
+				if (sources.isEmpty()) {
+					sources = Collections.singleton(line.trim());
+				}
+				int[] front = new int[sources.size()];
+				int i = 0;
+				for (String tId : sources) {
+					front[i++] = taxonomy.getOrdinal(tId);
 				}
-				while (!front.isEmpty()) {
-					for (String tId : front) {
-						TaxonomyTerm t = taxonomy.getTerm(tId);
-						if (t != null) {
-							if (core.contains(t.getId())) {
-								replacements.add(t.getId());
-							} else {
-								for (String p : t.getParents()) {
-									next.add(p);
+				final DAGTraversal traversal = taxonomy.getTraversal();
+				traversal.breadthFirst(front, DAGTraversal.Direction.UP,
+						new DAGTraversal.Visitor() {
+							public boolean visit(int ordinal, int distance) {
+								String id = traversal.getIndex().getId(ordinal);
+								if (core.contains(id)) {
+									replacements.add(id);
+									return false;
 								}
+								return true;
 							}
-						}
-					}
-					front.clear();
-					front.addAll(next);
-					next.clear();
-				}
+						});
 				if (!replacements.contains(line.trim())) {
 					out.println(line.trim() + "\t" + replacements);
 				}
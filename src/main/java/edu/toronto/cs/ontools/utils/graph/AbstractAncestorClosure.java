@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Common code for closures computed in one pass over the nodes in topological
+ * order, the ancestors of each node being the union of the ancestors of its
+ * parents. The pass is a {@link DAGTraversal#sweep downward sweep}, so large
+ * levels are processed in parallel.
+ */
+public abstract class AbstractAncestorClosure implements AncestorClosure {
+	protected final OrdinalIndex index;
+
+	protected AbstractAncestorClosure(OrdinalIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Computes the ancestors of a node, once those of its parents are known.
+	 */
+	protected abstract void computeRow(int ordinal);
+
+	/**
+	 * Computes all the rows.
+	 * 
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 */
+	protected void compute(ForkJoinPool pool) {
+		new DAGTraversal(this.index, pool).sweep(DAGTraversal.Direction.DOWN,
+				new DAGTraversal.Action() {
+					public void process(int ordinal) {
+						computeRow(ordinal);
+					}
+				});
+	}
+
+	/**
+	 * Tells whether a node has the same ordinal and the same parents in the
+	 * index of another version of the DAG; its ancestors are then the same
+	 * in both versions unless those of a parent changed.
+	 */
+	protected boolean hasSameParents(int ordinal, OrdinalIndex other) {
+		if (ordinal >= other.size()
+				|| !this.index.getId(ordinal).equals(other.getId(ordinal))) {
+			return false;
+		}
+		int start = this.index.getParentsStart(ordinal);
+		int otherStart = other.getParentsStart(ordinal);
+		int count = this.index.getParentsEnd(ordinal) - start;
+		if (other.getParentsEnd(ordinal) - otherStart != count) {
+			return false;
+		}
+		for (int k = 0; k < count; ++k) {
+			if (this.index.getParent(start + k) != other.getParent(otherStart
+					+ k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	public int size() {
+		return this.index.size();
+	}
+
+	public int nextAncestor(int ordinal, int from) {
+		// The row intersected with itself
+		return nextCommonAncestor(ordinal, ordinal, from);
+	}
+
+	public int[] getCommonAncestors(int ordinal1, int ordinal2) {
+		int[] result = new int[getCommonAncestorCount(ordinal1, ordinal2)];
+		int j = 0;
+		for (int a = nextCommonAncestor(ordinal1, ordinal2, 0); a >= 0; a = nextCommonAncestor(
+				ordinal1, ordinal2, a + 1)) {
+			result[j++] = a;
+		}
+		return result;
+	}
+
+	public int getUnionAncestorCount(int ordinal1, int ordinal2) {
+		return getAncestorCount(ordinal1) + getAncestorCount(ordinal2)
+				- getCommonAncestorCount(ordinal1, ordinal2);
+	}
+}
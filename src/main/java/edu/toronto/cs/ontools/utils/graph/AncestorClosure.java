@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+/**
+ * The ancestors of every node of a DAG, including the node itself, indexed by
+ * the ordinals of an {@link OrdinalIndex}. Implementations differ in how the
+ * ancestor sets are stored: {@link DenseAncestorClosure} uses plain bitsets,
+ * {@link CompressedAncestorClosure} uses compressed containers, for large
+ * DAGs.
+ */
+public interface AncestorClosure {
+	/**
+	 * @return the index this closure was computed for
+	 */
+	public OrdinalIndex getIndex();
+
+	public int size();
+
+	/**
+	 * Checks if a node is an ancestor of (or the same as) another node.
+	 */
+	public boolean isAncestor(int ancestor, int ordinal);
+
+	public int getAncestorCount(int ordinal);
+
+	/**
+	 * @return the sorted ordinals of the ancestors of a node, including the
+	 *         node itself
+	 */
+	public int[] getAncestors(int ordinal);
+
+	/**
+	 * Iterates over the ancestors of a node, including the node itself,
+	 * without copying them.
+	 * 
+	 * @param ordinal
+	 *            the node
+	 * @param from
+	 *            the smallest ordinal to consider
+	 * @return the smallest ancestor ordinal greater than or equal to
+	 *         {@code from}, or {@code -1} if there are none left
+	 */
+	public int nextAncestor(int ordinal, int from);
+
+	/**
+	 * Iterates over the common ancestors of two nodes, without building their
+	 * intersection.
+	 * 
+	 * @param ordinal1
+	 *            the first node
+	 * @param ordinal2
+	 *            the second node
+	 * @param from
+	 *            the smallest ordinal to consider
+	 * @return the smallest common ancestor ordinal greater than or equal to
+	 *         {@code from}, or {@code -1} if there are none left
+	 */
+	public int nextCommonAncestor(int ordinal1, int ordinal2, int from);
+
+	/**
+	 * @return the sorted ordinals of the common ancestors of two nodes
+	 */
+	public int[] getCommonAncestors(int ordinal1, int ordinal2);
+
+	/**
+	 * @return the size of the intersection of the ancestors of two nodes
+	 */
+	public int getCommonAncestorCount(int ordinal1, int ordinal2);
+
+	/**
+	 * @return the size of the union of the ancestors of two nodes
+	 */
+	public int getUnionAncestorCount(int ordinal1, int ordinal2);
+
+	/**
+	 * @return the approximate memory used by the closure, in bytes
+	 */
+	public long getSizeInBytes();
+}
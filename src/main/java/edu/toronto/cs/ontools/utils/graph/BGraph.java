@@ -62,6 +62,10 @@ public class BGraph<T extends Node> {
 		return existingNode;
 	}
 
+	/**
+	 * Connects two nodes; connecting already connected nodes does nothing,
+	 * since neighbor lists don't keep duplicates.
+	 */
 	public void addConnection(T lNode, T rNode) {
 		T crtLNode = addIfAbsent(lNode, Side.L);
 		T crtRNode = addIfAbsent(rNode, Side.R);
@@ -79,6 +83,33 @@ public class BGraph<T extends Node> {
 		}
 	}
 
+	public void removeConnection(T lNode, T rNode) {
+		T crtLNode = getNode(lNode.getId(), Side.L);
+		T crtRNode = getNode(rNode.getId(), Side.R);
+		if (crtLNode == null || crtRNode == null) {
+			return;
+		}
+		crtLNode.removeNeighbor(crtRNode);
+		crtRNode.removeNeighbor(crtLNode);
+	}
+
+	public boolean removeNode(String id, Side s) {
+		T node = this.nodes.get(s).remove(id);
+		if (node == null) {
+			return false;
+		}
+		this.nodeSides.remove(id);
+		Map<String, T> otherSide = this.nodes.get(s == Side.L ? Side.R
+				: Side.L);
+		for (String neighborId : node.getNeighbors()) {
+			T neighbor = otherSide.get(neighborId);
+			if (neighbor != null) {
+				neighbor.removeNeighbor(node);
+			}
+		}
+		return true;
+	}
+
 	public Set<String> getNodesIds(Side s) {
 		return this.nodes.get(s).keySet();
 	}
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ancestor closure stored as {@link CompressedOrdinalSet}s, for large DAGs.
+ * Ancestor sets are mostly small, so most containers are short arrays, and a
+ * node which adds nothing to a chunk of the ancestors of its parents simply
+ * reuses the parent's container, so the ancestors shared along a path are
+ * stored only once.
+ */
+public class CompressedAncestorClosure extends AbstractAncestorClosure {
+	private final CompressedOrdinalSet[] rows;
+
+	/**
+	 * The closure of an earlier version of the DAG, whose rows are reused
+	 * while computing this one.
+	 */
+	private CompressedAncestorClosure previous;
+
+	private CompressedAncestorClosure(OrdinalIndex index) {
+		super(index);
+		this.rows = new CompressedOrdinalSet[index.size()];
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG in the current thread.
+	 */
+	public static CompressedAncestorClosure build(OrdinalIndex index) {
+		return build(index, null);
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG.
+	 * 
+	 * @param index
+	 *            the DAG
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 */
+	public static CompressedAncestorClosure build(OrdinalIndex index,
+			ForkJoinPool pool) {
+		return build(index, pool, null);
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG, sharing the rows of the nodes
+	 * whose ancestors didn't change with the closure of an earlier version
+	 * of the DAG.
+	 * 
+	 * @param index
+	 *            the DAG
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 * @param previous
+	 *            the closure of an earlier version of the DAG, or
+	 *            {@code null}
+	 */
+	public static CompressedAncestorClosure build(OrdinalIndex index,
+			ForkJoinPool pool, CompressedAncestorClosure previous) {
+		CompressedAncestorClosure result = new CompressedAncestorClosure(index);
+		result.previous = previous;
+		result.compute(pool);
+		result.previous = null;
+		return result;
+	}
+
+	@Override
+	protected void computeRow(int ordinal) {
+		if (this.previous != null && isUnchanged(ordinal)) {
+			this.rows[ordinal] = this.previous.rows[ordinal];
+			return;
+		}
+		CompressedOrdinalSet row = CompressedOrdinalSet.of(ordinal);
+		for (int k = this.index.getParentsStart(ordinal), end = this.index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			CompressedOrdinalSet parentRow = this.rows[this.index.getParent(k)];
+			if (parentRow != null) {
+				// Only missing inside a cycle
+				row = row.or(parentRow);
+			}
+		}
+		this.rows[ordinal] = row;
+	}
+
+	/**
+	 * @return {@code true} if the row of a node in the previous closure is
+	 *         also its row in this closure
+	 */
+	private boolean isUnchanged(int ordinal) {
+		if (!hasSameParents(ordinal, this.previous.index)) {
+			return false;
+		}
+		for (int k = this.index.getParentsStart(ordinal), end = this.index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			int parent = this.index.getParent(k);
+			if (this.rows[parent] == null
+					|| this.rows[parent] != this.previous.rows[parent]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isAncestor(int ancestor, int ordinal) {
+		return this.rows[ordinal].contains(ancestor);
+	}
+
+	public int getAncestorCount(int ordinal) {
+		return this.rows[ordinal].getCardinality();
+	}
+
+	public int[] getAncestors(int ordinal) {
+		return this.rows[ordinal].toArray();
+	}
+
+	public int nextCommonAncestor(int ordinal1, int ordinal2, int from) {
+		return this.rows[ordinal1].nextCommon(this.rows[ordinal2], from);
+	}
+
+	public int getCommonAncestorCount(int ordinal1, int ordinal2) {
+		return this.rows[ordinal1].andCardinality(this.rows[ordinal2]);
+	}
+
+	public long getSizeInBytes() {
+		// Shared containers and keys are only counted once
+		Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+		long result = 16 + 4L * this.rows.length;
+		for (CompressedOrdinalSet row : this.rows) {
+			result += row.getSizeInBytes(seen);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,514 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable set of ordinals, compressed as in roaring bitmaps: the ordinals
+ * are split in chunks of 65536 values (keyed on the high 16 bits) and each
+ * chunk is stored in a container, either a sorted array of the low 16 bits
+ * for sparse chunks, or a 65536 bits bitmap for dense ones.
+ * 
+ * Containers are immutable too, so a union reuses the containers of its
+ * operands whenever one of them already holds the whole chunk; sets built as
+ * unions of other sets, like the closures of a DAG, share most of their
+ * storage. Intersections, unions and cardinalities are computed directly on
+ * the containers.
+ */
+final class CompressedOrdinalSet {
+	private static final int CHUNK_BITS = 16;
+
+	private static final int LOW_MASK = 0xFFFF;
+
+	/** Larger array containers take more space than a bitmap. */
+	private static final int MAX_ARRAY_SIZE = 4096;
+
+	private static final int BITMAP_WORDS = (LOW_MASK + 1) >>> 6;
+
+	/** Shared key arrays for the sets using only one of the first chunks. */
+	private static final char[][] SINGLE_KEYS = new char[256][];
+
+	static {
+		for (int i = 0; i < SINGLE_KEYS.length; ++i) {
+			SINGLE_KEYS[i] = new char[] { (char) i };
+		}
+	}
+
+	private final char[] keys;
+
+	private final Container[] containers;
+
+	private final int cardinality;
+
+	private CompressedOrdinalSet(char[] keys, Container[] containers) {
+		this.keys = keys;
+		this.containers = containers;
+		int c = 0;
+		for (Container container : containers) {
+			c += container.getCardinality();
+		}
+		this.cardinality = c;
+	}
+
+	public static CompressedOrdinalSet of(int ordinal) {
+		return new CompressedOrdinalSet(getSingleKey(ordinal >>> CHUNK_BITS),
+				new Container[] { new ArrayContainer(
+						new char[] { (char) (ordinal & LOW_MASK) }) });
+	}
+
+	/**
+	 * @param ordinals
+	 *            sorted ordinals, without duplicates
+	 */
+	public static CompressedOrdinalSet of(int[] ordinals) {
+		char[] keys = new char[ordinals.length];
+		Container[] containers = new Container[ordinals.length];
+		int n = 0;
+		for (int i = 0; i < ordinals.length;) {
+			int key = ordinals[i] >>> CHUNK_BITS;
+			int j = i;
+			while (j < ordinals.length && ordinals[j] >>> CHUNK_BITS == key) {
+				++j;
+			}
+			char[] values = new char[j - i];
+			for (int k = i; k < j; ++k) {
+				values[k - i] = (char) (ordinals[k] & LOW_MASK);
+			}
+			keys[n] = (char) key;
+			containers[n++] = ArrayContainer.of(values, values.length);
+			i = j;
+		}
+		return new CompressedOrdinalSet(Arrays.copyOf(keys, n), Arrays
+				.copyOf(containers, n));
+	}
+
+	private static char[] getSingleKey(int key) {
+		return key < SINGLE_KEYS.length ? SINGLE_KEYS[key]
+				: new char[] { (char) key };
+	}
+
+	public int getCardinality() {
+		return this.cardinality;
+	}
+
+	public boolean contains(int ordinal) {
+		int key = ordinal >>> CHUNK_BITS;
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.keys[i] == key) {
+				return this.containers[i].contains(ordinal & LOW_MASK);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the union of the two sets; may be one of them, if the other one
+	 *         adds nothing to it
+	 */
+	public CompressedOrdinalSet or(CompressedOrdinalSet other) {
+		char[] keys = new char[this.keys.length + other.keys.length];
+		Container[] containers = new Container[keys.length];
+		boolean changed = false, otherChanged = false;
+		int i = 0, j = 0, n = 0;
+		while (i < this.keys.length || j < other.keys.length) {
+			if (j == other.keys.length
+					|| (i < this.keys.length && this.keys[i] < other.keys[j])) {
+				keys[n] = this.keys[i];
+				containers[n++] = this.containers[i++];
+				otherChanged = true;
+			} else if (i == this.keys.length || this.keys[i] > other.keys[j]) {
+				keys[n] = other.keys[j];
+				containers[n++] = other.containers[j++];
+				changed = true;
+			} else {
+				keys[n] = this.keys[i];
+				containers[n] = this.containers[i++].or(other.containers[j++]);
+				// The union holds an operand when it has as many values
+				int cardinality = containers[n++].getCardinality();
+				changed |= cardinality != this.containers[i - 1]
+						.getCardinality();
+				otherChanged |= cardinality != other.containers[j - 1]
+						.getCardinality();
+			}
+		}
+		if (!changed) {
+			return this;
+		}
+		if (!otherChanged) {
+			return other;
+		}
+		if (n == 1) {
+			keys = getSingleKey(keys[0]);
+		} else if (n == this.keys.length) {
+			keys = this.keys;
+		} else if (n == other.keys.length) {
+			keys = other.keys;
+		} else {
+			keys = Arrays.copyOf(keys, n);
+		}
+		return new CompressedOrdinalSet(keys, n == containers.length ? containers
+				: Arrays.copyOf(containers, n));
+	}
+
+	public int andCardinality(CompressedOrdinalSet other) {
+		int result = 0;
+		int i = 0, j = 0;
+		while (i < this.keys.length && j < other.keys.length) {
+			if (this.keys[i] < other.keys[j]) {
+				++i;
+			} else if (this.keys[i] > other.keys[j]) {
+				++j;
+			} else {
+				result += this.containers[i++]
+						.andCardinality(other.containers[j++]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the smallest common ordinal greater than or equal to
+	 *         {@code from}, or {@code -1}
+	 */
+	public int nextCommon(CompressedOrdinalSet other, int from) {
+		int fromKey = from >>> CHUNK_BITS;
+		int i = 0, j = 0;
+		while (i < this.keys.length && j < other.keys.length) {
+			if (this.keys[i] < other.keys[j] || this.keys[i] < fromKey) {
+				++i;
+			} else if (this.keys[i] > other.keys[j]) {
+				++j;
+			} else {
+				int key = this.keys[i];
+				int low = this.containers[i].nextCommon(other.containers[j],
+						key == fromKey ? from & LOW_MASK : 0);
+				if (low >= 0) {
+					return (key << CHUNK_BITS) | low;
+				}
+				++i;
+				++j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the ordinals in the set, sorted
+	 */
+	public int[] toArray() {
+		int[] result = new int[this.cardinality];
+		int pos = 0;
+		for (int i = 0; i < this.keys.length; ++i) {
+			pos = this.containers[i].fill(result, pos,
+					this.keys[i] << CHUNK_BITS);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the memory used by the set, not counting the parts already
+	 * counted for other sets.
+	 * 
+	 * @param seen
+	 *            the parts already counted, updated by this method
+	 */
+	public long getSizeInBytes(Map<Object, Boolean> seen) {
+		long result = 24 + 16 + 4L * this.containers.length;
+		if (seen.put(this.keys, Boolean.TRUE) == null) {
+			result += 16 + 2L * this.keys.length;
+		}
+		for (Container container : this.containers) {
+			if (seen.put(container, Boolean.TRUE) == null) {
+				result += container.getSizeInBytes();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A set of values between 0 and 65535.
+	 */
+	private abstract static class Container {
+		public abstract int getCardinality();
+
+		public abstract boolean contains(int value);
+
+		/**
+		 * @return the union of the two containers; may be one of them, if the
+		 *         other one adds nothing to it
+		 */
+		public abstract Container or(Container other);
+
+		public abstract int andCardinality(Container other);
+
+		/**
+		 * @return the smallest common value greater than or equal to
+		 *         {@code from}, or {@code -1}
+		 */
+		public abstract int nextCommon(Container other, int from);
+
+		/**
+		 * Copies the values, in order, to an array.
+		 * 
+		 * @return the position following the last copied value
+		 */
+		public abstract int fill(int[] dest, int pos, int base);
+
+		public abstract long getSizeInBytes();
+	}
+
+	private static final class ArrayContainer extends Container {
+		private final char[] values;
+
+		public ArrayContainer(char[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public int getCardinality() {
+			return this.values.length;
+		}
+
+		@Override
+		public boolean contains(int value) {
+			return Arrays.binarySearch(this.values, (char) value) >= 0;
+		}
+
+		@Override
+		public Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			char[] otherValues = ((ArrayContainer) other).values;
+			char[] merged = new char[this.values.length + otherValues.length];
+			int i = 0, j = 0, n = 0;
+			while (i < this.values.length && j < otherValues.length) {
+				if (this.values[i] < otherValues[j]) {
+					merged[n++] = this.values[i++];
+				} else if (this.values[i] > otherValues[j]) {
+					merged[n++] = otherValues[j++];
+				} else {
+					merged[n++] = this.values[i++];
+					++j;
+				}
+			}
+			while (i < this.values.length) {
+				merged[n++] = this.values[i++];
+			}
+			while (j < otherValues.length) {
+				merged[n++] = otherValues[j++];
+			}
+			if (n == this.values.length) {
+				return this;
+			}
+			if (n == otherValues.length) {
+				return other;
+			}
+			return of(merged, n);
+		}
+
+		/**
+		 * Creates the best container for some sorted values.
+		 */
+		public static Container of(char[] values, int count) {
+			if (count > MAX_ARRAY_SIZE) {
+				long[] words = new long[BITMAP_WORDS];
+				for (int k = 0; k < count; ++k) {
+					words[values[k] >>> 6] |= 1L << values[k];
+				}
+				return new BitmapContainer(words, count);
+			}
+			return new ArrayContainer(count == values.length ? values : Arrays
+					.copyOf(values, count));
+		}
+
+		@Override
+		public int andCardinality(Container other) {
+			int result = 0;
+			if (other instanceof BitmapContainer) {
+				for (char value : this.values) {
+					if (other.contains(value)) {
+						++result;
+					}
+				}
+				return result;
+			}
+			char[] otherValues = ((ArrayContainer) other).values;
+			int i = 0, j = 0;
+			while (i < this.values.length && j < otherValues.length) {
+				if (this.values[i] < otherValues[j]) {
+					++i;
+				} else if (this.values[i] > otherValues[j]) {
+					++j;
+				} else {
+					++result;
+					++i;
+					++j;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public int nextCommon(Container other, int from) {
+			int i = lowerBound(this.values, from);
+			if (other instanceof BitmapContainer) {
+				for (; i < this.values.length; ++i) {
+					if (other.contains(this.values[i])) {
+						return this.values[i];
+					}
+				}
+				return -1;
+			}
+			char[] otherValues = ((ArrayContainer) other).values;
+			int j = lowerBound(otherValues, from);
+			while (i < this.values.length && j < otherValues.length) {
+				if (this.values[i] < otherValues[j]) {
+					++i;
+				} else if (this.values[i] > otherValues[j]) {
+					++j;
+				} else {
+					return this.values[i];
+				}
+			}
+			return -1;
+		}
+
+		private static int lowerBound(char[] values, int from) {
+			if (from == 0) {
+				return 0;
+			}
+			int result = Arrays.binarySearch(values, (char) from);
+			return result >= 0 ? result : -result - 1;
+		}
+
+		@Override
+		public int fill(int[] dest, int pos, int base) {
+			for (char value : this.values) {
+				dest[pos++] = base | value;
+			}
+			return pos;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return 16 + 16 + 2L * this.values.length;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		private final long[] words;
+
+		private final int cardinality;
+
+		public BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		public int getCardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		public boolean contains(int value) {
+			return (this.words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		public Container or(Container other) {
+			long[] result = this.words.clone();
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).words;
+				for (int w = 0; w < result.length; ++w) {
+					result[w] |= otherWords[w];
+				}
+			} else {
+				for (char value : ((ArrayContainer) other).values) {
+					result[value >>> 6] |= 1L << value;
+				}
+			}
+			int c = 0;
+			for (long word : result) {
+				c += Long.bitCount(word);
+			}
+			if (c == this.cardinality) {
+				return this;
+			}
+			if (c == other.getCardinality()) {
+				return other;
+			}
+			return new BitmapContainer(result, c);
+		}
+
+		@Override
+		public int andCardinality(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.andCardinality(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			int result = 0;
+			for (int w = 0; w < this.words.length; ++w) {
+				result += Long.bitCount(this.words[w] & otherWords[w]);
+			}
+			return result;
+		}
+
+		@Override
+		public int nextCommon(Container other, int from) {
+			if (other instanceof ArrayContainer) {
+				return other.nextCommon(this, from);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			int w = from >>> 6;
+			long word = this.words[w] & otherWords[w] & (-1L << from);
+			while (true) {
+				if (word != 0) {
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				}
+				if (++w == this.words.length) {
+					return -1;
+				}
+				word = this.words[w] & otherWords[w];
+			}
+		}
+
+		@Override
+		public int fill(int[] dest, int pos, int base) {
+			for (int w = 0; w < this.words.length; ++w) {
+				long word = this.words[w];
+				while (word != 0) {
+					dest[pos++] = base | ((w << 6) + Long
+							.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return pos;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return 16 + 16 + 8L * this.words.length;
+		}
+	}
+}
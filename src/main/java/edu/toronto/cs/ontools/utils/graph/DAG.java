@@ -19,30 +19,283 @@
  */
 package edu.toronto.cs.ontools.utils.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DAG<T extends DAGNode> {
 
 	private TreeMap<String, T> nodes = new TreeMap<String, T>();
 
+	/**
+	 * Whether the node map is shared with a copy of this DAG, in which case
+	 * it is copied before being changed.
+	 */
+	private boolean nodesShared;
+
+	private volatile int version;
+
+	private volatile OrdinalIndex ordinalIndex;
+
+	/**
+	 * The last index built for this DAG or for its copies, shared by all of
+	 * them; a new index keeps the ordinals it gave to the nodes.
+	 */
+	private AtomicReference<OrdinalIndex> lastIndex = new AtomicReference<OrdinalIndex>();
+
+	private volatile DepthIndex depthIndex;
+
+	private volatile DAGTraversal traversal;
+
+	private volatile PathDistanceOracle pathDistanceOracle;
+
+	private ForkJoinPool traversalPool;
+
+	private boolean frozen;
+
+	/**
+	 * Marks the nodes this DAG may change in place. Nodes carrying another
+	 * token are shared with other DAGs, and are copied before being changed.
+	 */
+	private Object owner = new Object();
+
+	/**
+	 * Ids of the nodes without children and of the nodes without parents,
+	 * computed on first use and then kept up to date by the changes made
+	 * through the DAG; {@code null} when unknown.
+	 */
+	private TreeSet<String> leafIds;
+
+	private TreeSet<String> rootIds;
+
 	public void clear() {
-		this.nodes.clear();
+		this.nodes = new TreeMap<String, T>();
+		this.nodesShared = false;
+		invalidateIndex();
 	}
 
 	public void addNode(T n) {
-		this.nodes.put(n.getId(), n);
+		if (n.owner == null) {
+			n.owner = this.owner;
+		}
+		getNodesForUpdate().put(n.getId(), n);
+		if (this.leafIds != null) {
+			update(this.leafIds, n.getId(), n.getChildren().isEmpty());
+			update(this.rootIds, n.getId(), n.getParents().isEmpty());
+		}
+		indexChanged();
 	}
 
-	public Map<String, T> getNodesMap() {
+	private static void update(Set<String> ids, String id, boolean present) {
+		if (present) {
+			ids.add(id);
+		} else {
+			ids.remove(id);
+		}
+	}
+
+	private TreeMap<String, T> getNodesForUpdate() {
+		if (this.nodesShared) {
+			this.nodes = new TreeMap<String, T>(this.nodes);
+			this.nodesShared = false;
+		}
 		return this.nodes;
 	}
 
+	/**
+	 * Counts the changes made to this DAG; indexes and caches built for a
+	 * version of the DAG are stale once the version changes.
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Must be called after changing the arcs of the nodes directly, since the
+	 * DAG cannot detect it by itself.
+	 */
+	public void invalidateIndex() {
+		this.leafIds = null;
+		this.rootIds = null;
+		indexChanged();
+	}
+
+	private void indexChanged() {
+		++this.version;
+		this.ordinalIndex = null;
+		this.depthIndex = null;
+		this.traversal = null;
+		this.pathDistanceOracle = null;
+		this.frozen = false;
+	}
+
+	/**
+	 * Prepares the DAG for read-only use: builds the ordinal index, which
+	 * holds the arcs as compact int arrays, and lets the arc lists of the
+	 * nodes read from the index instead of keeping their own copies of the
+	 * arcs. Any later change unfreezes the DAG; it can be frozen again
+	 * afterwards. Nodes keep the index they read from until they change or
+	 * the DAG owning them is frozen again.
+	 */
+	public void freeze() {
+		if (this.frozen) {
+			return;
+		}
+		OrdinalIndex index = getOrdinalIndex();
+		for (T node : this.nodes.values()) {
+			// Shared nodes may be in use elsewhere, leave them as they are
+			if (node.owner == this.owner) {
+				node.useIndex(index, index.getOrdinal(node.getId()));
+			}
+		}
+		this.frozen = true;
+	}
+
+	/**
+	 * Releases the unused capacity of the arc lists of the nodes, without
+	 * building the indexes.
+	 */
+	public void trimToSize() {
+		for (T node : this.nodes.values()) {
+			if (node.owner == this.owner) {
+				node.trimToSize();
+			}
+		}
+	}
+
+	public boolean isFrozen() {
+		return this.frozen;
+	}
+
+	/**
+	 * Returns the ordinal index of the current version of the DAG, building
+	 * it if needed.
+	 */
+	public OrdinalIndex getOrdinalIndex() {
+		OrdinalIndex result = this.ordinalIndex;
+		if (result == null) {
+			synchronized (this) {
+				result = this.ordinalIndex;
+				if (result == null) {
+					result = new OrdinalIndex(this.nodes.values(),
+							this.version, this.lastIndex.get());
+					this.ordinalIndex = result;
+					this.lastIndex.set(result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the depths, heights and levels of the nodes for the current
+	 * version of the DAG, computing them if needed.
+	 */
+	public DepthIndex getDepthIndex() {
+		DepthIndex result = this.depthIndex;
+		if (result == null) {
+			synchronized (this) {
+				result = this.depthIndex;
+				if (result == null) {
+					result = new DepthIndex(getOrdinalIndex());
+					this.depthIndex = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the traversals of the current version of the DAG, running on
+	 * the {@link #setTraversalPool(ForkJoinPool) traversal pool}.
+	 */
+	public DAGTraversal getTraversal() {
+		DAGTraversal result = this.traversal;
+		if (result == null) {
+			synchronized (this) {
+				result = this.traversal;
+				if (result == null) {
+					// Only parallel sweeps need the depths
+					result = new DAGTraversal(getOrdinalIndex(),
+							this.traversalPool == null ? null
+									: getDepthIndex(), this.traversalPool);
+					this.traversal = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the shortest path distances between the nodes of the current
+	 * version of the DAG, computing them on first use.
+	 */
+	public PathDistanceOracle getPathDistanceOracle() {
+		PathDistanceOracle result = this.pathDistanceOracle;
+		if (result == null) {
+			synchronized (this) {
+				result = this.pathDistanceOracle;
+				if (result == null) {
+					result = new PathDistanceOracle(getTraversal(),
+							getDepthIndex());
+					this.pathDistanceOracle = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	public ForkJoinPool getTraversalPool() {
+		return this.traversalPool;
+	}
+
+	/**
+	 * Sets the pool used by {@link #getTraversal()} for large frontiers and
+	 * levels; by default traversals run in the calling thread.
+	 */
+	public synchronized void setTraversalPool(ForkJoinPool traversalPool) {
+		this.traversalPool = traversalPool;
+		this.traversal = null;
+	}
+
+	/**
+	 * @return the ids of all the nodes, parents before children
+	 */
+	public List<String> getTopologicalOrder() {
+		return getOrdinalIndex().getIds();
+	}
+
+	/**
+	 * @return the ordinal of a node, or {@code -1} if there is no such node
+	 */
+	public int getOrdinal(String id) {
+		return getOrdinalIndex().getOrdinal(id);
+	}
+
+	public T getNode(int ordinal) {
+		return this.nodes.get(getOrdinalIndex().getId(ordinal));
+	}
+
+	public int[] getParentOrdinals(int ordinal) {
+		return getOrdinalIndex().getParents(ordinal);
+	}
+
+	public int[] getChildOrdinals(int ordinal) {
+		return getOrdinalIndex().getChildren(ordinal);
+	}
+
+	public Map<String, T> getNodesMap() {
+		return Collections.unmodifiableMap(this.nodes);
+	}
+
 	public Set<String> getNodesIds() {
 		return this.nodes.keySet();
 	}
@@ -55,20 +308,95 @@ public class DAG<T extends DAGNode> {
 		return this.nodes.get(id);
 	}
 
+	/**
+	 * Returns a node which is about to be changed. If the node is shared with
+	 * another DAG, it is first replaced by a private copy, so that the change
+	 * isn't visible in the other DAG; the DAG then counts as changed, since
+	 * caches may hold the replaced node.
+	 * 
+	 * @return the node, or {@code null} if there is no such node
+	 */
+	@SuppressWarnings("unchecked")
+	protected T getNodeForUpdate(String id) {
+		T node = this.nodes.get(id);
+		if (node != null && node.owner != this.owner) {
+			node = (T) node.clone();
+			node.owner = this.owner;
+			getNodesForUpdate().put(id, node);
+			indexChanged();
+		}
+		return node;
+	}
+
+	/**
+	 * Turns this (empty) DAG into a copy of another one, in constant time.
+	 * Nothing is copied: from now on both DAGs copy the node map before
+	 * adding or removing nodes, and copy a node before changing it. The
+	 * indexes of the source are shared as well, until one of the DAGs
+	 * changes. Must be called from the thread changing the source, if any.
+	 */
+	protected void copyFrom(DAG<T> source) {
+		this.nodes = source.nodes;
+		this.nodesShared = true;
+		source.nodesShared = true;
+		this.version = source.version;
+		this.ordinalIndex = source.ordinalIndex;
+		this.lastIndex = source.lastIndex;
+		this.depthIndex = source.depthIndex;
+		this.traversal = source.traversal;
+		this.pathDistanceOracle = source.pathDistanceOracle;
+		this.traversalPool = source.traversalPool;
+		this.frozen = source.frozen;
+		source.owner = new Object();
+	}
+
 	public int size() {
 		return this.nodes.size();
 	}
 
 	public List<DAGNode> getLeaves() {
-		List<DAGNode> result = new LinkedList<DAGNode>();
-		for (DAGNode n : this.nodes.values()) {
-			if (n.getChildren().size() == 0) {
-				result.add(n);
-			}
+		Set<String> ids = getLeafIds();
+		List<DAGNode> result = new ArrayList<DAGNode>(ids.size());
+		for (String id : ids) {
+			result.add(this.nodes.get(id));
 		}
 		return result;
 	}
 
+	/**
+	 * @return the ids of the nodes without children, in id order
+	 */
+	public Set<String> getLeafIds() {
+		computeLeavesAndRoots();
+		return Collections.unmodifiableSet(this.leafIds);
+	}
+
+	/**
+	 * @return the ids of the nodes without parents, in id order
+	 */
+	public Set<String> getRootIds() {
+		computeLeavesAndRoots();
+		return Collections.unmodifiableSet(this.rootIds);
+	}
+
+	private void computeLeavesAndRoots() {
+		if (this.leafIds != null) {
+			return;
+		}
+		TreeSet<String> leaves = new TreeSet<String>();
+		TreeSet<String> roots = new TreeSet<String>();
+		for (T n : this.nodes.values()) {
+			if (n.getChildren().isEmpty()) {
+				leaves.add(n.getId());
+			}
+			if (n.getParents().isEmpty()) {
+				roots.add(n.getId());
+			}
+		}
+		this.leafIds = leaves;
+		this.rootIds = roots;
+	}
+
 	public boolean removeNode(String id) {
 		return this.removeNode(getNode(id));
 	}
@@ -77,23 +405,73 @@ public class DAG<T extends DAGNode> {
 		if (node == null) {
 			return false;
 		}
-		for (String p : node.getParents()) {
-			getNode(p).removeChild(node.getId());
+		return removeNodes(Collections.singleton(node.getId())) > 0;
+	}
+
+	/**
+	 * Removes several nodes at once, detaching them from their remaining
+	 * neighbors in a single pass over their arcs. The leaf and root sets are
+	 * updated along the way.
+	 * 
+	 * @param ids
+	 *            the ids of the nodes to remove; unknown ids are ignored
+	 * @return the number of removed nodes
+	 */
+	public int removeNodes(Collection<String> ids) {
+		Set<String> removed = new HashSet<String>();
+		for (String id : ids) {
+			if (this.nodes.containsKey(id)) {
+				removed.add(id);
+			}
 		}
-		for (String c : node.getChildren()) {
-			getNode(c).removeParent(node.getId());
+		if (removed.isEmpty()) {
+			return 0;
 		}
-		return (this.nodes.remove(node.getId()) != null);
-
+		TreeMap<String, T> nodes = getNodesForUpdate();
+		for (String id : removed) {
+			T node = nodes.get(id);
+			for (String p : node.getParents()) {
+				if (removed.contains(p)) {
+					continue;
+				}
+				DAGNode parent = getNodeForUpdate(p);
+				if (parent != null && parent.removeChild(id)
+						&& this.leafIds != null
+						&& parent.getChildren().isEmpty()) {
+					this.leafIds.add(p);
+				}
+			}
+			for (String c : node.getChildren()) {
+				if (removed.contains(c)) {
+					continue;
+				}
+				DAGNode child = getNodeForUpdate(c);
+				if (child != null && child.removeParent(id)
+						&& this.rootIds != null
+						&& child.getParents().isEmpty()) {
+					this.rootIds.add(c);
+				}
+			}
+		}
+		for (String id : removed) {
+			nodes.remove(id);
+			if (this.leafIds != null) {
+				this.leafIds.remove(id);
+				this.rootIds.remove(id);
+			}
+		}
+		indexChanged();
+		return removed.size();
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Returns a copy of this DAG, in constant time; see
+	 * {@link #copyFrom(DAG)}.
+	 */
 	@Override
 	public DAG<T> clone() {
 		DAG<T> clone = new DAG<T>();
-		for (Entry<String, T> entry : this.nodes.entrySet()) {
-			clone.nodes.put(entry.getKey(), (T) entry.getValue().clone());
-		}
+		clone.copyFrom(this);
 		return clone;
 	}
 }
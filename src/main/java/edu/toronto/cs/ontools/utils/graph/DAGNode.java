@@ -19,12 +19,18 @@
  */
 package edu.toronto.cs.ontools.utils.graph;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class DAGNode extends AbstractNode implements IDAGNode {
-	private List<String> parents;
-	private List<String> children;
+	private NeighborList parents = new NeighborList();
+	private NeighborList children = new NeighborList();
+
+	/**
+	 * The DAG allowed to change this node in place; other DAGs sharing the
+	 * node copy it first.
+	 */
+	Object owner;
 
 	public DAGNode(String id) {
 		super(id, "");
@@ -32,8 +38,6 @@ public class DAGNode extends AbstractNode implements IDAGNode {
 
 	public DAGNode(String id, String name) {
 		super(id, name);
-		this.parents = new LinkedList<String>();
-		this.children = new LinkedList<String>();
 	}
 
 	public boolean addParent(String parentId) {
@@ -104,6 +108,31 @@ public class DAGNode extends AbstractNode implements IDAGNode {
 		return hasChild(neighbor.getId()) || hasParent(neighbor.getId());
 	}
 
+	/**
+	 * Releases the unused capacity of the arc lists, for nodes which are not
+	 * expected to change anymore.
+	 */
+	public void trimToSize() {
+		this.parents.trimToSize();
+		this.children.trimToSize();
+	}
+
+	/**
+	 * Lets the arc lists read from the arcs of this node in an index of a
+	 * frozen DAG instead of keeping their own identifiers, until they are
+	 * changed; lists which can't do that are only trimmed.
+	 */
+	void useIndex(OrdinalIndex index, int ordinal) {
+		if (!this.parents.useIndex(index, index.getParentsStart(ordinal),
+				index.getParentsEnd(ordinal), true)) {
+			this.parents.trimToSize();
+		}
+		if (!this.children.useIndex(index, index.getChildrenStart(ordinal),
+				index.getChildrenEnd(ordinal), false)) {
+			this.children.trimToSize();
+		}
+	}
+
 	public List<String> getParents() {
 		return this.parents;
 	}
@@ -120,7 +149,8 @@ public class DAGNode extends AbstractNode implements IDAGNode {
 
 	@Override
 	public List<String> getNeighbors() {
-		List<String> result = new LinkedList<String>();
+		List<String> result = new ArrayList<String>(this.parents.size()
+				+ this.children.size());
 		result.addAll(this.parents);
 		result.addAll(this.children);
 		return result;
@@ -134,12 +164,8 @@ public class DAGNode extends AbstractNode implements IDAGNode {
 	@Override
 	public DAGNode clone() {
 		DAGNode clone = new DAGNode(this.getId(), this.getName());
-		for (String p : this.getParents()) {
-			clone.addParent(p);
-		}
-		for (String c : this.getChildren()) {
-			clone.addChild(c);
-		}
+		clone.parents = new NeighborList(this.parents);
+		clone.children = new NeighborList(this.children);
 		return clone;
 	}
 }
@@ -0,0 +1,393 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Traversals of the nodes of an {@link OrdinalIndex}: level-synchronous
+ * breadth-first searches, multi-source reachability and topological sweeps.
+ * Large frontiers and levels are split between the threads of a fork/join
+ * pool; small ones, and all of them when there is no pool, are processed in
+ * the calling thread.
+ */
+public class DAGTraversal {
+	/** Which arcs are followed. */
+	public enum Direction {
+		/** From children to parents. */
+		UP,
+		/** From parents to children. */
+		DOWN
+	}
+
+	/**
+	 * Receives the nodes reached by a breadth-first search. Called from
+	 * several threads at the same time when frontiers are large.
+	 */
+	public interface Visitor {
+		/**
+		 * @param ordinal
+		 *            the reached node
+		 * @param distance
+		 *            the number of arcs from the closest source
+		 * @return {@code true} to continue past this node, {@code false} to
+		 *         stop the search along this path
+		 */
+		public boolean visit(int ordinal, int distance);
+	}
+
+	/**
+	 * Processes the nodes during a topological sweep. Called from several
+	 * threads at the same time, but only once the nodes it depends on were
+	 * processed.
+	 */
+	public interface Action {
+		public void process(int ordinal);
+	}
+
+	/** Smaller frontiers and levels are not worth splitting between threads. */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private final OrdinalIndex index;
+
+	private final ForkJoinPool pool;
+
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/** Provides the levels of the parallel sweeps. */
+	private volatile DepthIndex depths;
+
+	/**
+	 * @param index
+	 *            the DAG to traverse
+	 * @param pool
+	 *            the pool used for large frontiers and levels, or
+	 *            {@code null} to do everything in the calling thread
+	 */
+	public DAGTraversal(OrdinalIndex index, ForkJoinPool pool) {
+		this(index, null, pool);
+	}
+
+	/**
+	 * @param index
+	 *            the DAG to traverse
+	 * @param depths
+	 *            the depths of the nodes of the DAG, or {@code null} to
+	 *            compute them on the first parallel sweep
+	 * @param pool
+	 *            the pool used for large frontiers and levels, or
+	 *            {@code null} to do everything in the calling thread
+	 */
+	public DAGTraversal(OrdinalIndex index, DepthIndex depths,
+			ForkJoinPool pool) {
+		this.index = index;
+		this.depths = depths;
+		this.pool = (pool == null || pool.getParallelism() < 2) ? null : pool;
+	}
+
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	public int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+
+	/**
+	 * Sets the size from which frontiers and levels are processed in
+	 * parallel.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = Math.max(1, parallelThreshold);
+	}
+
+	/**
+	 * Finds all the nodes reachable from a set of sources.
+	 * 
+	 * @param sources
+	 *            the ordinals of the sources; negative ordinals are ignored
+	 * @param direction
+	 *            which arcs to follow
+	 * @return the reached nodes, including the sources
+	 */
+	public BitSet getReachable(int[] sources, Direction direction) {
+		return breadthFirst(sources, direction, null);
+	}
+
+	/**
+	 * Level-synchronous breadth-first search: all the nodes at distance
+	 * {@code d} from the sources are visited before those at distance
+	 * {@code d + 1}. Each node is visited once, and inside a frontier the
+	 * nodes are ordered by ordinal.
+	 * 
+	 * @param sources
+	 *            the ordinals of the sources, visited at distance 0;
+	 *            negative ordinals are ignored
+	 * @param direction
+	 *            which arcs to follow
+	 * @param visitor
+	 *            receives the reached nodes and decides where to stop, or
+	 *            {@code null} to reach everything
+	 * @return the visited nodes
+	 */
+	public BitSet breadthFirst(int[] sources, Direction direction,
+			Visitor visitor) {
+		AtomicLongArray visited = new AtomicLongArray(
+				(this.index.size() >>> ADDRESS_BITS_PER_WORD) + 1);
+		int[] frontier = new int[sources.length];
+		int count = 0;
+		for (int source : sources) {
+			if (source >= 0 && claim(visited, source)) {
+				frontier[count++] = source;
+			}
+		}
+		frontier = Arrays.copyOf(frontier, count);
+		Arrays.sort(frontier);
+		for (int distance = 0; frontier.length > 0; ++distance) {
+			if (this.pool == null || frontier.length < this.parallelThreshold) {
+				frontier = expand(frontier, 0, frontier.length, distance,
+						direction, visitor, visited);
+			} else {
+				frontier = this.pool.invoke(new FrontierTask(frontier, 0,
+						frontier.length, getGrain(frontier.length), distance,
+						direction, visitor, visited));
+			}
+			Arrays.sort(frontier);
+		}
+		long[] words = new long[visited.length()];
+		for (int i = 0; i < words.length; ++i) {
+			words[i] = visited.get(i);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Visits part of a frontier.
+	 * 
+	 * @return the newly reached nodes
+	 */
+	private int[] expand(int[] frontier, int start, int end, int distance,
+			Direction direction, Visitor visitor, AtomicLongArray visited) {
+		OrdinalIndex index = this.index;
+		boolean up = direction == Direction.UP;
+		int[] result = new int[Math.max(16, end - start)];
+		int count = 0;
+		for (int i = start; i < end; ++i) {
+			int node = frontier[i];
+			if (visitor != null && !visitor.visit(node, distance)) {
+				continue;
+			}
+			int k = up ? index.getParentsStart(node) : index
+					.getChildrenStart(node);
+			int last = up ? index.getParentsEnd(node) : index
+					.getChildrenEnd(node);
+			for (; k < last; ++k) {
+				int next = up ? index.getParent(k) : index.getChild(k);
+				if (claim(visited, next)) {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, 2 * count);
+					}
+					result[count++] = next;
+				}
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Marks a node as visited.
+	 * 
+	 * @return {@code false} if it already was
+	 */
+	private static boolean claim(AtomicLongArray visited, int ordinal) {
+		int word = ordinal >>> ADDRESS_BITS_PER_WORD;
+		long mask = 1L << ordinal;
+		while (true) {
+			long old = visited.get(word);
+			if ((old & mask) != 0) {
+				return false;
+			}
+			if (visited.compareAndSet(word, old, old | mask)) {
+				return true;
+			}
+		}
+	}
+
+	private class FrontierTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 201210181200L;
+
+		private final int[] frontier;
+
+		private final int start;
+
+		private final int end;
+
+		private final int grain;
+
+		private final int distance;
+
+		private final Direction direction;
+
+		private final Visitor visitor;
+
+		private final AtomicLongArray visited;
+
+		public FrontierTask(int[] frontier, int start, int end, int grain,
+				int distance, Direction direction, Visitor visitor,
+				AtomicLongArray visited) {
+			this.frontier = frontier;
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
+			this.distance = distance;
+			this.direction = direction;
+			this.visitor = visitor;
+			this.visited = visited;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (this.end - this.start <= this.grain) {
+				return expand(this.frontier, this.start, this.end,
+						this.distance, this.direction, this.visitor,
+						this.visited);
+			}
+			int middle = (this.start + this.end) >>> 1;
+			FrontierTask left = new FrontierTask(this.frontier, this.start,
+					middle, this.grain, this.distance, this.direction,
+					this.visitor, this.visited);
+			left.fork();
+			int[] right = new FrontierTask(this.frontier, middle, this.end,
+					this.grain, this.distance, this.direction, this.visitor,
+					this.visited).compute();
+			int[] result = left.join();
+			if (right.length == 0) {
+				return result;
+			}
+			int length = result.length;
+			result = Arrays.copyOf(result, length + right.length);
+			System.arraycopy(right, 0, result, length, right.length);
+			return result;
+		}
+	}
+
+	/**
+	 * Processes all the nodes in topological order: going {@link Direction#DOWN
+	 * down}, a node is processed after all its parents; going
+	 * {@link Direction#UP up}, after all its children. Arcs closing a cycle
+	 * are ignored. The nodes are processed in waves of independent nodes,
+	 * large waves in parallel.
+	 */
+	public void sweep(Direction direction, Action action) {
+		int size = this.index.size();
+		if (this.pool == null) {
+			if (direction == Direction.DOWN) {
+				for (int i = 0; i < size; ++i) {
+					action.process(i);
+				}
+			} else {
+				for (int i = size - 1; i >= 0; --i) {
+					action.process(i);
+				}
+			}
+			return;
+		}
+		// Going down, nodes only depend on nodes with a smaller maximum
+		// depth; going up, on nodes with a smaller height
+		DepthIndex depths = getDepths();
+		int[] levels, offsets;
+		if (direction == Direction.DOWN) {
+			levels = depths.getMaxDepthLevels();
+			offsets = depths.getMaxDepthLevelOffsets();
+		} else {
+			levels = depths.getHeightLevels();
+			offsets = depths.getHeightLevelOffsets();
+		}
+		for (int l = 0; l + 1 < offsets.length; ++l) {
+			int start = offsets[l], end = offsets[l + 1];
+			if (end - start < this.parallelThreshold) {
+				for (int i = start; i < end; ++i) {
+					action.process(levels[i]);
+				}
+			} else {
+				this.pool.invoke(new LevelTask(levels, start, end,
+						getGrain(end - start), action));
+			}
+		}
+	}
+
+	private int getGrain(int length) {
+		return Math.max(this.parallelThreshold / 4, length
+				/ (4 * this.pool.getParallelism()));
+	}
+
+	private DepthIndex getDepths() {
+		DepthIndex result = this.depths;
+		if (result == null) {
+			result = new DepthIndex(this.index);
+			this.depths = result;
+		}
+		return result;
+	}
+
+	private static class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 201210181200L;
+
+		private final int[] level;
+
+		private final int start;
+
+		private final int end;
+
+		private final int grain;
+
+		private final Action action;
+
+		public LevelTask(int[] level, int start, int end, int grain,
+				Action action) {
+			this.level = level;
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start <= this.grain) {
+				for (int i = this.start; i < this.end; ++i) {
+					this.action.process(this.level[i]);
+				}
+				return;
+			}
+			int middle = (this.start + this.end) >>> 1;
+			invokeAll(new LevelTask(this.level, this.start, middle,
+					this.grain, this.action), new LevelTask(this.level,
+					middle, this.end, this.grain, this.action));
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ancestor closure stored as one bitset per node. Since ordinals follow a
+ * topological order, the bitset of a node only needs as many words as
+ * required to hold its own ordinal; still, the size grows with the square of
+ * the number of nodes, so this is best suited for DAGs of up to a few tens of
+ * thousands of nodes.
+ */
+public class DenseAncestorClosure extends AbstractAncestorClosure {
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private final long[][] ancestors;
+
+	/**
+	 * The closure of an earlier version of the DAG, whose rows are reused
+	 * while computing this one.
+	 */
+	private DenseAncestorClosure previous;
+
+	private DenseAncestorClosure(OrdinalIndex index) {
+		super(index);
+		this.ancestors = new long[index.size()][];
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG in the current thread.
+	 */
+	public static DenseAncestorClosure build(OrdinalIndex index) {
+		return build(index, null);
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG.
+	 * 
+	 * @param index
+	 *            the DAG
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 */
+	public static DenseAncestorClosure build(OrdinalIndex index,
+			ForkJoinPool pool) {
+		return build(index, pool, null);
+	}
+
+	/**
+	 * Computes the ancestor closure of a DAG, sharing the rows of the nodes
+	 * whose ancestors didn't change with the closure of an earlier version
+	 * of the DAG.
+	 * 
+	 * @param index
+	 *            the DAG
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 * @param previous
+	 *            the closure of an earlier version of the DAG, or
+	 *            {@code null}
+	 */
+	public static DenseAncestorClosure build(OrdinalIndex index,
+			ForkJoinPool pool, DenseAncestorClosure previous) {
+		DenseAncestorClosure result = new DenseAncestorClosure(index);
+		result.previous = previous;
+		result.compute(pool);
+		result.previous = null;
+		return result;
+	}
+
+	@Override
+	protected void computeRow(int ordinal) {
+		if (this.previous != null && isUnchanged(ordinal)) {
+			this.ancestors[ordinal] = this.previous.ancestors[ordinal];
+			return;
+		}
+		long[] row = new long[(ordinal >>> ADDRESS_BITS_PER_WORD) + 1];
+		row[ordinal >>> ADDRESS_BITS_PER_WORD] |= 1L << ordinal;
+		for (int k = this.index.getParentsStart(ordinal), end = this.index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			long[] parentRow = this.ancestors[this.index.getParent(k)];
+			if (parentRow == null) {
+				// Only possible inside a cycle
+				continue;
+			}
+			for (int w = Math.min(parentRow.length, row.length) - 1; w >= 0; --w) {
+				row[w] |= parentRow[w];
+			}
+		}
+		this.ancestors[ordinal] = row;
+	}
+
+	/**
+	 * @return {@code true} if the row of a node in the previous closure is
+	 *         also its row in this closure
+	 */
+	private boolean isUnchanged(int ordinal) {
+		if (!hasSameParents(ordinal, this.previous.index)) {
+			return false;
+		}
+		for (int k = this.index.getParentsStart(ordinal), end = this.index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			int parent = this.index.getParent(k);
+			if (this.ancestors[parent] == null
+					|| this.ancestors[parent] != this.previous.ancestors[parent]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isAncestor(int ancestor, int ordinal) {
+		long[] row = this.ancestors[ordinal];
+		int word = ancestor >>> ADDRESS_BITS_PER_WORD;
+		return word < row.length && (row[word] & (1L << ancestor)) != 0;
+	}
+
+	public int getAncestorCount(int ordinal) {
+		int result = 0;
+		for (long word : this.ancestors[ordinal]) {
+			result += Long.bitCount(word);
+		}
+		return result;
+	}
+
+	public int[] getAncestors(int ordinal) {
+		long[] row = this.ancestors[ordinal];
+		int[] result = new int[getAncestorCount(ordinal)];
+		int j = 0;
+		for (int w = 0; w < row.length; ++w) {
+			long word = row[w];
+			while (word != 0) {
+				result[j++] = (w << ADDRESS_BITS_PER_WORD)
+						+ Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return result;
+	}
+
+	public int nextCommonAncestor(int ordinal1, int ordinal2, int from) {
+		long[] row1 = this.ancestors[ordinal1];
+		long[] row2 = this.ancestors[ordinal2];
+		int length = Math.min(row1.length, row2.length);
+		int w = from >>> ADDRESS_BITS_PER_WORD;
+		if (w >= length) {
+			return -1;
+		}
+		long word = row1[w] & row2[w] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << ADDRESS_BITS_PER_WORD)
+						+ Long.numberOfTrailingZeros(word);
+			}
+			if (++w == length) {
+				return -1;
+			}
+			word = row1[w] & row2[w];
+		}
+	}
+
+	public int getCommonAncestorCount(int ordinal1, int ordinal2) {
+		long[] row1 = this.ancestors[ordinal1];
+		long[] row2 = this.ancestors[ordinal2];
+		int result = 0;
+		for (int w = Math.min(row1.length, row2.length) - 1; w >= 0; --w) {
+			result += Long.bitCount(row1[w] & row2[w]);
+		}
+		return result;
+	}
+
+	public long getSizeInBytes() {
+		// Array headers and references included
+		long result = 16 + 8L * this.ancestors.length;
+		for (long[] row : this.ancestors) {
+			result += 16 + 8L * row.length;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+
+/**
+ * Depths and heights of the nodes of a {@link DAG}, computed in one sweep
+ * over the topological order of an {@link OrdinalIndex} and in one sweep in
+ * reverse order. The depth of a node counts the arcs from a node without
+ * parents: the minimum depth is the shortest such path, the maximum depth the
+ * longest one. The height of a node is the longest path down to a leaf.
+ * 
+ * Nodes are also grouped in levels, by minimum depth, by maximum depth and
+ * by height; each level lists its nodes in topological order. The nodes of
+ * a maximum depth level only have parents in the previous levels, and those
+ * of a height level only have children in the previous levels, so
+ * {@link DAGTraversal} processes each of these levels in parallel.
+ */
+public class DepthIndex {
+	private final OrdinalIndex index;
+
+	private final int[] minDepth;
+
+	private final int[] maxDepth;
+
+	private final int[] height;
+
+	private final int[] depthLevelOffsets;
+
+	private final int[] depthLevels;
+
+	private final int[] maxDepthLevelOffsets;
+
+	private final int[] maxDepthLevels;
+
+	private final int[] heightLevelOffsets;
+
+	private final int[] heightLevels;
+
+	public DepthIndex(OrdinalIndex index) {
+		this.index = index;
+		int size = index.size();
+		this.minDepth = new int[size];
+		this.maxDepth = new int[size];
+		this.height = new int[size];
+
+		int depth = -1, maxDepth = -1;
+		for (int o = 0; o < size; ++o) {
+			int min = Integer.MAX_VALUE, max = 0;
+			for (int k = index.getParentsStart(o), end = index
+					.getParentsEnd(o); k < end; ++k) {
+				int p = index.getParent(k);
+				// Parents with larger ordinals close a cycle
+				if (p < o) {
+					min = Math.min(min, this.minDepth[p] + 1);
+					max = Math.max(max, this.maxDepth[p] + 1);
+				}
+			}
+			this.minDepth[o] = (min == Integer.MAX_VALUE) ? 0 : min;
+			this.maxDepth[o] = max;
+			depth = Math.max(depth, this.minDepth[o]);
+			maxDepth = Math.max(maxDepth, max);
+		}
+		int maxHeight = -1;
+		for (int o = size - 1; o >= 0; --o) {
+			int h = 0;
+			for (int k = index.getChildrenStart(o), end = index
+					.getChildrenEnd(o); k < end; ++k) {
+				int c = index.getChild(k);
+				if (c > o) {
+					h = Math.max(h, this.height[c] + 1);
+				}
+			}
+			this.height[o] = h;
+			maxHeight = Math.max(maxHeight, h);
+		}
+
+		this.depthLevelOffsets = new int[depth + 2];
+		this.depthLevels = bucket(this.minDepth, this.depthLevelOffsets);
+		this.maxDepthLevelOffsets = new int[maxDepth + 2];
+		this.maxDepthLevels = bucket(this.maxDepth,
+				this.maxDepthLevelOffsets);
+		this.heightLevelOffsets = new int[maxHeight + 2];
+		this.heightLevels = bucket(this.height, this.heightLevelOffsets);
+	}
+
+	/**
+	 * Counting sort of the ordinals by level; ordinals stay sorted inside
+	 * each level.
+	 */
+	private static int[] bucket(int[] levels, int[] offsets) {
+		for (int level : levels) {
+			++offsets[level + 1];
+		}
+		for (int i = 1; i < offsets.length; ++i) {
+			offsets[i] += offsets[i - 1];
+		}
+		int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+		int[] result = new int[levels.length];
+		for (int o = 0; o < levels.length; ++o) {
+			result[fill[levels[o]]++] = o;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the ordinal index the depths were computed for
+	 */
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	public int getMinDepth(int ordinal) {
+		return this.minDepth[ordinal];
+	}
+
+	public int getMaxDepth(int ordinal) {
+		return this.maxDepth[ordinal];
+	}
+
+	public int getHeight(int ordinal) {
+		return this.height[ordinal];
+	}
+
+	/**
+	 * @return the number of minimum depth levels
+	 */
+	public int getDepthLevelCount() {
+		return this.depthLevelOffsets.length - 1;
+	}
+
+	/**
+	 * @return the ordinals of the nodes with a given minimum depth, in
+	 *         topological order
+	 */
+	public int[] getDepthLevel(int depth) {
+		return Arrays.copyOfRange(this.depthLevels,
+				this.depthLevelOffsets[depth],
+				this.depthLevelOffsets[depth + 1]);
+	}
+
+	/**
+	 * @return the number of maximum depth levels
+	 */
+	public int getMaxDepthLevelCount() {
+		return this.maxDepthLevelOffsets.length - 1;
+	}
+
+	/**
+	 * @return the ordinals of the nodes with a given maximum depth, in
+	 *         topological order
+	 */
+	public int[] getMaxDepthLevel(int depth) {
+		return Arrays.copyOfRange(this.maxDepthLevels,
+				this.maxDepthLevelOffsets[depth],
+				this.maxDepthLevelOffsets[depth + 1]);
+	}
+
+	/**
+	 * @return the number of height levels
+	 */
+	public int getHeightLevelCount() {
+		return this.heightLevelOffsets.length - 1;
+	}
+
+	/**
+	 * @return the ordinals of the nodes with a given height, in topological
+	 *         order; level 0 holds the leaves
+	 */
+	public int[] getHeightLevel(int height) {
+		return Arrays.copyOfRange(this.heightLevels,
+				this.heightLevelOffsets[height],
+				this.heightLevelOffsets[height + 1]);
+	}
+
+	/**
+	 * The maximum depth levels, without copying: level {@code l} goes from
+	 * {@code getMaxDepthLevelOffsets()[l]} to
+	 * {@code getMaxDepthLevelOffsets()[l + 1]}.
+	 */
+	int[] getMaxDepthLevels() {
+		return this.maxDepthLevels;
+	}
+
+	int[] getMaxDepthLevelOffsets() {
+		return this.maxDepthLevelOffsets;
+	}
+
+	/**
+	 * The height levels, without copying, laid out like
+	 * {@link #getMaxDepthLevels()}.
+	 */
+	int[] getHeightLevels() {
+		return this.heightLevels;
+	}
+
+	int[] getHeightLevelOffsets() {
+		return this.heightLevelOffsets;
+	}
+}
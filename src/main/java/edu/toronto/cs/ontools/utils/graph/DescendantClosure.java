@@ -0,0 +1,160 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The descendants of every node of a DAG, including the node itself, indexed
+ * by the ordinals of an {@link OrdinalIndex}, along with the number of
+ * descendants and of descendant leaves of each node. Computed in one sweep
+ * over the nodes in reverse topological order, the descendants of each node
+ * being the union of the descendants of its children; the sets are stored as
+ * {@link CompressedOrdinalSet}s, so the large sets near the root share most of
+ * their storage with the sets of their children.
+ */
+public class DescendantClosure {
+	private final OrdinalIndex index;
+
+	private final CompressedOrdinalSet[] rows;
+
+	private final int[] leafCounts;
+
+	private final int leafTotal;
+
+	private DescendantClosure(OrdinalIndex index) {
+		this.index = index;
+		int size = index.size();
+		this.rows = new CompressedOrdinalSet[size];
+		this.leafCounts = new int[size];
+		int leaves = 0;
+		for (int i = size - 1; i >= 0; --i) {
+			CompressedOrdinalSet row = CompressedOrdinalSet.of(i);
+			for (int k = index.getChildrenStart(i), end = index
+					.getChildrenEnd(i); k < end; ++k) {
+				CompressedOrdinalSet childRow = this.rows[index.getChild(k)];
+				if (childRow != null) {
+					// Only missing inside a cycle
+					row = row.or(childRow);
+				}
+			}
+			this.rows[i] = row;
+			if (index.getChildrenStart(i) == index.getChildrenEnd(i)) {
+				++leaves;
+			}
+		}
+		this.leafTotal = leaves;
+
+		int[] leafOrdinals = new int[leaves];
+		for (int i = 0, j = 0; i < size; ++i) {
+			if (index.getChildrenStart(i) == index.getChildrenEnd(i)) {
+				leafOrdinals[j++] = i;
+			}
+		}
+		CompressedOrdinalSet leafSet = CompressedOrdinalSet.of(leafOrdinals);
+		for (int i = 0; i < size; ++i) {
+			this.leafCounts[i] = this.rows[i].andCardinality(leafSet);
+		}
+	}
+
+	public static DescendantClosure build(OrdinalIndex index) {
+		return new DescendantClosure(index);
+	}
+
+	/**
+	 * @return the index this closure was computed for
+	 */
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	public int size() {
+		return this.rows.length;
+	}
+
+	/**
+	 * Checks if a node is a descendant of (or the same as) another node.
+	 */
+	public boolean isDescendant(int descendant, int ordinal) {
+		return this.rows[ordinal].contains(descendant);
+	}
+
+	/**
+	 * @return the sorted ordinals of the descendants of a node, including the
+	 *         node itself
+	 */
+	public int[] getDescendants(int ordinal) {
+		return this.rows[ordinal].toArray();
+	}
+
+	/**
+	 * @return the number of descendants of a node, including the node itself
+	 */
+	public int getDescendantCount(int ordinal) {
+		return this.rows[ordinal].getCardinality();
+	}
+
+	/**
+	 * @return the number of leaves below a node (1 for a leaf)
+	 */
+	public int getDescendantLeafCount(int ordinal) {
+		return this.leafCounts[ordinal];
+	}
+
+	public int getLeafCount() {
+		return this.leafTotal;
+	}
+
+	/**
+	 * @return the size of the intersection of the descendants of two nodes
+	 */
+	public int getCommonDescendantCount(int ordinal1, int ordinal2) {
+		return this.rows[ordinal1].andCardinality(this.rows[ordinal2]);
+	}
+
+	/**
+	 * Intrinsic information content of a node, computed only from the shape
+	 * of the DAG (Seco et al.): 0 for a root covering the whole DAG, 1 for a
+	 * leaf.
+	 */
+	public double getIntrinsicIC(int ordinal) {
+		if (this.rows.length < 2) {
+			return 0;
+		}
+		return 1 - Math.log(getDescendantCount(ordinal))
+				/ Math.log(this.rows.length);
+	}
+
+	/**
+	 * @return the approximate memory used by the closure, in bytes
+	 */
+	public long getSizeInBytes() {
+		Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+		long result = 16 + 4L * this.rows.length + 16 + 4L
+				* this.leafCounts.length;
+		for (CompressedOrdinalSet row : this.rows) {
+			if (seen.put(row, Boolean.TRUE) == null) {
+				result += row.getSizeInBytes(seen);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,397 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * List of neighbor identifiers without duplicates: adding an identifier
+ * already present does nothing and returns {@code false}. Identifiers are
+ * kept in insertion order in an array, scanned linearly while the list is
+ * small; larger lists also keep a hash index of the positions, which makes
+ * {@link #contains(Object)} and {@link #remove(Object)} constant time.
+ * Removed entries of large lists leave holes, skipped by the readers and
+ * compacted by {@link #remove(Object)} once they outnumber the identifiers,
+ * and by {@link #trimToSize()}. Reading never changes the list, so a list
+ * which isn't changed anymore can be read by several threads at once.
+ * 
+ * The lists of the nodes of a frozen DAG don't keep their own identifiers:
+ * they read them from the arcs of the {@link OrdinalIndex}, and copy them
+ * back the first time they are changed. Large lists keep their hash index
+ * of the positions, so lookups remain constant time.
+ */
+public class NeighborList extends AbstractList<String> implements
+		RandomAccess {
+	/** Size above which the positions are indexed. */
+	private static final int INDEX_THRESHOLD = 8;
+
+	private static final String[] EMPTY = new String[0];
+
+	private String[] items = EMPTY;
+
+	/** Number of used slots in {@link #items}, holes included. */
+	private int end;
+
+	private int size;
+
+	private Map<String, Integer> positions;
+
+	/**
+	 * The index holding the identifiers in place of {@link #items}, or
+	 * {@code null}; the identifiers are the parents or the children found
+	 * from position {@link #start} in the index.
+	 */
+	private OrdinalIndex index;
+
+	private boolean parentArcs;
+
+	private int start;
+
+	public NeighborList() {
+	}
+
+	public NeighborList(NeighborList source) {
+		this.index = source.index;
+		this.parentArcs = source.parentArcs;
+		this.start = source.start;
+		if (source.index == null) {
+			this.items = Arrays.copyOf(source.items, source.end);
+		}
+		this.end = source.end;
+		this.size = source.size;
+		if (source.positions != null) {
+			this.positions = new HashMap<String, Integer>(source.positions);
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return position(o) >= 0;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		int position = position(o);
+		if (position < 0 || this.end == this.size) {
+			return position;
+		}
+		// Don't count the holes
+		int result = 0;
+		for (int i = 0; i < position; ++i) {
+			if (this.items[i] != null) {
+				++result;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	/**
+	 * Constant time, unless there are holes left by removals.
+	 */
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ this.size);
+		}
+		if (this.end == this.size) {
+			return item(index);
+		}
+		for (int i = 0;; ++i) {
+			if (this.items[i] != null && index-- == 0) {
+				return this.items[i];
+			}
+		}
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int expectedModCount = NeighborList.this.modCount;
+
+			private int next = skipHoles(0);
+
+			private String last;
+
+			public boolean hasNext() {
+				return this.next < NeighborList.this.end;
+			}
+
+			public String next() {
+				checkForComodification();
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				this.last = item(this.next);
+				this.next = skipHoles(this.next + 1);
+				return this.last;
+			}
+
+			public void remove() {
+				if (this.last == null) {
+					throw new IllegalStateException();
+				}
+				checkForComodification();
+				String following = hasNext() ? item(this.next) : null;
+				NeighborList.this.remove(this.last);
+				// Removing may move the remaining identifiers
+				this.next = following == null ? NeighborList.this.end
+						: position(following);
+				this.last = null;
+				this.expectedModCount = NeighborList.this.modCount;
+			}
+
+			private void checkForComodification() {
+				if (NeighborList.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+			}
+		};
+	}
+
+	private int skipHoles(int position) {
+		while (position < this.end && item(position) == null) {
+			++position;
+		}
+		return position;
+	}
+
+	/**
+	 * @return the identifier at a position, holes included
+	 */
+	private String item(int position) {
+		if (this.index == null) {
+			return this.items[position];
+		}
+		return this.index.getId(getTarget(position));
+	}
+
+	private int getTarget(int position) {
+		return this.parentArcs ? this.index.getParent(this.start + position)
+				: this.index.getChild(this.start + position);
+	}
+
+	@Override
+	public boolean add(String id) {
+		if (id == null || position(id) >= 0) {
+			return false;
+		}
+		copyFromIndex();
+		if (this.end == this.items.length) {
+			this.items = Arrays.copyOf(this.items, Math.max(2,
+					this.end + (this.end >> 1) + 1));
+		}
+		if (this.positions != null) {
+			this.positions.put(id, this.end);
+		}
+		this.items[this.end++] = id;
+		++this.size;
+		++this.modCount;
+		if (this.positions == null && this.size > INDEX_THRESHOLD) {
+			this.positions = new HashMap<String, Integer>(2 * this.size);
+			for (int i = 0; i < this.end; ++i) {
+				this.positions.put(this.items[i], i);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Not supported: identifiers are always appended.
+	 */
+	@Override
+	public void add(int index, String id) {
+		throw new UnsupportedOperationException(
+				"Neighbors can only be appended");
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int position = position(o);
+		if (position < 0) {
+			return false;
+		}
+		copyFromIndex();
+		if (this.positions == null) {
+			System.arraycopy(this.items, position + 1, this.items, position,
+					this.end - position - 1);
+			this.items[--this.end] = null;
+		} else {
+			this.positions.remove(o);
+			this.items[position] = null;
+			if (position == this.end - 1) {
+				--this.end;
+			}
+		}
+		--this.size;
+		++this.modCount;
+		if (this.end - this.size > this.size) {
+			compact();
+		}
+		return true;
+	}
+
+	@Override
+	public String remove(int index) {
+		String result = get(index);
+		remove(result);
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		this.index = null;
+		this.items = EMPTY;
+		this.end = 0;
+		this.size = 0;
+		this.positions = null;
+		++this.modCount;
+	}
+
+	/**
+	 * Releases the unused capacity.
+	 */
+	public void trimToSize() {
+		if (this.index != null) {
+			return;
+		}
+		compact();
+		if (this.items.length > this.end) {
+			this.items = this.end == 0 ? EMPTY : Arrays.copyOf(this.items,
+					this.end);
+		}
+	}
+
+	/**
+	 * Position of an element, holes included, without compacting.
+	 */
+	private int position(Object o) {
+		if (this.positions != null) {
+			Integer result = this.positions.get(o);
+			return result == null ? -1 : result;
+		}
+		if (this.index != null) {
+			int ordinal = o instanceof String ? this.index
+					.getOrdinal((String) o) : -1;
+			for (int i = 0; ordinal >= 0 && i < this.size; ++i) {
+				if (getTarget(i) == ordinal) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		for (int i = 0; i < this.end; ++i) {
+			if (this.items[i].equals(o)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the holes left by removals, if any. Only called when changing
+	 * the list.
+	 */
+	private void compact() {
+		if (this.end == this.size) {
+			return;
+		}
+		int j = 0;
+		for (int i = 0; i < this.end; ++i) {
+			if (this.items[i] != null) {
+				this.items[j] = this.items[i];
+				this.positions.put(this.items[j], j);
+				++j;
+			}
+		}
+		Arrays.fill(this.items, j, this.end, null);
+		this.end = j;
+	}
+
+	/**
+	 * Makes the list read its identifiers from the arcs of a node in an
+	 * index, if the index holds exactly the same identifiers, in the same
+	 * order. The hash index of the positions, if any, is kept.
+	 * 
+	 * @param parentArcs
+	 *            whether the list holds the parents of the node, or its
+	 *            children
+	 * @return {@code true} if the list now reads from the index
+	 */
+	boolean useIndex(OrdinalIndex index, int start, int end,
+			boolean parentArcs) {
+		if (end - start != this.size) {
+			// Some arcs lead to nodes outside the index
+			return false;
+		}
+		compact();
+		for (int i = 0; i < this.size; ++i) {
+			int target = parentArcs ? index.getParent(start + i) : index
+					.getChild(start + i);
+			if (!index.getId(target).equals(item(i))) {
+				return false;
+			}
+		}
+		this.index = index;
+		this.parentArcs = parentArcs;
+		this.start = start;
+		this.items = EMPTY;
+		this.end = this.size;
+		return true;
+	}
+
+	/**
+	 * Copies the identifiers out of the index before changing the list.
+	 */
+	private void copyFromIndex() {
+		if (this.index == null) {
+			return;
+		}
+		String[] items = new String[this.size];
+		for (int i = 0; i < this.size; ++i) {
+			items[i] = item(i);
+		}
+		this.index = null;
+		this.items = items;
+		if (this.positions == null && this.size > INDEX_THRESHOLD) {
+			this.positions = new HashMap<String, Integer>(2 * this.size);
+			for (int i = 0; i < this.size; ++i) {
+				this.positions.put(items[i], i);
+			}
+		}
+	}
+}
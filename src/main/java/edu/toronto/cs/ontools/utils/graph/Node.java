@@ -19,12 +19,11 @@
  */
 package edu.toronto.cs.ontools.utils.graph;
 
-import java.util.LinkedList;
 import java.util.List;
 
 public class Node extends AbstractNode implements INode {
 
-	private List<String> neighbors = new LinkedList<String>();
+	private final NeighborList neighbors = new NeighborList();
 
 	public Node(String id) {
 		super(id);
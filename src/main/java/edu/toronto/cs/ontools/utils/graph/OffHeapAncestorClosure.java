@@ -0,0 +1,321 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bitsets of a {@link DenseAncestorClosure}, stored back to back in an
+ * {@link OffHeapStorage} buffer instead of the Java heap. The row of a node
+ * holds {@code (ordinal >> 6) + 1} words, so the position of each row can be
+ * computed and no offsets table is needed. The rows are followed by a copy
+ * of the ids and of the parent arcs of the DAG they were computed for, which
+ * allows mapped closures to be reused as long as the DAG doesn't change:
+ * 
+ * <pre>
+ * int    MAGIC
+ * int    FORMAT_VERSION
+ * int    node count
+ * int    parent arc count
+ * long   {@link OrdinalIndex#getSignature()}
+ * long   unused
+ * long[] rows
+ * int[]  parent offsets, node count + 1
+ * int[]  parent targets
+ * for each id: int length, char[] id
+ * </pre>
+ * 
+ * The signature only names the buffer; a published buffer is reused only if
+ * the ids and arcs it holds are exactly those of the DAG.
+ * 
+ * The buffer needs about {@code n * n / 16} bytes for {@code n} nodes.
+ */
+public class OffHeapAncestorClosure extends AbstractAncestorClosure {
+	private static final int MAGIC = 0x4f4e5441;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final int HEADER_SIZE = 32;
+
+	private static final String SUFFIX = ".closure";
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	/** How long published closures are kept after their last use. */
+	private static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis(30);
+
+	private final ByteBuffer buffer;
+
+	private final LongBuffer words;
+
+	private OffHeapAncestorClosure(OrdinalIndex index, ByteBuffer buffer) {
+		super(index);
+		this.buffer = buffer;
+		ByteBuffer rows = buffer.duplicate().order(ByteOrder.nativeOrder());
+		rows.position(HEADER_SIZE);
+		this.words = rows.slice().order(ByteOrder.nativeOrder())
+				.asLongBuffer();
+	}
+
+	/**
+	 * Returns the ancestor closure of a DAG stored off-heap, reusing a
+	 * published closure of the same DAG if there is one, or computing and
+	 * publishing it otherwise.
+	 * 
+	 * @param index
+	 *            the DAG
+	 * @param storage
+	 *            where to store the closure
+	 * @param name
+	 *            the prefix of the buffer name; the signature of the DAG is
+	 *            appended to it, and the closures stored under the same prefix
+	 *            which haven't been used for a while are deleted
+	 * @param pool
+	 *            the pool used for processing large levels in parallel, or
+	 *            {@code null} to compute everything in the current thread
+	 * @return the closure, or {@code null} if it is too large to fit in one
+	 *         buffer or cannot be stored
+	 */
+	public static OffHeapAncestorClosure build(OrdinalIndex index,
+			OffHeapStorage storage, String name, ForkJoinPool pool) {
+		int size = index.size();
+		long structureStart = HEADER_SIZE + 8 * getRowStart(size);
+		long bytes = structureStart + getStructureSize(index);
+		if (bytes > Integer.MAX_VALUE) {
+			return null;
+		}
+		long signature = index.getSignature();
+		String bufferName = name + "-" + Long.toHexString(signature)
+				+ SUFFIX;
+
+		ByteBuffer existing = storage.open(bufferName);
+		if (existing != null && existing.capacity() == bytes
+				&& existing.getInt(0) == MAGIC
+				&& existing.getInt(4) == FORMAT_VERSION
+				&& existing.getInt(8) == size
+				&& existing.getLong(16) == signature
+				&& hasStructure(existing, (int) structureStart, index)) {
+			storage.expire(name + "-", SUFFIX, MAX_UNUSED_TIME);
+			return new OffHeapAncestorClosure(index, existing);
+		}
+
+		try {
+			ByteBuffer buffer = storage.create(bufferName, bytes);
+			OffHeapAncestorClosure result = new OffHeapAncestorClosure(index,
+					buffer);
+			result.compute(pool);
+			putStructure(buffer, (int) structureStart, index);
+			buffer.putInt(8, size);
+			buffer.putInt(12, index.getParentsStart(size));
+			buffer.putLong(16, signature);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.putInt(0, MAGIC);
+			storage.publish(bufferName, buffer);
+			// Closures of other versions may still be used by other
+			// processes, so only the ones left unused are deleted
+			storage.expire(name + "-", SUFFIX, MAX_UNUSED_TIME);
+			return result;
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of bytes needed for the ids and arcs of a DAG
+	 */
+	private static long getStructureSize(OrdinalIndex index) {
+		int size = index.size();
+		long result = 4L * (size + 1 + index.getParentsStart(size));
+		for (int i = 0; i < size; ++i) {
+			result += 4 + 2 * index.getId(i).length();
+		}
+		return result;
+	}
+
+	private static void putStructure(ByteBuffer buffer, int position,
+			OrdinalIndex index) {
+		ByteBuffer out = buffer.duplicate().order(ByteOrder.nativeOrder());
+		out.position(position);
+		int size = index.size();
+		for (int i = 0; i <= size; ++i) {
+			out.putInt(index.getParentsStart(i));
+		}
+		for (int k = 0, end = index.getParentsStart(size); k < end; ++k) {
+			out.putInt(index.getParent(k));
+		}
+		for (int i = 0; i < size; ++i) {
+			String id = index.getId(i);
+			out.putInt(id.length());
+			for (int c = 0; c < id.length(); ++c) {
+				out.putChar(id.charAt(c));
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if a buffer holds exactly the ids and arcs of a
+	 *         DAG
+	 */
+	private static boolean hasStructure(ByteBuffer buffer, int position,
+			OrdinalIndex index) {
+		ByteBuffer in = buffer.duplicate().order(ByteOrder.nativeOrder());
+		in.position(position);
+		int size = index.size();
+		if (in.getInt(12) != index.getParentsStart(size)) {
+			return false;
+		}
+		for (int i = 0; i <= size; ++i) {
+			if (in.getInt() != index.getParentsStart(i)) {
+				return false;
+			}
+		}
+		for (int k = 0, end = index.getParentsStart(size); k < end; ++k) {
+			if (in.getInt() != index.getParent(k)) {
+				return false;
+			}
+		}
+		for (int i = 0; i < size; ++i) {
+			String id = index.getId(i);
+			if (in.getInt() != id.length()) {
+				return false;
+			}
+			for (int c = 0; c < id.length(); ++c) {
+				if (in.getChar() != id.charAt(c)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the position of the first word of a row
+	 */
+	private static long getRowStart(int ordinal) {
+		long q = ordinal >>> ADDRESS_BITS_PER_WORD;
+		long r = ordinal & ((1 << ADDRESS_BITS_PER_WORD) - 1);
+		// Sum of (i >> 6) + 1 for all i < ordinal
+		return (1L << ADDRESS_BITS_PER_WORD) * q * (q - 1) / 2 + r * q
+				+ ordinal;
+	}
+
+	private static int getRowLength(int ordinal) {
+		return (ordinal >>> ADDRESS_BITS_PER_WORD) + 1;
+	}
+
+	@Override
+	protected void computeRow(int ordinal) {
+		LongBuffer words = this.words;
+		int row = (int) getRowStart(ordinal);
+		int length = getRowLength(ordinal);
+		words.put(row + (ordinal >>> ADDRESS_BITS_PER_WORD),
+				1L << ordinal);
+		for (int k = this.index.getParentsStart(ordinal), end = this.index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			int parent = this.index.getParent(k);
+			if (parent > ordinal) {
+				// Only possible inside a cycle
+				continue;
+			}
+			int parentRow = (int) getRowStart(parent);
+			for (int w = Math.min(getRowLength(parent), length) - 1; w >= 0; --w) {
+				words.put(row + w, words.get(row + w)
+						| words.get(parentRow + w));
+			}
+		}
+	}
+
+	public boolean isAncestor(int ancestor, int ordinal) {
+		return ancestor <= ordinal
+				&& (this.words.get((int) getRowStart(ordinal)
+						+ (ancestor >>> ADDRESS_BITS_PER_WORD)) & (1L << ancestor)) != 0;
+	}
+
+	public int getAncestorCount(int ordinal) {
+		int row = (int) getRowStart(ordinal);
+		int result = 0;
+		for (int w = getRowLength(ordinal) - 1; w >= 0; --w) {
+			result += Long.bitCount(this.words.get(row + w));
+		}
+		return result;
+	}
+
+	public int[] getAncestors(int ordinal) {
+		int row = (int) getRowStart(ordinal);
+		int[] result = new int[getAncestorCount(ordinal)];
+		int j = 0;
+		for (int w = 0, length = getRowLength(ordinal); w < length; ++w) {
+			long word = this.words.get(row + w);
+			while (word != 0) {
+				result[j++] = (w << ADDRESS_BITS_PER_WORD)
+						+ Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return result;
+	}
+
+	public int nextCommonAncestor(int ordinal1, int ordinal2, int from) {
+		int row1 = (int) getRowStart(ordinal1);
+		int row2 = (int) getRowStart(ordinal2);
+		int length = Math.min(getRowLength(ordinal1), getRowLength(ordinal2));
+		int w = from >>> ADDRESS_BITS_PER_WORD;
+		if (w >= length) {
+			return -1;
+		}
+		long word = this.words.get(row1 + w) & this.words.get(row2 + w)
+				& (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << ADDRESS_BITS_PER_WORD)
+						+ Long.numberOfTrailingZeros(word);
+			}
+			if (++w == length) {
+				return -1;
+			}
+			word = this.words.get(row1 + w) & this.words.get(row2 + w);
+		}
+	}
+
+	public int getCommonAncestorCount(int ordinal1, int ordinal2) {
+		int row1 = (int) getRowStart(ordinal1);
+		int row2 = (int) getRowStart(ordinal2);
+		int result = 0;
+		for (int w = Math.min(getRowLength(ordinal1), getRowLength(ordinal2)) - 1; w >= 0; --w) {
+			result += Long.bitCount(this.words.get(row1 + w)
+					& this.words.get(row2 + w));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the size of the off-heap buffer; the heap only holds a few
+	 *         small objects
+	 */
+	public long getSizeInBytes() {
+		return this.buffer.capacity();
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Where large immutable structures (such as ancestor closures) are kept
+ * outside of the Java heap, so that the garbage collector doesn't have to
+ * scan them. {@link #direct()} uses direct buffers, private to the JVM;
+ * {@link #mapped(File)} uses memory-mapped files in a directory, which are
+ * kept and reused by later runs and by other JVMs on the same host, all
+ * sharing the same pages. Files are kept until they are left unused for a
+ * while, see {@link #expire(String, String, long)}.
+ * 
+ * Buffers are limited to {@link Integer#MAX_VALUE} bytes.
+ */
+public abstract class OffHeapStorage {
+	/**
+	 * @return a storage using direct buffers
+	 */
+	public static OffHeapStorage direct() {
+		return new OffHeapStorage() {
+			@Override
+			public ByteBuffer open(String name) {
+				return null;
+			}
+
+			@Override
+			public ByteBuffer create(String name, long size) {
+				return ByteBuffer.allocateDirect(checkSize(size)).order(
+						ByteOrder.nativeOrder());
+			}
+
+			@Override
+			public void publish(String name, ByteBuffer buffer) {
+				// Nothing to do
+			}
+
+			@Override
+			public void expire(String prefix, String suffix, long maxUnusedTime) {
+				// Direct buffers are freed with the objects using them
+			}
+		};
+	}
+
+	/**
+	 * @param directory
+	 *            where the mapped files are stored; created if needed
+	 * @return a storage using files mapped in memory
+	 */
+	public static OffHeapStorage mapped(final File directory) {
+		return new OffHeapStorage() {
+			/** The temporary files of the buffers not published yet. */
+			private final Map<ByteBuffer, File> parts = Collections
+					.synchronizedMap(new IdentityHashMap<ByteBuffer, File>());
+
+			@Override
+			public ByteBuffer open(String name) {
+				File file = new File(directory, name);
+				if (!file.isFile()) {
+					return null;
+				}
+				// Marks the file as used, see expire()
+				file.setLastModified(System.currentTimeMillis());
+				try {
+					return map(file, FileChannel.MapMode.READ_ONLY, file
+							.length());
+				} catch (IOException ex) {
+					ex.printStackTrace();
+					return null;
+				}
+			}
+
+			@Override
+			public ByteBuffer create(String name, long size)
+					throws IOException {
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("Cannot create directory "
+							+ directory.getAbsolutePath());
+				}
+				// Each process writes its own file, published by renaming it
+				File part = File.createTempFile(name + ".", ".part",
+						directory);
+				try {
+					MappedByteBuffer result = map(part,
+							FileChannel.MapMode.READ_WRITE, checkSize(size));
+					this.parts.put(result, part);
+					return result;
+				} catch (IOException ex) {
+					part.delete();
+					throw ex;
+				}
+			}
+
+			@Override
+			public void publish(String name, ByteBuffer buffer)
+					throws IOException {
+				File part = this.parts.remove(buffer);
+				if (part == null) {
+					throw new IllegalArgumentException(
+							"Buffer not created by this storage");
+				}
+				((MappedByteBuffer) buffer).force();
+				// Atomically replaces any file published by another process
+				if (!part.renameTo(new File(directory, name))) {
+					part.delete();
+				}
+			}
+
+			@Override
+			public void expire(String prefix, String suffix, long maxUnusedTime) {
+				File[] files = directory.listFiles();
+				if (files == null) {
+					return;
+				}
+				long limit = System.currentTimeMillis() - maxUnusedTime;
+				for (File file : files) {
+					String fileName = file.getName();
+					if (fileName.startsWith(prefix)
+							&& fileName.endsWith(suffix)
+							&& file.lastModified() < limit) {
+						// Processes still mapping the file keep their pages
+						file.delete();
+					}
+				}
+			}
+		};
+	}
+
+	private static MappedByteBuffer map(File file, FileChannel.MapMode mode,
+			long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file,
+				mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+		try {
+			if (mode != FileChannel.MapMode.READ_ONLY) {
+				raf.setLength(size);
+			}
+			MappedByteBuffer result = raf.getChannel().map(mode, 0, size);
+			result.order(ByteOrder.nativeOrder());
+			// The mapping stays valid after the file is closed
+			return result;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static int checkSize(long size) {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Buffer too large: " + size);
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Returns a previously published buffer.
+	 * 
+	 * @param name
+	 *            the name of the buffer
+	 * @return the buffer, read-only, or {@code null} if it doesn't exist
+	 */
+	public abstract ByteBuffer open(String name);
+
+	/**
+	 * Creates a new buffer, filled with zeroes, in native byte order.
+	 * 
+	 * @param name
+	 *            the name under which the buffer will be published
+	 * @param size
+	 *            the size in bytes
+	 */
+	public abstract ByteBuffer create(String name, long size)
+			throws IOException;
+
+	/**
+	 * Makes a created buffer available to {@link #open(String)}, once its
+	 * content is complete.
+	 */
+	public abstract void publish(String name, ByteBuffer buffer)
+			throws IOException;
+
+	/**
+	 * Deletes the published buffers whose name has the given prefix and
+	 * suffix, and which haven't been published or opened for some time. The
+	 * buffers of other versions of a structure are not deleted right away,
+	 * since other processes may still be using them.
+	 * 
+	 * @param maxUnusedTime
+	 *            how long an unused buffer is kept, in milliseconds
+	 */
+	public abstract void expire(String prefix, String suffix,
+			long maxUnusedTime);
+}
@@ -0,0 +1,323 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Dense integer numbering of the nodes of a {@link DAG}, with the arcs stored
+ * in compressed sparse row form: the parents of the node {@code o} are
+ * {@code getParent(k)} for {@code k} from {@code getParentsStart(o)} to
+ * {@code getParentsEnd(o) - 1}, and likewise for the children. Ordinals
+ * follow a topological order: the parents of a node always have smaller
+ * ordinals than the node itself (nodes which are part of a cycle are numbered
+ * last, in no particular order).
+ * 
+ * An index describes the DAG as it was when the index was built; it is
+ * discarded by the DAG as soon as nodes are added or removed. The next index
+ * of the DAG keeps the ordinals of the nodes as far as possible.
+ */
+public class OrdinalIndex {
+	private final String[] ids;
+
+	/**
+	 * Open addressing hash table of the ids: each used slot holds an ordinal
+	 * plus one, empty slots hold {@code 0}.
+	 */
+	private final int[] slots;
+
+	private final int[] parentOffsets;
+
+	private final int[] parentTargets;
+
+	private final int[] childOffsets;
+
+	private final int[] childTargets;
+
+	private final int version;
+
+	/**
+	 * @param previous
+	 *            an index of an earlier version of the DAG, or {@code null};
+	 *            nodes keep their ordinal from that index whenever the
+	 *            topological order allows it, so that structures computed
+	 *            for both versions, like ancestor closures, can share the
+	 *            parts describing unchanged nodes
+	 */
+	OrdinalIndex(Collection<? extends DAGNode> nodes, int version,
+			OrdinalIndex previous) {
+		this.version = version;
+		int size = nodes.size();
+		this.ids = new String[size];
+		this.slots = new int[Integer
+				.highestOneBit(Math.max(2, 2 * size) - 1) << 1];
+
+		// Kahn's algorithm, on temporary numbers given in iteration order
+		Map<String, Integer> position = new HashMap<String, Integer>(2 * size);
+		DAGNode[] byPosition = new DAGNode[size];
+		int i = 0;
+		for (DAGNode node : nodes) {
+			byPosition[i] = node;
+			position.put(node.getId(), i++);
+		}
+		// The node which had each ordinal in the previous index, if any
+		int[] owners = new int[size];
+		Arrays.fill(owners, -1);
+		int[] previousOrdinals = new int[size];
+		for (i = 0; i < size; ++i) {
+			int ordinal = previous == null ? -1 : previous
+					.getOrdinal(byPosition[i].getId());
+			previousOrdinals[i] = ordinal < size ? ordinal : -1;
+			if (previousOrdinals[i] >= 0) {
+				owners[previousOrdinals[i]] = i;
+			}
+		}
+		// Nodes whose parents are all numbered: the nodes which can't keep
+		// their ordinal, because they are new or because their ordinal is
+		// already taken, in a queue, the others by their previous ordinal
+		int[] pendingParents = new int[size];
+		int[] ready = new int[size];
+		int head = 0, tail = 0;
+		PriorityQueue<Integer> readyOwners = new PriorityQueue<Integer>(16,
+				Collections.reverseOrder());
+		for (i = 0; i < size; ++i) {
+			for (String parentId : byPosition[i].getParents()) {
+				if (position.containsKey(parentId)) {
+					++pendingParents[i];
+				}
+			}
+			if (pendingParents[i] == 0) {
+				if (previousOrdinals[i] < 0) {
+					ready[tail++] = i;
+				} else {
+					readyOwners.add(previousOrdinals[i]);
+				}
+			}
+		}
+		int[] queue = new int[size];
+		boolean[] numbered = new boolean[size];
+		int count = 0;
+		while (count < size) {
+			// Keep the previous ordinal, else fill the gap with a node which
+			// lost its ordinal, else move the ready node with the highest
+			// ordinal into the gap, which only moves the gap further
+			int crt = owners[count];
+			if (crt < 0 || pendingParents[crt] > 0 || numbered[crt]) {
+				crt = -1;
+				if (head < tail) {
+					crt = ready[head++];
+				}
+				while (crt < 0 && !readyOwners.isEmpty()) {
+					int owner = owners[readyOwners.poll()];
+					if (!numbered[owner]) {
+						crt = owner;
+					}
+				}
+				if (crt < 0) {
+					break;
+				}
+			}
+			numbered[crt] = true;
+			queue[count++] = crt;
+			for (String childId : byPosition[crt].getChildren()) {
+				Integer child = position.get(childId);
+				if (child != null && --pendingParents[child] == 0) {
+					if (previousOrdinals[child] < count) {
+						ready[tail++] = child;
+					} else {
+						readyOwners.add(previousOrdinals[child]);
+					}
+				}
+			}
+		}
+		if (count < size) {
+			System.err.println("[WARNING] " + (size - count)
+					+ " nodes are part of a cycle");
+			for (i = 0; i < size; ++i) {
+				if (!numbered[i]) {
+					queue[count++] = i;
+				}
+			}
+		}
+
+		for (i = 0; i < size; ++i) {
+			this.ids[i] = byPosition[queue[i]].getId();
+			int slot = hash(this.ids[i]) & (this.slots.length - 1);
+			while (this.slots[slot] != 0) {
+				slot = (slot + 1) & (this.slots.length - 1);
+			}
+			this.slots[slot] = i + 1;
+		}
+		this.parentOffsets = new int[size + 1];
+		this.childOffsets = new int[size + 1];
+		int parentCount = 0, childCount = 0;
+		for (i = 0; i < size; ++i) {
+			DAGNode node = byPosition[queue[i]];
+			parentCount += countKnown(node.getParents());
+			childCount += countKnown(node.getChildren());
+			this.parentOffsets[i + 1] = parentCount;
+			this.childOffsets[i + 1] = childCount;
+		}
+		this.parentTargets = new int[parentCount];
+		this.childTargets = new int[childCount];
+		for (i = 0; i < size; ++i) {
+			DAGNode node = byPosition[queue[i]];
+			fillOrdinals(node.getParents(), this.parentTargets,
+					this.parentOffsets[i]);
+			fillOrdinals(node.getChildren(), this.childTargets,
+					this.childOffsets[i]);
+		}
+	}
+
+	private int countKnown(List<String> ids) {
+		int result = 0;
+		for (String id : ids) {
+			if (getOrdinal(id) >= 0) {
+				++result;
+			}
+		}
+		return result;
+	}
+
+	private void fillOrdinals(List<String> ids, int[] targets, int start) {
+		for (String id : ids) {
+			int ordinal = getOrdinal(id);
+			if (ordinal >= 0) {
+				targets[start++] = ordinal;
+			}
+		}
+	}
+
+	/**
+	 * @return the value of {@link DAG#getVersion()} when this index was built
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	public int size() {
+		return this.ids.length;
+	}
+
+	/**
+	 * @return the ordinal of a node, or {@code -1} if there is no such node
+	 */
+	public int getOrdinal(String id) {
+		if (id == null) {
+			return -1;
+		}
+		int mask = this.slots.length - 1;
+		int slot = hash(id) & mask;
+		int entry;
+		while ((entry = this.slots[slot]) != 0) {
+			String key = this.ids[entry - 1];
+			if (key == id || key.equals(id)) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	public String getId(int ordinal) {
+		return this.ids[ordinal];
+	}
+
+	/**
+	 * @return the ids of all the nodes, in ordinal (topological) order
+	 */
+	public List<String> getIds() {
+		return Collections.unmodifiableList(Arrays.asList(this.ids));
+	}
+
+	public int getParentsStart(int ordinal) {
+		return this.parentOffsets[ordinal];
+	}
+
+	public int getParentsEnd(int ordinal) {
+		return this.parentOffsets[ordinal + 1];
+	}
+
+	public int getParent(int position) {
+		return this.parentTargets[position];
+	}
+
+	public int getChildrenStart(int ordinal) {
+		return this.childOffsets[ordinal];
+	}
+
+	public int getChildrenEnd(int ordinal) {
+		return this.childOffsets[ordinal + 1];
+	}
+
+	public int getChild(int position) {
+		return this.childTargets[position];
+	}
+
+	/**
+	 * Computes a 64-bit hash of the ids and of the parent arcs, which tells
+	 * apart the versions of a DAG across runs; takes time linear in the size
+	 * of the DAG. Different DAGs may still share a signature, so it cannot
+	 * replace a comparison of the structures.
+	 */
+	public long getSignature() {
+		long result = 0xcbf29ce484222325L;
+		for (String id : this.ids) {
+			for (int i = 0; i < id.length(); ++i) {
+				result = (result ^ id.charAt(i)) * 0x100000001b3L;
+			}
+			result = (result ^ id.length()) * 0x100000001b3L;
+		}
+		for (int offset : this.parentOffsets) {
+			result = (result ^ offset) * 0x100000001b3L;
+		}
+		for (int target : this.parentTargets) {
+			result = (result ^ target) * 0x100000001b3L;
+		}
+		return result;
+	}
+
+	/**
+	 * @return a copy of the ordinals of the parents of a node
+	 */
+	public int[] getParents(int ordinal) {
+		return Arrays.copyOfRange(this.parentTargets,
+				this.parentOffsets[ordinal], this.parentOffsets[ordinal + 1]);
+	}
+
+	/**
+	 * @return a copy of the ordinals of the children of a node
+	 */
+	public int[] getChildren(int ordinal) {
+		return Arrays.copyOfRange(this.childTargets,
+				this.childOffsets[ordinal], this.childOffsets[ordinal + 1]);
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path lengths between the nodes of a DAG, going up from one node
+ * to a common ancestor and down to the other node. For each node the table
+ * of its ancestors (itself included), sorted by ordinal, is stored with the
+ * length of the shortest path up to each of them, so a pair of nodes is
+ * answered by merging two small sorted arrays, without any allocation. The
+ * tables are computed in a {@link DAGTraversal#sweep downward sweep}, the
+ * table of a node being the union of the tables of its parents, one arc
+ * further.
+ */
+public class PathDistanceOracle {
+	private final OrdinalIndex index;
+
+	private final DepthIndex depths;
+
+	/** Where the table of each node starts, in CSR form. */
+	private final int[] offsets;
+
+	private final int[] ancestors;
+
+	private final int[] distances;
+
+	public PathDistanceOracle(DAGTraversal traversal, DepthIndex depths) {
+		this.index = traversal.getIndex();
+		this.depths = depths;
+		final int size = this.index.size();
+		final int[][] rowAncestors = new int[size][];
+		final int[][] rowDistances = new int[size][];
+		final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				int[] result = new int[size];
+				Arrays.fill(result, -1);
+				return result;
+			}
+		};
+		traversal.sweep(DAGTraversal.Direction.DOWN, new DAGTraversal.Action() {
+			public void process(int ordinal) {
+				computeRow(ordinal, scratch.get(), rowAncestors,
+						rowDistances);
+			}
+		});
+
+		this.offsets = new int[size + 1];
+		for (int o = 0; o < size; ++o) {
+			this.offsets[o + 1] = this.offsets[o] + rowAncestors[o].length;
+		}
+		this.ancestors = new int[this.offsets[size]];
+		this.distances = new int[this.offsets[size]];
+		for (int o = 0; o < size; ++o) {
+			System.arraycopy(rowAncestors[o], 0, this.ancestors,
+					this.offsets[o], rowAncestors[o].length);
+			System.arraycopy(rowDistances[o], 0, this.distances,
+					this.offsets[o], rowDistances[o].length);
+		}
+	}
+
+	/**
+	 * Computes the table of a node from the tables of its parents.
+	 * 
+	 * @param best
+	 *            the shortest distance found so far to each node, {@code -1}
+	 *            everywhere on entry and on exit
+	 */
+	private void computeRow(int ordinal, int[] best, int[][] rowAncestors,
+			int[][] rowDistances) {
+		OrdinalIndex index = this.index;
+		int count = 1;
+		for (int k = index.getParentsStart(ordinal), end = index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			int parent = index.getParent(k);
+			if (parent < ordinal) {
+				count += rowAncestors[parent].length;
+			}
+		}
+		int[] touched = new int[count];
+		touched[0] = ordinal;
+		best[ordinal] = 0;
+		count = 1;
+		for (int k = index.getParentsStart(ordinal), end = index
+				.getParentsEnd(ordinal); k < end; ++k) {
+			int parent = index.getParent(k);
+			if (parent > ordinal) {
+				// Only possible inside a cycle
+				continue;
+			}
+			int[] parentAncestors = rowAncestors[parent];
+			int[] parentDistances = rowDistances[parent];
+			for (int i = 0; i < parentAncestors.length; ++i) {
+				int a = parentAncestors[i];
+				int d = parentDistances[i] + 1;
+				if (best[a] < 0) {
+					touched[count++] = a;
+					best[a] = d;
+				} else if (d < best[a]) {
+					best[a] = d;
+				}
+			}
+		}
+		int[] resultAncestors = Arrays.copyOf(touched, count);
+		Arrays.sort(resultAncestors);
+		int[] resultDistances = new int[count];
+		for (int i = 0; i < count; ++i) {
+			resultDistances[i] = best[resultAncestors[i]];
+			best[resultAncestors[i]] = -1;
+		}
+		rowAncestors[ordinal] = resultAncestors;
+		rowDistances[ordinal] = resultDistances;
+	}
+
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the length of the shortest path from a node up to one of its
+	 *         ancestors, or {@code -1} if it isn't an ancestor
+	 */
+	public int getAncestorDistance(int ordinal, int ancestor) {
+		int position = Arrays.binarySearch(this.ancestors,
+				this.offsets[ordinal], this.offsets[ordinal + 1], ancestor);
+		return position < 0 ? -1 : this.distances[position];
+	}
+
+	/**
+	 * Returns the length of the shortest path between two nodes going
+	 * through a common ancestor.
+	 * 
+	 * @return the number of arcs, {@code 0} for the same node, or {@code -1}
+	 *         if the nodes have no common ancestor
+	 */
+	public int getDistance(int ordinal1, int ordinal2) {
+		int[] ancestors = this.ancestors;
+		int[] distances = this.distances;
+		int i = this.offsets[ordinal1], iEnd = this.offsets[ordinal1 + 1];
+		int j = this.offsets[ordinal2], jEnd = this.offsets[ordinal2 + 1];
+		int result = Integer.MAX_VALUE;
+		while (i < iEnd && j < jEnd) {
+			int a = ancestors[i];
+			int b = ancestors[j];
+			if (a < b) {
+				++i;
+			} else if (a > b) {
+				++j;
+			} else {
+				result = Math.min(result, distances[i++] + distances[j++]);
+			}
+		}
+		return result == Integer.MAX_VALUE ? -1 : result;
+	}
+
+	/**
+	 * Returns the Wu-Palmer similarity of two nodes, {@code 2 * N3 / (N1 + N2
+	 * + 2 * N3)}, maximized over their common ancestors: {@code N1} and
+	 * {@code N2} are the distances from the nodes up to the common ancestor,
+	 * and {@code N3} the depth of the common ancestor, counted in nodes (1
+	 * for a root) along the shortest path from a root.
+	 * 
+	 * @return the similarity, between {@code 0} (no common ancestor) and
+	 *         {@code 1} (same node)
+	 */
+	public double getWuPalmerSimilarity(int ordinal1, int ordinal2) {
+		int[] ancestors = this.ancestors;
+		int[] distances = this.distances;
+		int i = this.offsets[ordinal1], iEnd = this.offsets[ordinal1 + 1];
+		int j = this.offsets[ordinal2], jEnd = this.offsets[ordinal2 + 1];
+		double result = 0;
+		while (i < iEnd && j < jEnd) {
+			int a = ancestors[i];
+			int b = ancestors[j];
+			if (a < b) {
+				++i;
+			} else if (a > b) {
+				++j;
+			} else {
+				double depth = this.depths.getMinDepth(a) + 1;
+				result = Math.max(result, 2 * depth
+						/ (distances[i++] + distances[j++] + 2 * depth));
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.Arrays;
+
+/**
+ * Answers "is this node an ancestor of that node" queries without building
+ * ancestor sets, using interval labels (Agrawal, Borgida and Jagadish).
+ * 
+ * The nodes are numbered in post-order along a spanning tree of the DAG, so
+ * that the descendants of a node in the tree are exactly the nodes numbered
+ * between the lowest number in its subtree and its own number. The
+ * descendants reached through the other arcs are covered by adding the
+ * intervals of the children to the intervals of their parents, merging
+ * adjacent and nested intervals. A node {@code a} is an ancestor of {@code b}
+ * if the number of {@code b} falls in one of the intervals of {@code a}, which
+ * is found with a binary search over the (usually very few) intervals of
+ * {@code a}.
+ */
+public class ReachabilityIndex {
+	private final OrdinalIndex index;
+
+	/** The post-order number of each node. */
+	private final int[] post;
+
+	/** Where the intervals of each node start in {@link #bounds}. */
+	private final int[] offsets;
+
+	/** The sorted, disjoint intervals of each node, as start, end pairs. */
+	private final int[] bounds;
+
+	private ReachabilityIndex(OrdinalIndex index) {
+		this.index = index;
+		int size = index.size();
+		this.post = new int[size];
+		int[] low = new int[size];
+		numberSpanningTree(index, this.post, low);
+
+		// Intervals of the children, added in reverse topological order
+		int[][] intervals = new int[size][];
+		int total = 0;
+		int[] buffer = new int[16];
+		for (int i = size - 1; i >= 0; --i) {
+			int count = 2;
+			buffer[0] = low[i];
+			buffer[1] = this.post[i];
+			for (int k = index.getChildrenStart(i), end = index
+					.getChildrenEnd(i); k < end; ++k) {
+				int[] childIntervals = intervals[index.getChild(k)];
+				if (childIntervals == null) {
+					// Only possible inside a cycle
+					continue;
+				}
+				if (buffer.length < count + childIntervals.length) {
+					int[] larger = new int[2 * (count + childIntervals.length)];
+					System.arraycopy(buffer, 0, larger, 0, count);
+					buffer = larger;
+				}
+				System.arraycopy(childIntervals, 0, buffer, count,
+						childIntervals.length);
+				count += childIntervals.length;
+			}
+			intervals[i] = merge(buffer, count);
+			total += intervals[i].length;
+		}
+
+		this.offsets = new int[size + 1];
+		this.bounds = new int[total];
+		for (int i = 0, pos = 0; i < size; ++i) {
+			System.arraycopy(intervals[i], 0, this.bounds, pos,
+					intervals[i].length);
+			pos += intervals[i].length;
+			this.offsets[i + 1] = pos;
+		}
+	}
+
+	public static ReachabilityIndex build(OrdinalIndex index) {
+		return new ReachabilityIndex(index);
+	}
+
+	/**
+	 * Numbers the nodes in post-order along a spanning tree where the parent
+	 * of each node is its first parent.
+	 */
+	private static void numberSpanningTree(OrdinalIndex index, int[] post,
+			int[] low) {
+		int size = index.size();
+		// Tree children, as linked lists
+		int[] firstChild = new int[size];
+		int[] nextSibling = new int[size];
+		Arrays.fill(firstChild, -1);
+		boolean[] isRoot = new boolean[size];
+		for (int i = size - 1; i >= 0; --i) {
+			int start = index.getParentsStart(i);
+			int parent = start < index.getParentsEnd(i) ? index
+					.getParent(start) : -1;
+			// Arcs of cycles may point forward, these nodes become roots
+			if (parent < 0 || parent >= i) {
+				isRoot[i] = true;
+				continue;
+			}
+			nextSibling[i] = firstChild[parent];
+			firstChild[parent] = i;
+		}
+
+		int counter = 0;
+		int[] stack = new int[size];
+		int[] nextChild = new int[size];
+		for (int root = 0; root < size; ++root) {
+			if (!isRoot[root]) {
+				continue;
+			}
+			int top = 0;
+			stack[top++] = root;
+			nextChild[root] = firstChild[root];
+			low[root] = counter;
+			while (top > 0) {
+				int crt = stack[top - 1];
+				int child = nextChild[crt];
+				if (child >= 0) {
+					nextChild[crt] = nextSibling[child];
+					nextChild[child] = firstChild[child];
+					low[child] = counter;
+					stack[top++] = child;
+				} else {
+					post[crt] = counter++;
+					--top;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sorts and merges intervals.
+	 * 
+	 * @return the disjoint, non adjacent intervals covering the same numbers
+	 */
+	private static int[] merge(int[] intervals, int count) {
+		int pairs = count / 2;
+		if (pairs == 1) {
+			return new int[] { intervals[0], intervals[1] };
+		}
+		long[] sorted = new long[pairs];
+		for (int i = 0; i < pairs; ++i) {
+			sorted[i] = ((long) intervals[2 * i] << 32)
+					| (intervals[2 * i + 1] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(sorted);
+		int[] result = new int[count];
+		int n = 0;
+		for (long interval : sorted) {
+			int start = (int) (interval >>> 32);
+			int end = (int) interval;
+			if (n > 0 && start <= result[n - 1] + 1) {
+				if (end > result[n - 1]) {
+					result[n - 1] = end;
+				}
+			} else {
+				result[n++] = start;
+				result[n++] = end;
+			}
+		}
+		return n == count ? result : Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return the index this reachability index was computed for
+	 */
+	public OrdinalIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Checks if a node is an ancestor of (or the same as) another node.
+	 */
+	public boolean isAncestor(int ancestor, int ordinal) {
+		int number = this.post[ordinal];
+		// Binary search for the last interval starting before the number
+		int lo = this.offsets[ancestor] / 2;
+		int hi = this.offsets[ancestor + 1] / 2 - 1;
+		while (lo <= hi) {
+			int middle = (lo + hi) >>> 1;
+			if (this.bounds[2 * middle] <= number) {
+				lo = middle + 1;
+			} else {
+				hi = middle - 1;
+			}
+		}
+		return hi >= this.offsets[ancestor] / 2
+				&& this.bounds[2 * hi + 1] >= number;
+	}
+
+	/**
+	 * @return the number of intervals stored for a node
+	 */
+	public int getIntervalCount(int ordinal) {
+		return (this.offsets[ordinal + 1] - this.offsets[ordinal]) / 2;
+	}
+
+	/**
+	 * @return the approximate memory used by the index, in bytes
+	 */
+	public long getSizeInBytes() {
+		return 3 * 16 + 4L
+				* (this.post.length + this.offsets.length + this.bounds.length);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.annotation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.taxonomy.AbstractTaxonomy;
+
+public class GeneGOAnnotationsTest {
+	private static final String TAXONOMY = "format-version: 1.2\n\n"
+			+ "[Term]\nid: GO:0000001\nname: All\n\n"
+			+ "[Term]\nid: GO:0000002\nname: Child\n"
+			+ "is_a: GO:0000001 ! All\nalt_id: GO:0000012\n\n"
+			+ "[Term]\nid: GO:0000003\nname: Old\n"
+			+ "is_obsolete: true\nreplaced_by: GO:0000002\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testResolvesGOIds() throws IOException {
+		AbstractTaxonomy go = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "GO:";
+			}
+		};
+		go.setSnapshotsEnabled(false);
+		go.load(write("go.obo", TAXONOMY));
+
+		File source = write("genes.tab", line("G1", "GO:0000012", "IEA")
+				+ line("G2", "GO:0000003", "IEA")
+				+ line("G3", "GO:0000099", "IEA")
+				+ line("G4", "GO:0000002", "TAS") + line("G5", "GO:0000001",
+				"IEA"));
+		GeneGOAnnotations annotations = new GeneGOAnnotations(go, Arrays
+				.asList("IEA"), source);
+
+		Assert.assertEquals(new TreeSet<String>(Arrays.asList("G1", "G2",
+				"G5")), new TreeSet<String>(annotations.getGeneIds()));
+		Assert.assertEquals(new TreeSet<String>(Arrays.asList("GO:0000001",
+				"GO:0000002")), new TreeSet<String>(annotations
+				.getGONodesIds()));
+		Assert.assertTrue(annotations.getGONode("GO:0000002").getNeighbors()
+				.containsAll(Arrays.asList("G1", "G2")));
+		Assert.assertTrue(annotations.getGONode("GO:0000001").getNeighbors()
+				.containsAll(Arrays.asList("G1", "G2", "G5")));
+	}
+
+	private File write(String name, String content) throws IOException {
+		File result = this.folder.newFile(name);
+		FileUtils.writeStringToFile(result, content, "UTF-8");
+		return result;
+	}
+
+	private static String line(String gene, String goId, String evidence) {
+		return "UniProtKB\t" + gene + "\t" + gene + "\t\t" + goId
+				+ "\tPMID:1\t" + evidence + "\n";
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.main.ConcurrentLoader.AnnotationFactory;
+import edu.toronto.cs.ontools.taxonomy.AbstractTaxonomy;
+import edu.toronto.cs.ontools.taxonomy.SampleTaxonomies;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+
+public class ConcurrentLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File release1;
+
+	private File release2;
+
+	private File annotations;
+
+	private ConcurrentLoader loader;
+
+	@Before
+	public void setUp() throws IOException {
+		this.release1 = SampleTaxonomies.write(this.folder, "release1.obo",
+				SampleTaxonomies.RELEASE1);
+		this.release2 = SampleTaxonomies.write(this.folder, "release2.obo",
+				SampleTaxonomies.RELEASE2);
+		this.annotations = SampleTaxonomies.write(this.folder, "omim.tab",
+				SampleTaxonomies.OMIM_ANNOTATIONS);
+		this.loader = new ConcurrentLoader(2);
+	}
+
+	@After
+	public void tearDown() {
+		this.loader.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testLoadInParallel() throws Exception {
+		// Both loads must run at the same time to get past the latch
+		final CountDownLatch started = new CountDownLatch(2);
+		Future<AbstractTaxonomy> first = this.loader
+				.loadTaxonomy(load(this.release1, started));
+		Future<AbstractTaxonomy> second = this.loader
+				.loadTaxonomy(load(this.release2, started));
+		Future<OmimHPOAnnotations> annotation = this.loader.loadAnnotation(
+				first, new AnnotationFactory<OmimHPOAnnotations>() {
+					public OmimHPOAnnotations create(Taxonomy taxonomy) {
+						return new OmimHPOAnnotations(taxonomy,
+								ConcurrentLoaderTest.this.annotations);
+					}
+				});
+
+		AbstractTaxonomy taxonomy = ConcurrentLoader.get(first);
+		Assert.assertEquals(SampleTaxonomies.describe(SampleTaxonomies
+				.load(this.release1)), SampleTaxonomies.describe(taxonomy));
+		Assert.assertEquals(SampleTaxonomies.describe(SampleTaxonomies
+				.load(this.release2)), SampleTaxonomies
+				.describe(ConcurrentLoader.get(second)));
+		OmimHPOAnnotations loaded = ConcurrentLoader.get(annotation);
+		Assert.assertSame(taxonomy, loaded.getTaxonomy());
+		Assert.assertEquals(SampleTaxonomies.describe(new OmimHPOAnnotations(
+				taxonomy, this.annotations)), SampleTaxonomies
+				.describe(loaded));
+	}
+
+	@Test
+	public void testFailures() {
+		final IllegalStateException failure = new IllegalStateException(
+				"broken");
+		Future<Taxonomy> taxonomy = this.loader
+				.loadTaxonomy(new Callable<Taxonomy>() {
+					public Taxonomy call() {
+						throw failure;
+					}
+				});
+		try {
+			ConcurrentLoader.get(taxonomy);
+			Assert.fail("Failure not reported");
+		} catch (IllegalStateException ex) {
+			Assert.assertSame(failure, ex);
+		}
+
+		// Annotations of a taxonomy which failed to load fail as well
+		Future<OmimHPOAnnotations> annotation = this.loader.loadAnnotation(
+				taxonomy, new AnnotationFactory<OmimHPOAnnotations>() {
+					public OmimHPOAnnotations create(Taxonomy taxonomy) {
+						throw new AssertionError("Taxonomy not loaded");
+					}
+				});
+		try {
+			ConcurrentLoader.get(annotation);
+			Assert.fail("Failure not reported");
+		} catch (RuntimeException ex) {
+			Assert.assertSame(failure, ex.getCause().getCause());
+		}
+
+		final IOException checked = new IOException("missing");
+		try {
+			ConcurrentLoader.get(this.loader
+					.loadTaxonomy(new Callable<Taxonomy>() {
+						public Taxonomy call() throws IOException {
+							throw checked;
+						}
+					}));
+			Assert.fail("Failure not reported");
+		} catch (RuntimeException ex) {
+			Assert.assertSame(checked, ex.getCause());
+		}
+	}
+
+	private static Callable<AbstractTaxonomy> load(final File source,
+			final CountDownLatch started) {
+		return new Callable<AbstractTaxonomy>() {
+			public AbstractTaxonomy call() throws InterruptedException {
+				started.countDown();
+				started.await();
+				return SampleTaxonomies.load(source);
+			}
+		};
+	}
+}
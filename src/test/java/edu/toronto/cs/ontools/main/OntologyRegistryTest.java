@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.taxonomy.AbstractTaxonomy;
+import edu.toronto.cs.ontools.taxonomy.HPO;
+import edu.toronto.cs.ontools.taxonomy.SampleTaxonomies;
+import edu.toronto.cs.ontools.taxonomy.Taxonomy;
+import edu.toronto.cs.ontools.taxonomy.TaxonomyDiff;
+
+public class OntologyRegistryTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File release1;
+
+	private File release2;
+
+	private File annotations;
+
+	private OntologyRegistry registry;
+
+	@Before
+	public void setUp() throws IOException {
+		this.release1 = SampleTaxonomies.write(this.folder, "release1.obo",
+				SampleTaxonomies.RELEASE1);
+		this.release2 = SampleTaxonomies.write(this.folder, "release2.obo",
+				SampleTaxonomies.RELEASE2);
+		this.annotations = SampleTaxonomies.write(this.folder, "omim.tab",
+				SampleTaxonomies.OMIM_ANNOTATIONS);
+		this.registry = new OntologyRegistry();
+		this.registry.registerLocation(OntologyRegistry.TAXONOMY_HPO,
+				this.release1.getAbsolutePath());
+		this.registry.registerLocation(OntologyRegistry.TAXONOMY_HPO,
+				OntologyRegistry.ANNOTATION_OMIM, this.annotations
+						.getAbsolutePath());
+	}
+
+	@Test(timeout = 30000)
+	public void testSharedInstances() throws InterruptedException {
+		final int threads = 8;
+		final TaxonomyAnnotation[] results = new TaxonomyAnnotation[threads];
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i) {
+			final int n = i;
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException ex) {
+						return;
+					}
+					results[n] = OntologyRegistryTest.this.registry
+							.getAnnotation(n % 2 == 0 ? "hpo" : "HPO",
+									OntologyRegistry.ANNOTATION_OMIM);
+				}
+			};
+			workers[i].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		Taxonomy taxonomy = this.registry
+				.getTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+		for (TaxonomyAnnotation result : results) {
+			Assert.assertSame(results[0], result);
+			Assert.assertSame(taxonomy, result.getTaxonomy());
+		}
+		Assert.assertSame(taxonomy, this.registry.getTaxonomy("hpo"));
+
+		// Unshared instances are loaded again
+		Taxonomy copy = this.registry
+				.createTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+		Assert.assertNotSame(taxonomy, copy);
+		Assert.assertEquals(SampleTaxonomies
+				.describe((AbstractTaxonomy) taxonomy), SampleTaxonomies
+				.describe((AbstractTaxonomy) copy));
+	}
+
+	@Test
+	public void testFailedLoadIsNotShared() {
+		for (int i = 0; i < 2; ++i) {
+			try {
+				this.registry.getTaxonomy("unknown");
+				Assert.fail("Unknown taxonomy loaded");
+			} catch (IllegalArgumentException ex) {
+				// Expected, every time
+			}
+		}
+	}
+
+	@Test
+	public void testReloadTaxonomy() {
+		Taxonomy before = this.registry
+				.getTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+		TaxonomyAnnotation annotation = this.registry.getAnnotation(
+				OntologyRegistry.TAXONOMY_HPO,
+				OntologyRegistry.ANNOTATION_OMIM);
+		String taxonomyBefore = SampleTaxonomies
+				.describe((AbstractTaxonomy) before);
+		String annotationBefore = SampleTaxonomies.describe(annotation);
+		Set<String> unaffected = before.getAncestors("HP:0000002");
+
+		this.registry.registerLocation(OntologyRegistry.TAXONOMY_HPO,
+				this.release2.getAbsolutePath());
+		TaxonomyDiff diff = this.registry
+				.reloadTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+		Assert.assertFalse(diff.isEmpty());
+
+		Taxonomy after = this.registry
+				.getTaxonomy(OntologyRegistry.TAXONOMY_HPO);
+		Assert.assertNotSame(before, after);
+		Assert.assertTrue(after instanceof HPO);
+		Assert.assertSame(unaffected, after.getAncestors("HP:0000002"));
+		Assert.assertEquals(SampleTaxonomies.describe(SampleTaxonomies
+				.load(this.release2)), SampleTaxonomies
+				.describe((AbstractTaxonomy) after));
+
+		TaxonomyAnnotation updated = this.registry.getAnnotation(
+				OntologyRegistry.TAXONOMY_HPO,
+				OntologyRegistry.ANNOTATION_OMIM);
+		Assert.assertTrue(updated instanceof OmimHPOAnnotations);
+		Assert.assertSame(after, updated.getTaxonomy());
+		Assert.assertEquals(SampleTaxonomies.describe(new OmimHPOAnnotations(
+				after, this.annotations)), SampleTaxonomies.describe(updated));
+
+		// The previous instances are left as they were
+		Assert.assertSame(before, annotation.getTaxonomy());
+		Assert.assertEquals(taxonomyBefore, SampleTaxonomies
+				.describe((AbstractTaxonomy) before));
+		Assert.assertEquals(annotationBefore, SampleTaxonomies
+				.describe(annotation));
+	}
+
+	@Test
+	public void testReloadBeforeLoad() {
+		Assert.assertNull(this.registry
+				.reloadTaxonomy(OntologyRegistry.TAXONOMY_HPO));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.main;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PipelinedInputStreamTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCompressedFile() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50000; ++i) {
+			text.append("line ").append(i).append('\n');
+		}
+		byte[] data = text.toString().getBytes("UTF-8");
+		File compressed = this.folder.newFile("data.gz");
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(
+				compressed));
+		out.write(data);
+		out.close();
+		File plain = this.folder.newFile("data.txt");
+		FileUtils.writeByteArrayToFile(plain, data);
+
+		InputStream in = LocalFileUtils.getInputStream(compressed);
+		Assert.assertTrue(in instanceof PipelinedInputStream);
+		Assert.assertArrayEquals(data, IOUtils.toByteArray(in));
+		Assert.assertEquals(-1, in.read());
+		in.close();
+		in = LocalFileUtils.getInputStream(plain);
+		Assert.assertFalse(in instanceof PipelinedInputStream);
+		Assert.assertArrayEquals(data, IOUtils.toByteArray(in));
+		in.close();
+
+		BufferedReader reader = LocalFileUtils.getReader(compressed);
+		Assert.assertEquals("line 0", reader.readLine());
+		// Closing before the end stops the background thread
+		reader.close();
+	}
+
+	@Test(timeout = 10000)
+	public void testTruncatedFile() throws IOException {
+		byte[] data = new byte[1 << 20];
+		Arrays.fill(data, (byte) 'a');
+		File compressed = this.folder.newFile("data.gz");
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(
+				compressed));
+		out.write(data);
+		out.close();
+		byte[] bytes = FileUtils.readFileToByteArray(compressed);
+		FileUtils.writeByteArrayToFile(compressed, Arrays.copyOf(bytes,
+				bytes.length - 10));
+
+		InputStream in = LocalFileUtils.getInputStream(compressed);
+		try {
+			IOUtils.toByteArray(in);
+			Assert.fail("Truncated data read without error");
+		} catch (IOException ex) {
+			// Expected
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testRuntimeFailure() throws IOException {
+		final IllegalStateException failure = new IllegalStateException(
+				"broken");
+		InputStream source = new ByteArrayInputStream(new byte[200000]) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				if (this.pos > 100000) {
+					throw failure;
+				}
+				return super.read(b, off, len);
+			}
+		};
+		InputStream in = new PipelinedInputStream(source, "test");
+		try {
+			IOUtils.toByteArray(in);
+			Assert.fail("Failure not reported");
+		} catch (IOException ex) {
+			Assert.assertSame(failure, ex.getCause());
+		}
+		// The failure is reported again, not taken for the end of the data
+		try {
+			in.read();
+			Assert.fail("Failure not reported");
+		} catch (IOException ex) {
+			Assert.assertSame(failure, ex.getCause());
+		}
+		in.close();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.prediction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+import edu.toronto.cs.ontools.taxonomy.AbstractTaxonomy;
+import edu.toronto.cs.ontools.taxonomy.SampleTaxonomies;
+import edu.toronto.cs.ontools.taxonomy.TaxonomyDiff;
+import edu.toronto.cs.ontools.utils.graph.AncestorClosure;
+
+public class ICPredictorTest {
+	private static final List<String> TERMS = Arrays.asList("HP:0000001",
+			"HP:0000002", "HP:0000003", "HP:0000004", "HP:0000005",
+			"HP:0000007");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMICAIndexMatchesBruteForce() throws IOException {
+		Random random = new Random(3);
+		StringBuilder obo = new StringBuilder("format-version: 1.2\n\n");
+		for (int i = 1; i <= 300; ++i) {
+			obo.append("[Term]\nid: ").append(id(i)).append("\nname: Term ")
+					.append(i).append('\n');
+			for (int p = 0; i > 1 && p < 1 + random.nextInt(3); ++p) {
+				obo.append("is_a: ").append(id(1 + random.nextInt(i - 1)))
+						.append('\n');
+			}
+			obo.append('\n');
+		}
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(SampleTaxonomies
+				.write(this.folder, "random.obo", obo.toString()));
+		int size = taxonomy.size();
+		double[] ic = new double[size];
+		for (int i = 0; i < size; ++i) {
+			// Few distinct values, so that ties are common
+			ic[i] = random.nextInt(8);
+		}
+
+		MICAIndex index = new MICAIndex(taxonomy, ic);
+		AncestorClosure closure = taxonomy.getAncestorClosure();
+		for (int o1 = 0; o1 < size; ++o1) {
+			for (int o2 = o1; o2 < size; o2 += 3) {
+				// Highest IC first, then the highest ordinal
+				int expected = -1;
+				for (int a = 0; a < size; ++a) {
+					if (closure.isAncestor(a, o1)
+							&& closure.isAncestor(a, o2)
+							&& (expected < 0 || ic[a] >= ic[expected])) {
+						expected = a;
+					}
+				}
+				Assert.assertEquals(expected, index.getMICAOrdinal(o1, o2));
+				Assert.assertEquals(expected, index.getMICAOrdinal(o2, o1));
+				Assert.assertEquals(ic[expected], index.getMICAIC(o1, o2), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSimilaritiesFollowReload() throws IOException {
+		File release1 = SampleTaxonomies.write(this.folder, "release1.obo",
+				SampleTaxonomies.RELEASE1);
+		File release2 = SampleTaxonomies.write(this.folder, "release2.obo",
+				SampleTaxonomies.RELEASE2);
+		File omim = SampleTaxonomies.write(this.folder, "omim.tab",
+				SampleTaxonomies.OMIM_ANNOTATIONS);
+
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(release1);
+		TaxonomyAnnotation annotation = new OmimHPOAnnotations(taxonomy, omim);
+		ICPredictor predictor = new ICPredictor();
+		predictor.setAnnotation(annotation);
+		Assert.assertEquals(similarities(predictor(release1, omim)),
+				similarities(predictor));
+
+		TaxonomyDiff diff = taxonomy.reload(release2);
+		annotation.update(diff);
+		List<Double> expected = similarities(predictor(release2, omim));
+		Assert.assertEquals(expected, similarities(predictor));
+	}
+
+	private static ICPredictor predictor(File taxonomy, File annotations) {
+		ICPredictor result = new ICPredictor();
+		result.setAnnotation(new OmimHPOAnnotations(SampleTaxonomies
+				.load(taxonomy), annotations));
+		return result;
+	}
+
+	/**
+	 * @return the similarity of every pair of sample terms, in both orders
+	 */
+	private static List<Double> similarities(ICPredictor predictor) {
+		Double[] result = new Double[TERMS.size() * TERMS.size()];
+		for (int i = 0; i < TERMS.size(); ++i) {
+			for (int j = 0; j < TERMS.size(); ++j) {
+				result[i * TERMS.size() + j] = predictor
+						.asymmetricTermSimilarity(Arrays.asList(TERMS.get(i)),
+								Arrays.asList(TERMS.get(j)));
+			}
+		}
+		return Arrays.asList(result);
+	}
+
+	private static String id(int number) {
+		return String.format("HP:%07d", number);
+	}
+}
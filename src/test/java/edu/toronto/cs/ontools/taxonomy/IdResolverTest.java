@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that ids resolve to the same terms before and after the taxonomy is
+ * frozen.
+ */
+public class IdResolverTest {
+	/**
+	 * Two live terms, with an alternative id, a chain of replacements, a
+	 * replacement by an unknown term and a cycle of replacements.
+	 */
+	private static final String TAXONOMY = "format-version: 1.2\n\n"
+			+ "[Term]\nid: HP:0000001\nname: All\nalt_id: HP:0000011\n\n"
+			+ "[Term]\nid: HP:0000002\nname: Child\n"
+			+ "is_a: HP:0000001 ! All\n\n"
+			+ "[Term]\nid: HP:0000003\nname: Old\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000004\n\n"
+			+ "[Term]\nid: HP:0000004\nname: Older\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000002\n\n"
+			+ "[Term]\nid: HP:0000005\nname: Lost\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000099\n\n"
+			+ "[Term]\nid: HP:0000006\nname: Cycle A\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000007\n\n"
+			+ "[Term]\nid: HP:0000007\nname: Cycle B\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000006\n";
+
+	private static final List<String> IDS = Arrays.asList("HP:0000001",
+			"HP:0000011", "HP:0000002", "HP:0000003", "HP:0000004",
+			"HP:0000005", "HP:0000006", "HP:0000007", "HP:0000099", null);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File source;
+
+	@Before
+	public void setUp() throws IOException {
+		this.source = SampleTaxonomies.write(this.folder, "ids.obo", TAXONOMY);
+	}
+
+	@Test
+	public void testResolve() {
+		AbstractTaxonomy taxonomy = load(true);
+		IdResolver resolver = taxonomy.getIdResolver();
+		Assert.assertEquals(Arrays.asList("HP:0000001", "HP:0000001",
+				"HP:0000002", "HP:0000002", "HP:0000002", null, null, null,
+				null, null), resolve(taxonomy));
+		Assert.assertEquals(5, resolver.size());
+
+		List<String> unresolved = new ArrayList<String>();
+		int[] ordinals = resolver.resolveAll(Arrays.asList("HP:0000003",
+				"HP:0000005", "HP:0000011"), unresolved);
+		Assert.assertEquals(2, ordinals.length);
+		Assert.assertEquals("HP:0000002", taxonomy.getTermId(ordinals[0]));
+		Assert.assertEquals("HP:0000001", taxonomy.getTermId(ordinals[1]));
+		Assert.assertEquals(Arrays.asList("HP:0000005"), unresolved);
+	}
+
+	@Test
+	public void testSameResolutionBeforeFreezing() {
+		AbstractTaxonomy frozen = load(true);
+		AbstractTaxonomy unfrozen = load(false);
+		Assert.assertFalse(unfrozen.isFrozen());
+		Assert.assertEquals(resolve(frozen), resolve(unfrozen));
+		for (String id : IDS) {
+			Assert.assertEquals(frozen.getOrdinal(id) >= 0, unfrozen
+					.getOrdinal(id) >= 0);
+			Assert.assertEquals(frozen.getTerm(id) == null, unfrozen
+					.getTerm(id) == null);
+		}
+		unfrozen.freeze();
+		Assert.assertEquals(resolve(frozen), resolve(unfrozen));
+	}
+
+	private AbstractTaxonomy load(boolean eagerIndexing) {
+		AbstractTaxonomy result = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "HP:";
+			}
+		};
+		result.setSnapshotsEnabled(false);
+		result.setEagerIndexing(eagerIndexing);
+		result.load(this.source);
+		return result;
+	}
+
+	/**
+	 * @return the live id each of {@link #IDS} resolves to, checking that
+	 *         the lookups by id agree
+	 */
+	private static List<String> resolve(AbstractTaxonomy taxonomy) {
+		List<String> result = new ArrayList<String>();
+		for (String id : IDS) {
+			String realId = taxonomy.getRealId(id);
+			TaxonomyTerm term = taxonomy.getTerm(id);
+			Assert.assertEquals(realId, term == null ? null : term.getId());
+			int ordinal = taxonomy.getOrdinal(id);
+			Assert.assertEquals(realId, ordinal < 0 ? null : taxonomy
+					.getTermId(ordinal));
+			result.add(realId);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that all the OBO parsers pass the same stanzas to the taxonomy.
+ */
+public class OBOParserTest {
+	private static final FieldRetentionPolicy RETAINED = new FieldRetentionPolicy(
+			"def", "synonym");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File source;
+
+	@Before
+	public void setUp() throws IOException {
+		this.source = SampleTaxonomies.write(this.folder, "large.obo",
+				generate(3000));
+		Assert.assertTrue(this.source.length() > 1 << 17);
+	}
+
+	@Test
+	public void testParallelParserMatchesSequentialParsers() {
+		List<String> expected = parse(new TextOBOParser());
+		Assert.assertEquals(expected, parse(new MappedOBOParser()));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertEquals(expected, parse(new ParallelOBOParser(pool)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testMappedParserMatchesTextParser() throws IOException {
+		String[] sources = {
+				// No line end after the last field
+				"[Term]\nid: HP:0000001\nname: All",
+				// Multibyte characters, spaces and comments around values
+				"[Term]\nid: HP:0000001\nname: Caf\u00e9 \u00e0 l'\u00e9cole  \n"
+						+ "def: \"\u03b1-\u03b2 \u2192 \u03b3\" [HPO:x]\n\n"
+						+ "[Term]\nid:  HP:0000002 \nname: Child\n"
+						+ "is_a: HP:0000001 ! Caf\u00e9\n",
+				// Windows line ends and blank lines between stanzas
+				"[Term]\r\nid: HP:0000001\r\nname: All\r\n\r\n\r\n"
+						+ "[Term]\r\nid: HP:0000002\r\nname: Child\r\n"
+						+ "is_a: HP:0000001\r\n" };
+		for (int i = 0; i < sources.length; ++i) {
+			this.source = SampleTaxonomies.write(this.folder, "edge" + i
+					+ ".obo", sources[i]);
+			Assert.assertEquals(sources[i], parse(new TextOBOParser()),
+					parse(new MappedOBOParser()));
+		}
+	}
+
+	/**
+	 * @return the description of each stanza passed to the taxonomy,
+	 *         followed by the description of the loaded taxonomy
+	 */
+	private List<String> parse(OBOParser parser) {
+		final List<String> result = new ArrayList<String>();
+		AbstractTaxonomy taxonomy = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "HP:";
+			}
+
+			@Override
+			protected void processTermData(TermData data) {
+				if (data.getId() != null) {
+					result.add(describe(data));
+				}
+				super.processTermData(data);
+			}
+		};
+		taxonomy.setSnapshotsEnabled(false);
+		taxonomy.setFieldRetentionPolicy(RETAINED);
+		taxonomy.setParser(parser);
+		taxonomy.load(this.source);
+		result.add(SampleTaxonomies.describe(taxonomy));
+		return result;
+	}
+
+	private static String describe(TermData data) {
+		return data.getId() + " " + data.getName() + " "
+				+ data.safeGet(TermData.PARENT_FIELD_NAME) + " "
+				+ data.safeGet(TermData.ALT_ID_FIELD_NAME) + " "
+				+ data.isObsolete() + " " + data.getReplacement() + " "
+				+ Arrays.toString(data.getRetainedFields());
+	}
+
+	/**
+	 * An OBO file with normal, obsolete and replaced terms, alternative ids,
+	 * comments, Windows line ends and a trailing {@code [Typedef]} section.
+	 */
+	private static String generate(int size) {
+		StringBuilder result = new StringBuilder();
+		result.append("format-version: 1.2\nsaved-by: test\n\n");
+		for (int i = 1; i <= size; ++i) {
+			String eol = i % 7 == 0 ? "\r\n" : "\n";
+			result.append("[Term]").append(eol);
+			result.append("id: ").append(id(i)).append(eol);
+			result.append("name: Term ").append(i).append(eol);
+			if (i % 11 == 0) {
+				result.append("is_obsolete: true").append(eol);
+				if (i % 22 == 0) {
+					result.append("replaced_by: ").append(id(i / 2)).append(
+							eol);
+				}
+			} else if (i > 1) {
+				result.append("is_a: ").append(id(i / 2 + i % 2)).append(
+						" ! Term ").append(i / 2).append(eol);
+				if (i % 3 == 0) {
+					result.append("is_a: ").append(id(i / 3)).append(eol);
+				}
+			}
+			if (i % 5 == 0) {
+				result.append("alt_id: ").append(id(size + i)).append(eol);
+			}
+			result.append("def: \"Definition of term ").append(i).append(
+					"\" [HPO:test]").append(eol);
+			result.append("comment: Not retained").append(eol);
+			result.append(eol);
+		}
+		result.append("[Typedef]\nid: part_of\nname: part of\n\n");
+		result.append("[Term]\nid: HP:9999999\nname: After the typedefs\n");
+		return result.toString();
+	}
+
+	private static String id(int number) {
+		return String.format("HP:%07d", number);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+
+/**
+ * Two small releases of an HPO-like taxonomy and an OMIM annotation file,
+ * used by the tests, with helpers describing the loaded content.
+ */
+public final class SampleTaxonomies {
+	/** Two children of the root, a grandchild below both, and a leaf. */
+	public static final String RELEASE1 = "format-version: 1.2\n\n"
+			+ "[Term]\nid: HP:0000001\nname: All\n\n"
+			+ "[Term]\nid: HP:0000002\nname: Child A\n"
+			+ "is_a: HP:0000001 ! All\nalt_id: HP:0000022\n\n"
+			+ "[Term]\nid: HP:0000003\nname: Child B\n"
+			+ "is_a: HP:0000001 ! All\n\n"
+			+ "[Term]\nid: HP:0000004\nname: Grandchild\n"
+			+ "is_a: HP:0000002 ! Child A\nis_a: HP:0000003 ! Child B\n\n"
+			+ "[Term]\nid: HP:0000005\nname: Leaf\n"
+			+ "is_a: HP:0000004 ! Grandchild\n\n"
+			+ "[Term]\nid: HP:0000007\nname: Sibling\n"
+			+ "is_a: HP:0000001 ! All\n";
+
+	/**
+	 * {@link #RELEASE1} with Child A renamed, Child B merged into the
+	 * grandchild, Sibling made obsolete in favor of the leaf, and a new term.
+	 */
+	public static final String RELEASE2 = "format-version: 1.2\n\n"
+			+ "[Term]\nid: HP:0000001\nname: All\n\n"
+			+ "[Term]\nid: HP:0000002\nname: Child A, renamed\n"
+			+ "is_a: HP:0000001 ! All\nalt_id: HP:0000022\n\n"
+			+ "[Term]\nid: HP:0000004\nname: Grandchild\n"
+			+ "is_a: HP:0000002 ! Child A\nalt_id: HP:0000003\n\n"
+			+ "[Term]\nid: HP:0000005\nname: Leaf\n"
+			+ "is_a: HP:0000004 ! Grandchild\n\n"
+			+ "[Term]\nid: HP:0000006\nname: New\n"
+			+ "is_a: HP:0000001 ! All\n\n"
+			+ "[Term]\nid: HP:0000007\nname: Sibling\n"
+			+ "is_obsolete: true\nreplaced_by: HP:0000005\n";
+
+	/** Phenotype annotations of four diseases, in the OMIM file format. */
+	public static final String OMIM_ANNOTATIONS = omim("100", "Disease A",
+			"HP:0000005")
+			+ omim("200", "Disease B", "HP:0000003")
+			+ omim("200", "Disease B", "HP:0000022")
+			+ omim("300", "Disease C", "HP:0000002")
+			+ omim("400", "Disease D", "HP:0000007");
+
+	private SampleTaxonomies() {
+	}
+
+	private static String omim(String id, String name, String hpoId) {
+		return "OMIM\t" + id + "\t" + name + "\t\t" + hpoId
+				+ "\tOMIM:" + id + "\tIEA\t\n";
+	}
+
+	public static File write(TemporaryFolder folder, String name,
+			String content) throws IOException {
+		File result = folder.newFile(name);
+		FileUtils.writeStringToFile(result, content, "UTF-8");
+		return result;
+	}
+
+	public static AbstractTaxonomy load(File source) {
+		AbstractTaxonomy result = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "HP:";
+			}
+		};
+		result.setSnapshotsEnabled(false);
+		result.load(source);
+		return result;
+	}
+
+	/**
+	 * @return the terms, arcs, ancestors and alternative ids of a taxonomy
+	 */
+	public static String describe(AbstractTaxonomy taxonomy) {
+		StringBuilder result = new StringBuilder();
+		for (String id : new TreeSet<String>(taxonomy.getNodesIds())) {
+			TaxonomyTerm term = taxonomy.getTerm(id);
+			result.append(id).append(' ').append(term.getName()).append(' ')
+					.append(new TreeSet<String>(term.getParents())).append(
+							' ').append(
+							new TreeSet<String>(term.getChildren())).append(
+							' ').append(
+							new TreeSet<String>(taxonomy.getAncestors(id)))
+					.append('\n');
+		}
+		for (String id : new TreeSet<String>(taxonomy.getAlternateIdMapping()
+				.keySet())) {
+			result.append(id).append(" -> ").append(taxonomy.getRealId(id))
+					.append('\n');
+		}
+		result.append("root=").append(taxonomy.getRootId());
+		return result.toString();
+	}
+
+	/**
+	 * @return the annotated objects and the taxonomy terms of an annotation,
+	 *         with their neighbors
+	 */
+	public static String describe(TaxonomyAnnotation annotation) {
+		StringBuilder result = new StringBuilder();
+		for (String id : new TreeSet<String>(annotation.getAnnotationIds())) {
+			result.append(id).append(' ').append(
+					new TreeSet<String>(annotation.getAnnotationNode(id)
+							.getNeighbors())).append('\n');
+		}
+		for (String id : new TreeSet<String>(annotation
+				.getTaxonomyNodesIds())) {
+			result.append(id).append(' ').append(
+					new TreeSet<String>(annotation.getTaxonomyNode(id)
+							.getNeighbors())).append('\n');
+		}
+		return result.toString();
+	}
+}
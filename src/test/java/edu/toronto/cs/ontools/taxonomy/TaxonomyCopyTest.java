@@ -0,0 +1,192 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that copies made with {@link AbstractTaxonomy#clone()} and
+ * {@link AbstractTaxonomy#pinVersion()} don't see the changes made to the
+ * taxonomy they were copied from, and the other way around.
+ */
+public class TaxonomyCopyTest {
+	private static final String RELEASE1 = "format-version: 1.2\n\n"
+			+ "[Term]\nid: HP:0000001\nname: All\n\n"
+			+ "[Term]\nid: HP:0000002\nname: Child A\n"
+			+ "is_a: HP:0000001 ! All\nalt_id: HP:0000022\n\n"
+			+ "[Term]\nid: HP:0000003\nname: Child B\n"
+			+ "is_a: HP:0000001 ! All\n\n"
+			+ "[Term]\nid: HP:0000004\nname: Grandchild\n"
+			+ "is_a: HP:0000002 ! Child A\nis_a: HP:0000003 ! Child B\n\n"
+			+ "[Term]\nid: HP:0000005\nname: Leaf\n"
+			+ "is_a: HP:0000004 ! Grandchild\n";
+
+	private static final String RELEASE2 = "format-version: 1.2\n\n"
+			+ "[Term]\nid: HP:0000001\nname: All\n\n"
+			+ "[Term]\nid: HP:0000002\nname: Child A, renamed\n"
+			+ "is_a: HP:0000001 ! All\nalt_id: HP:0000022\n\n"
+			+ "[Term]\nid: HP:0000004\nname: Grandchild\n"
+			+ "is_a: HP:0000002 ! Child A\nalt_id: HP:0000003\n\n"
+			+ "[Term]\nid: HP:0000005\nname: Leaf\n"
+			+ "is_a: HP:0000004 ! Grandchild\n\n"
+			+ "[Term]\nid: HP:0000006\nname: New\n"
+			+ "is_a: HP:0000003 ! Child B, now Grandchild\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File release1;
+
+	private File release2;
+
+	@Before
+	public void setUp() throws IOException {
+		this.release1 = this.folder.newFile("release1.obo");
+		FileUtils.writeStringToFile(this.release1, RELEASE1, "UTF-8");
+		this.release2 = this.folder.newFile("release2.obo");
+		FileUtils.writeStringToFile(this.release2, RELEASE2, "UTF-8");
+	}
+
+	@Test
+	public void testCloneIsolatedFromOriginal() {
+		AbstractTaxonomy taxonomy = load(this.release1);
+		String before = describe(taxonomy);
+		AbstractTaxonomy copy = taxonomy.clone();
+		Assert.assertEquals(before, describe(copy));
+
+		copy.removeNodes(Arrays.asList("HP:0000003"));
+		Assert.assertNull(copy.getTerm("HP:0000003"));
+		Assert.assertEquals(ids("HP:0000001", "HP:0000002", "HP:0000004",
+				"HP:0000005"), copy.getAncestors("HP:0000005"));
+		Assert.assertFalse(copy.isAncestor("HP:0000003", "HP:0000005"));
+		Assert.assertEquals(before, describe(taxonomy));
+		Assert.assertTrue(taxonomy.isAncestor("HP:0000003", "HP:0000005"));
+	}
+
+	@Test
+	public void testOriginalIsolatedFromClone() {
+		AbstractTaxonomy taxonomy = load(this.release1);
+		AbstractTaxonomy copy = taxonomy.clone();
+		String before = describe(copy);
+
+		taxonomy.removeNode("HP:0000002");
+		Assert.assertEquals(before, describe(copy));
+		Assert.assertTrue(copy.getTerm("HP:0000004").getParents().contains(
+				"HP:0000002"));
+		Assert.assertEquals("HP:0000002", copy.getRealId("HP:0000022"));
+
+		taxonomy.reload(this.release2);
+		Assert.assertEquals(describe(load(this.release2)),
+				describe(taxonomy));
+		Assert.assertEquals(before, describe(copy));
+	}
+
+	@Test
+	public void testPinnedVersionSurvivesRemovals() {
+		AbstractTaxonomy taxonomy = load(this.release1);
+		// Fill the caches shared with the pinned version
+		taxonomy.getAncestors("HP:0000005");
+		taxonomy.getAncestorClosure();
+		String before = describe(taxonomy);
+		ImmutableTaxonomy pinned = taxonomy.pinVersion();
+
+		taxonomy.removeNodes(Arrays.asList("HP:0000003"));
+		Assert.assertEquals(ids("HP:0000001", "HP:0000002", "HP:0000004",
+				"HP:0000005"), taxonomy.getAncestors("HP:0000005"));
+		Assert.assertEquals(before, describe(pinned));
+		Assert.assertTrue(pinned.isAncestor("HP:0000003", "HP:0000005"));
+	}
+
+	@Test
+	public void testPinnedVersionSurvivesReload() {
+		AbstractTaxonomy taxonomy = load(this.release1);
+		String before = describe(taxonomy);
+		ImmutableTaxonomy pinned = taxonomy.pinVersion();
+
+		taxonomy.reload(this.release2);
+		Assert.assertEquals(describe(load(this.release2)),
+				describe(taxonomy));
+		Assert.assertEquals(before, describe(pinned));
+		Assert.assertEquals("Child A", pinned.getName("HP:0000002"));
+		Assert.assertEquals("HP:0000004", taxonomy.getRealId("HP:0000003"));
+		Assert.assertEquals("HP:0000003", pinned.getRealId("HP:0000003"));
+		// Linked to the term now holding the alternative id of its parent
+		Assert.assertTrue(taxonomy.getTerm("HP:0000004").hasChild(
+				"HP:0000006"));
+
+		// A clone of the pinned version can change again
+		AbstractTaxonomy copy = pinned.clone();
+		copy.reload(this.release2);
+		Assert.assertEquals(describe(taxonomy), describe(copy));
+		Assert.assertEquals(before, describe(pinned));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testPinnedVersionIsImmutable() {
+		load(this.release1).pinVersion().removeNode("HP:0000005");
+	}
+
+	private static AbstractTaxonomy load(File source) {
+		AbstractTaxonomy result = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "HP:";
+			}
+		};
+		result.setSnapshotsEnabled(false);
+		result.load(source);
+		return result;
+	}
+
+	private static Set<String> ids(String... ids) {
+		return new TreeSet<String>(Arrays.asList(ids));
+	}
+
+	/**
+	 * @return the terms, arcs, ancestors and alternative ids of a taxonomy
+	 */
+	private static String describe(AbstractTaxonomy taxonomy) {
+		StringBuilder result = new StringBuilder();
+		for (String id : new TreeSet<String>(taxonomy.getNodesIds())) {
+			TaxonomyTerm term = taxonomy.getTerm(id);
+			result.append(id).append(' ').append(term.getName()).append(' ')
+					.append(new TreeSet<String>(term.getParents())).append(
+							' ').append(
+							new TreeSet<String>(term.getChildren())).append(
+							' ').append(
+							new TreeSet<String>(taxonomy.getAncestors(id)))
+					.append('\n');
+		}
+		result.append(new TreeSet<String>(taxonomy.getAlternateIdMapping()
+				.keySet()));
+		result.append(" root=").append(taxonomy.getRootId());
+		return result.toString();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.toronto.cs.ontools.annotation.OmimHPOAnnotations;
+import edu.toronto.cs.ontools.annotation.TaxonomyAnnotation;
+
+/**
+ * Checks the changes found by {@link AbstractTaxonomy#reload(File)}, and
+ * that reloading and updating the annotations give the same result as
+ * loading everything again.
+ */
+public class TaxonomyReloadTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File release1;
+
+	private File release2;
+
+	private File annotations;
+
+	@Before
+	public void setUp() throws IOException {
+		this.release1 = SampleTaxonomies.write(this.folder, "release1.obo",
+				SampleTaxonomies.RELEASE1);
+		this.release2 = SampleTaxonomies.write(this.folder, "release2.obo",
+				SampleTaxonomies.RELEASE2);
+		this.annotations = SampleTaxonomies.write(this.folder, "omim.tab",
+				SampleTaxonomies.OMIM_ANNOTATIONS);
+	}
+
+	@Test
+	public void testDiff() {
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(this.release1);
+		TaxonomyDiff diff = taxonomy.reload(this.release2);
+
+		Assert.assertEquals(ids("HP:0000006"), diff.getAdded());
+		Assert.assertEquals(ids("HP:0000003", "HP:0000007"), diff
+				.getRemoved());
+		Assert.assertEquals(ids("HP:0000007"), diff.getObsoleted());
+		Assert.assertEquals(ids("HP:0000004"), diff.getReparented());
+		Assert.assertEquals(ids("HP:0000002"), diff.getUpdated());
+		Assert.assertTrue(diff.getRemappedIds().containsAll(
+				ids("HP:0000003", "HP:0000007")));
+		Assert.assertTrue(diff.getAffected().containsAll(
+				ids("HP:0000003", "HP:0000004", "HP:0000005", "HP:0000006",
+						"HP:0000007")));
+		Assert.assertFalse(diff.getAffected().contains("HP:0000001"));
+		Assert.assertFalse(diff.getAffected().contains("HP:0000002"));
+
+		Assert.assertEquals(SampleTaxonomies.describe(SampleTaxonomies
+				.load(this.release2)), SampleTaxonomies.describe(taxonomy));
+	}
+
+	@Test
+	public void testUnchangedReleaseHasEmptyDiff() {
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(this.release1);
+		String before = SampleTaxonomies.describe(taxonomy);
+		Assert.assertTrue(taxonomy.reload(this.release1).isEmpty());
+		Assert.assertEquals(before, SampleTaxonomies.describe(taxonomy));
+	}
+
+	@Test
+	public void testKeepsUnaffectedAncestors() {
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(this.release1);
+		Set<String> unaffected = taxonomy.getAncestors("HP:0000002");
+		taxonomy.getAncestors("HP:0000005");
+
+		taxonomy.reload(this.release2);
+		Assert.assertSame(unaffected, taxonomy.getAncestors("HP:0000002"));
+		Assert.assertEquals(ids("HP:0000001", "HP:0000002", "HP:0000004",
+				"HP:0000005"), taxonomy.getAncestors("HP:0000005"));
+	}
+
+	@Test
+	public void testAnnotationUpdate() {
+		AbstractTaxonomy taxonomy = SampleTaxonomies.load(this.release1);
+		TaxonomyAnnotation annotation = new OmimHPOAnnotations(taxonomy,
+				this.annotations);
+		String before = SampleTaxonomies.describe(annotation);
+
+		AbstractTaxonomy release = taxonomy.clone();
+		TaxonomyDiff diff = release.reload(this.release2);
+		TaxonomyAnnotation updated = annotation.copy(release);
+		Assert.assertSame(release, updated.getTaxonomy());
+		Assert.assertEquals(ids("OMIM:100", "OMIM:200", "OMIM:400"), updated
+				.update(diff));
+
+		Assert.assertEquals(SampleTaxonomies.describe(new OmimHPOAnnotations(
+				SampleTaxonomies.load(this.release2), this.annotations)),
+				SampleTaxonomies.describe(updated));
+		Assert.assertEquals(before, SampleTaxonomies.describe(annotation));
+	}
+
+	private static Set<String> ids(String... ids) {
+		return new TreeSet<String>(Arrays.asList(ids));
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a taxonomy read from a snapshot is the same as the parsed one,
+ * and that outdated snapshots are not used.
+ */
+public class TaxonomySnapshotFileTest {
+	private static final FieldRetentionPolicy RETAINED = new FieldRetentionPolicy(
+			"def", "synonym");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File source;
+
+	private File snapshot;
+
+	private int parses;
+
+	@Before
+	public void setUp() throws IOException {
+		this.source = SampleTaxonomies.write(this.folder, "release1.obo",
+				SampleTaxonomies.RELEASE1.replace("name: Leaf\n",
+						"name: Leaf\ndef: \"A leaf\" []\n"
+								+ "synonym: \"Green leaf\" EXACT []\n"
+								+ "synonym: \"Feuille\" EXACT []\n"));
+		this.snapshot = new File(this.folder.getRoot(), "release1.snapshot");
+	}
+
+	@Test
+	public void testReadWrittenSnapshot() {
+		AbstractTaxonomy parsed = create(RETAINED);
+		parsed.setSnapshotsEnabled(false);
+		parsed.load(this.source);
+		Assert.assertTrue(TaxonomySnapshotFile.write(parsed, this.source,
+				this.snapshot));
+		Assert.assertTrue(TaxonomySnapshotFile.isUpToDate(this.snapshot,
+				this.source, RETAINED));
+		Assert.assertFalse(TaxonomySnapshotFile.isUpToDate(this.snapshot,
+				this.source, FieldRetentionPolicy.NONE));
+
+		AbstractTaxonomy read = create(RETAINED);
+		Assert.assertTrue(TaxonomySnapshotFile.read(this.snapshot, read));
+		read.freeze();
+		Assert.assertEquals(SampleTaxonomies.describe(parsed),
+				SampleTaxonomies.describe(read));
+		TaxonomyTerm leaf = read.getTerm("HP:0000005");
+		Assert.assertEquals(Arrays.asList("\"A leaf\" []"), leaf
+				.getFieldValues("def"));
+		Assert.assertEquals(Arrays.asList("\"Green leaf\" EXACT []",
+				"\"Feuille\" EXACT []"), leaf.getFieldValues("synonym"));
+		Assert.assertTrue(leaf.getFieldValues("comment").isEmpty());
+	}
+
+	@Test
+	public void testLoadUsesSnapshot() {
+		String expected = SampleTaxonomies.describe(SampleTaxonomies
+				.load(this.source));
+
+		AbstractTaxonomy first = create(RETAINED);
+		first.load(this.source);
+		Assert.assertEquals(1, this.parses);
+		Assert.assertTrue(this.snapshot.isFile());
+
+		AbstractTaxonomy second = create(RETAINED);
+		second.load(this.source);
+		Assert.assertEquals(1, this.parses);
+		Assert.assertEquals(expected, SampleTaxonomies.describe(second));
+
+		// Another retention policy needs another parse
+		create(FieldRetentionPolicy.NONE).load(this.source);
+		Assert.assertEquals(2, this.parses);
+
+		// So does a changed source
+		Assert.assertTrue(this.source.setLastModified(this.source
+				.lastModified() - 10000));
+		AbstractTaxonomy third = create(FieldRetentionPolicy.NONE);
+		third.load(this.source);
+		Assert.assertEquals(3, this.parses);
+		Assert.assertEquals(expected, SampleTaxonomies.describe(third));
+	}
+
+	@Test
+	public void testCorruptSnapshotIsIgnored() throws IOException {
+		AbstractTaxonomy first = create(RETAINED);
+		first.load(this.source);
+		Assert.assertTrue(this.snapshot.isFile());
+		// Keep the header, drop the terms
+		RandomAccessFile file = new RandomAccessFile(this.snapshot, "rw");
+		try {
+			file.setLength(60);
+		} finally {
+			file.close();
+		}
+
+		AbstractTaxonomy second = create(RETAINED);
+		second.load(this.source);
+		Assert.assertEquals(2, this.parses);
+		Assert.assertEquals(SampleTaxonomies.describe(first),
+				SampleTaxonomies.describe(second));
+	}
+
+	/**
+	 * @return a taxonomy keeping its snapshot in the test folder and
+	 *         counting how many times it parses the source
+	 */
+	private AbstractTaxonomy create(FieldRetentionPolicy policy) {
+		AbstractTaxonomy result = new AbstractTaxonomy() {
+			public String getIDPrefix() {
+				return "HP:";
+			}
+
+			@Override
+			protected File getSnapshotFile(File source) {
+				return TaxonomySnapshotFileTest.this.snapshot;
+			}
+
+			@Override
+			protected int parse(File source) {
+				++TaxonomySnapshotFileTest.this.parses;
+				return super.parse(source);
+			}
+		};
+		result.setFieldRetentionPolicy(policy);
+		return result;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.taxonomy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks which fields of a stanza are kept, in {@link TermData} and on the
+ * loaded terms.
+ */
+public class TermDataTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testIndexedFields() {
+		TermData data = new TermData();
+		data.addTo("id", "HP:0000002");
+		data.addTo("name", "Child");
+		Assert.assertTrue(data.addTo("is_a", "HP:0000001 ! All"));
+		Assert.assertFalse(data.addTo("is_a", "HP:0000001"));
+		Assert.assertTrue(data.addTo("alt_id", "HP:0000022"));
+		Assert.assertFalse(data.addTo("def", "\"Not retained\" []"));
+		Assert.assertEquals("HP:0000002", data.getId());
+		Assert.assertEquals("Child", data.getName());
+		Assert.assertEquals(Arrays.asList("HP:0000001"), data.get("is_a"));
+		Assert.assertEquals(Arrays.asList("HP:0000022"), data.get("alt_id"));
+		Assert.assertTrue(data.get("def").isEmpty());
+		Assert.assertEquals(0, data.getRetainedFields().length);
+		Assert.assertTrue(data.isValid());
+
+		// The replacement only counts for obsolete terms
+		data.addTo("replaced_by", "HP:0000003");
+		Assert.assertNull(data.getReplacement());
+		data.addTo("is_obsolete", "true");
+		Assert.assertEquals("HP:0000003", data.getReplacement());
+		Assert.assertFalse(data.isValid());
+
+		data.clear();
+		Assert.assertNull(data.getId());
+		Assert.assertEquals("", data.getName());
+		Assert.assertTrue(data.get("is_a").isEmpty());
+		Assert.assertFalse(data.isObsolete());
+	}
+
+	@Test
+	public void testRetainedFields() {
+		TermData data = new TermData(new FieldRetentionPolicy("synonym",
+				"def", "synonym"));
+		Assert.assertEquals(Arrays.asList("synonym", "def"), data
+				.getRetentionPolicy().getFieldNames());
+		Assert.assertTrue(data.addTo("synonym", "\"One\" EXACT []"));
+		Assert.assertTrue(data.addTo("def", "\"Definition\" []"));
+		Assert.assertTrue(data.addTo("synonym", "\"Two\" EXACT []"));
+		Assert.assertFalse(data.addTo("synonym", "\"One\" EXACT []"));
+		Assert.assertFalse(data.addTo("comment", "Dropped"));
+		Assert.assertEquals(Arrays.asList("\"One\" EXACT []",
+				"\"Two\" EXACT []"), data.get("synonym"));
+		Assert.assertEquals(Arrays.asList("synonym", "\"One\" EXACT []",
+				"def", "\"Definition\" []", "synonym", "\"Two\" EXACT []"),
+				Arrays.asList(data.getRetainedFields()));
+	}
+
+	@Test
+	public void testLoadedTermsKeepRetainedFields() throws IOException {
+		String obo = SampleTaxonomies.RELEASE1.replace("name: Leaf\n",
+				"name: Leaf\ndef: \"A leaf\" []\ncomment: Dropped\n"
+						+ "synonym: \"Green leaf\" EXACT []\n");
+		for (OBOParser parser : new OBOParser[] { new TextOBOParser(),
+				new MappedOBOParser() }) {
+			AbstractTaxonomy taxonomy = new AbstractTaxonomy() {
+				public String getIDPrefix() {
+					return "HP:";
+				}
+			};
+			taxonomy.setSnapshotsEnabled(false);
+			taxonomy.setParser(parser);
+			taxonomy.setFieldRetentionPolicy(new FieldRetentionPolicy(
+					"synonym"));
+			taxonomy.load(SampleTaxonomies.write(this.folder, parser
+					.getClass().getSimpleName()
+					+ ".obo", obo));
+			TaxonomyTerm leaf = taxonomy.getTerm("HP:0000005");
+			Assert.assertEquals(Arrays.asList("\"Green leaf\" EXACT []"), leaf
+					.getFieldValues("synonym"));
+			Assert.assertEquals(Collections.emptyList(), leaf
+					.getFieldValues("def"));
+			Assert.assertEquals(Collections.emptyList(), leaf
+					.getFieldValues("comment"));
+			Assert.assertEquals(Collections.emptyList(), taxonomy.getTerm(
+					"HP:0000004").getFieldValues("synonym"));
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AncestorClosureTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDense() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		check(dag, DenseAncestorClosure.build(dag.getOrdinalIndex()));
+		dag = SampleDAGs.random(500, 1);
+		check(dag, DenseAncestorClosure.build(dag.getOrdinalIndex()));
+	}
+
+	@Test
+	public void testCompressed() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		check(dag, CompressedAncestorClosure.build(dag.getOrdinalIndex()));
+		dag = SampleDAGs.random(500, 2);
+		check(dag, CompressedAncestorClosure.build(dag.getOrdinalIndex()));
+	}
+
+	@Test
+	public void testOffHeap() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				OffHeapStorage.direct(), "test", null));
+		dag = SampleDAGs.random(500, 3);
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				OffHeapStorage.direct(), "test", null));
+	}
+
+	@Test
+	public void testMapped() {
+		OffHeapStorage storage = OffHeapStorage.mapped(this.folder.getRoot());
+		DAG<DAGNode> dag = SampleDAGs.random(500, 4);
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				storage, "test", null));
+		// Reopened from the file
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				storage, "test", null));
+
+		// Another version of the DAG gets its own file, and the file of the
+		// first version is kept for the processes still using it
+		DAG<DAGNode> other = SampleDAGs.random(500, 4);
+		other.removeNode(other.getOrdinalIndex().getId(other.size() - 1));
+		check(other, OffHeapAncestorClosure.build(other.getOrdinalIndex(),
+				storage, "test", null));
+		Assert.assertEquals(2, this.folder.getRoot().list().length);
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				storage, "test", null));
+
+		// Files left unused for long are deleted
+		File file = new File(this.folder.getRoot(), "test-"
+				+ Long.toHexString(other.getOrdinalIndex().getSignature())
+				+ ".closure");
+		Assert.assertTrue(file.setLastModified(System.currentTimeMillis()
+				- TimeUnit.DAYS.toMillis(60)));
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				storage, "test", null));
+		Assert.assertFalse(file.exists());
+		Assert.assertEquals(1, this.folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testMappedOtherStructure() throws IOException {
+		OffHeapStorage storage = OffHeapStorage.mapped(this.folder.getRoot());
+		DAG<DAGNode> dag = SampleDAGs.random(500, 4);
+		OffHeapAncestorClosure.build(dag.getOrdinalIndex(), storage, "test",
+				null);
+		File file = this.folder.getRoot().listFiles()[0];
+
+		// A file published under the name of another DAG, as if their
+		// signatures collided, is not reused
+		DAG<DAGNode> other = SampleDAGs.random(500, 5);
+		File collision = new File(this.folder.getRoot(), "test-"
+				+ Long.toHexString(other.getOrdinalIndex().getSignature())
+				+ ".closure");
+		FileUtils.copyFile(file, collision);
+		check(other, OffHeapAncestorClosure.build(other.getOrdinalIndex(),
+				storage, "test", null));
+		check(dag, OffHeapAncestorClosure.build(dag.getOrdinalIndex(),
+				storage, "test", null));
+	}
+
+	@Test
+	public void testParallel() {
+		DAG<DAGNode> dag = SampleDAGs.random(3000, 5);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			check(dag, DenseAncestorClosure.build(dag.getOrdinalIndex(), pool));
+			check(dag, CompressedAncestorClosure.build(dag.getOrdinalIndex(),
+					pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testTopologicalOrder() {
+		DAG<DAGNode> dag = SampleDAGs.random(500, 6);
+		OrdinalIndex index = dag.getOrdinalIndex();
+		for (int o = 0; o < index.size(); ++o) {
+			Assert.assertEquals(o, index.getOrdinal(index.getId(o)));
+			Assert.assertEquals(dag.getNode(o).getParents().size(), index
+					.getParents(o).length);
+			for (int parent : index.getParents(o)) {
+				Assert.assertTrue(parent < o);
+			}
+		}
+	}
+
+	@Test
+	public void testPreviousVersion() {
+		DAG<DAGNode> dag = SampleDAGs.random(500, 7);
+		OrdinalIndex before = dag.getOrdinalIndex();
+		DenseAncestorClosure dense = DenseAncestorClosure.build(before);
+		CompressedAncestorClosure compressed = CompressedAncestorClosure
+				.build(before);
+
+		// Remove a node, add one and move one
+		dag.removeNode(before.getId(250));
+		DAGNode added = new DAGNode("N:new");
+		DAGNode parent = dag.getNode(before.getId(100));
+		added.addParent(parent);
+		parent.addChild(added);
+		dag.addNode(added);
+		DAGNode moved = dag.getNode(before.getId(400));
+		for (String parentId : moved.getParents()) {
+			dag.getNode(parentId).removeChild(moved);
+		}
+		moved.getParents().clear();
+		moved.addParent(parent);
+		parent.addChild(moved);
+
+		OrdinalIndex after = dag.getOrdinalIndex();
+		int kept = 0;
+		for (int o = 0; o < after.size(); ++o) {
+			for (int p : after.getParents(o)) {
+				Assert.assertTrue(p < o);
+			}
+			if (o < before.size() && after.getId(o).equals(before.getId(o))) {
+				++kept;
+			}
+		}
+		Assert.assertEquals(after.size() - 1, kept);
+		Assert.assertEquals(250, after.getOrdinal("N:new"));
+
+		check(dag, DenseAncestorClosure.build(after, null, dense));
+		check(dag, CompressedAncestorClosure.build(after, null, compressed));
+	}
+
+	private static void check(DAG<DAGNode> dag, AncestorClosure closure) {
+		Assert.assertNotNull(closure);
+		int size = dag.size();
+		Assert.assertEquals(size, closure.size());
+		BitSet[] expected = new BitSet[size];
+		for (int o = 0; o < size; ++o) {
+			expected[o] = SampleDAGs.getAncestors(dag, o);
+		}
+		for (int o = 0; o < size; ++o) {
+			BitSet ancestors = expected[o];
+			Assert.assertEquals(ancestors.cardinality(), closure
+					.getAncestorCount(o));
+			Assert.assertArrayEquals(SampleDAGs.toArray(ancestors), closure
+					.getAncestors(o));
+			for (int a = 0; a < size; ++a) {
+				Assert.assertEquals(ancestors.get(a), closure.isAncestor(a, o));
+				Assert.assertEquals(ancestors.nextSetBit(a), closure
+						.nextAncestor(o, a));
+			}
+		}
+		for (int o1 = 0; o1 < size; o1 += 7) {
+			for (int o2 = 0; o2 < size; o2 += 3) {
+				BitSet common = (BitSet) expected[o1].clone();
+				common.and(expected[o2]);
+				BitSet union = (BitSet) expected[o1].clone();
+				union.or(expected[o2]);
+				Assert.assertArrayEquals(SampleDAGs.toArray(common), closure
+						.getCommonAncestors(o1, o2));
+				Assert.assertEquals(common.cardinality(), closure
+						.getCommonAncestorCount(o1, o2));
+				Assert.assertEquals(union.cardinality(), closure
+						.getUnionAncestorCount(o1, o2));
+				int from = 0;
+				for (int a = common.nextSetBit(0); a >= 0; a = common
+						.nextSetBit(a + 1)) {
+					Assert.assertEquals(a, closure.nextCommonAncestor(o1, o2,
+							from));
+					from = a + 1;
+				}
+				Assert.assertEquals(-1, closure.nextCommonAncestor(o1, o2,
+						from));
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressedOrdinalSetTest {
+	private static final int CHUNK = 65536;
+
+	/** More values than an array container may hold. */
+	private static final int LARGE = 5000;
+
+	@Test
+	public void testSingleValues() {
+		int[] values = { 0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK - 1,
+				300 * CHUNK };
+		for (int value : values) {
+			CompressedOrdinalSet set = CompressedOrdinalSet.of(value);
+			Assert.assertEquals(1, set.getCardinality());
+			Assert.assertTrue(set.contains(value));
+			Assert.assertFalse(set.contains(value + 1));
+			Assert.assertArrayEquals(new int[] { value }, set.toArray());
+		}
+	}
+
+	@Test
+	public void testChunkBoundaries() {
+		BitSet a = new BitSet(), b = new BitSet();
+		for (int i = CHUNK - 3; i < CHUNK + 3; ++i) {
+			a.set(i);
+		}
+		b.set(CHUNK - 1);
+		b.set(CHUNK);
+		b.set(2 * CHUNK);
+		check(a, b);
+	}
+
+	@Test
+	public void testArrayContainers() {
+		Random random = new Random(1);
+		for (int round = 0; round < 20; ++round) {
+			check(randomSet(random, 3 * CHUNK, 300),
+					randomSet(random, 3 * CHUNK, 300));
+		}
+	}
+
+	@Test
+	public void testBitmapContainers() {
+		Random random = new Random(2);
+		for (int round = 0; round < 5; ++round) {
+			check(randomSet(random, 3 * CHUNK, 3 * LARGE), randomSet(random,
+					3 * CHUNK, 3 * LARGE));
+		}
+	}
+
+	@Test
+	public void testMixedContainers() {
+		Random random = new Random(3);
+		for (int round = 0; round < 10; ++round) {
+			BitSet dense = randomSet(random, 2 * CHUNK, 2 * LARGE);
+			BitSet sparse = randomSet(random, 2 * CHUNK, 100);
+			// A few values in chunks the other set doesn't use
+			sparse.set(5 * CHUNK + round);
+			check(dense, sparse);
+			check(sparse, dense);
+		}
+	}
+
+	@Test
+	public void testUnionPromotedToBitmap() {
+		// Two array containers whose union doesn't fit in an array anymore
+		BitSet even = new BitSet(), odd = new BitSet();
+		for (int i = 0; i < 2 * 3000; i += 2) {
+			even.set(CHUNK + i);
+			odd.set(CHUNK + i + 1);
+		}
+		check(even, odd);
+
+		// Union of single values, the way closures are built
+		CompressedOrdinalSet set = CompressedOrdinalSet.of(0);
+		BitSet expected = new BitSet();
+		expected.set(0);
+		for (int i = 1; i < LARGE; ++i) {
+			set = set.or(CompressedOrdinalSet.of(i * 7));
+			expected.set(i * 7);
+			if (i == 4095 || i == 4096 || i == 4097) {
+				assertContent(expected, set);
+			}
+		}
+		assertContent(expected, set);
+	}
+
+	@Test
+	public void testUnionReusesOperands() {
+		CompressedOrdinalSet large = CompressedOrdinalSet.of(new int[] { 1,
+				2, 3, CHUNK + 1 });
+		CompressedOrdinalSet small = CompressedOrdinalSet.of(new int[] { 2,
+				CHUNK + 1 });
+		Assert.assertSame(large, large.or(small));
+		Assert.assertSame(large, small.or(large));
+	}
+
+	private static BitSet randomSet(Random random, int range, int count) {
+		BitSet result = new BitSet();
+		for (int i = 0; i < count; ++i) {
+			result.set(random.nextInt(range));
+		}
+		return result;
+	}
+
+	private static CompressedOrdinalSet toSet(BitSet bits) {
+		int[] values = new int[bits.cardinality()];
+		for (int i = bits.nextSetBit(0), k = 0; i >= 0; i = bits
+				.nextSetBit(i + 1)) {
+			values[k++] = i;
+		}
+		return CompressedOrdinalSet.of(values);
+	}
+
+	private static void check(BitSet a, BitSet b) {
+		CompressedOrdinalSet setA = toSet(a), setB = toSet(b);
+		assertContent(a, setA);
+		assertContent(b, setB);
+
+		BitSet union = (BitSet) a.clone();
+		union.or(b);
+		assertContent(union, setA.or(setB));
+		assertContent(union, setB.or(setA));
+
+		BitSet intersection = (BitSet) a.clone();
+		intersection.and(b);
+		Assert.assertEquals(intersection.cardinality(), setA
+				.andCardinality(setB));
+		Assert.assertEquals(intersection.cardinality(), setB
+				.andCardinality(setA));
+
+		// Walk the common values, and start from each chunk boundary
+		int found = 0;
+		for (int i = setA.nextCommon(setB, 0); i >= 0; i = setA.nextCommon(
+				setB, i + 1)) {
+			Assert.assertEquals(intersection.nextSetBit(found), i);
+			found = i + 1;
+		}
+		Assert.assertEquals(-1, intersection.nextSetBit(found));
+		for (int from = CHUNK - 1; from < 6 * CHUNK; from += CHUNK - 1) {
+			int expected = intersection.nextSetBit(from);
+			Assert.assertEquals(expected < 0 ? -1 : expected, setA
+					.nextCommon(setB, from));
+			Assert.assertEquals(expected < 0 ? -1 : expected, setB
+					.nextCommon(setA, from));
+		}
+	}
+
+	private static void assertContent(BitSet expected, CompressedOrdinalSet set) {
+		Assert.assertEquals(expected.cardinality(), set.getCardinality());
+		int[] values = set.toArray();
+		Assert.assertEquals(expected.cardinality(), values.length);
+		for (int i = 0, k = expected.nextSetBit(0); i < values.length; ++i, k = expected
+				.nextSetBit(k + 1)) {
+			Assert.assertEquals(k, values[i]);
+			Assert.assertTrue(set.contains(k));
+		}
+		for (int k = expected.nextClearBit(0); k < expected.length() + CHUNK; k = expected
+				.nextClearBit(k + 1)) {
+			if (set.contains(k)) {
+				Assert.fail("Unexpected value " + k);
+			}
+		}
+	}
+}
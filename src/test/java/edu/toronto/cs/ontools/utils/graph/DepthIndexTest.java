@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DepthIndexTest {
+	@Test
+	public void testDiamond() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		DepthIndex depths = new DepthIndex(dag.getOrdinalIndex());
+		check(dag, depths);
+		OrdinalIndex index = dag.getOrdinalIndex();
+		int e = index.getOrdinal("e");
+		int h = index.getOrdinal("h");
+		Assert.assertEquals(2, depths.getMinDepth(e));
+		Assert.assertEquals(3, depths.getMaxDepth(e));
+		Assert.assertEquals(2, depths.getHeight(e));
+		Assert.assertEquals(3, depths.getMinDepth(h));
+		Assert.assertEquals(5, depths.getMaxDepth(h));
+		Assert.assertEquals(0, depths.getHeight(h));
+		Assert.assertEquals(6, depths.getMaxDepthLevelCount());
+		Assert.assertArrayEquals(new int[] { h }, depths.getHeightLevel(0));
+	}
+
+	@Test
+	public void testRandom() {
+		DAG<DAGNode> dag = SampleDAGs.random(500, 7);
+		check(dag, new DepthIndex(dag.getOrdinalIndex()));
+	}
+
+	private static void check(DAG<DAGNode> dag, DepthIndex depths) {
+		OrdinalIndex index = dag.getOrdinalIndex();
+		int size = index.size();
+		Assert.assertSame(index, depths.getIndex());
+
+		// Depths and heights from the node arcs, by increasing ordinals
+		// for the depths and decreasing ordinals for the heights
+		int[] minDepth = new int[size];
+		int[] maxDepth = new int[size];
+		int[] height = new int[size];
+		for (int o = 0; o < size; ++o) {
+			List<String> parents = dag.getNode(o).getParents();
+			minDepth[o] = parents.isEmpty() ? 0 : Integer.MAX_VALUE;
+			for (String parentId : parents) {
+				int p = index.getOrdinal(parentId);
+				minDepth[o] = Math.min(minDepth[o], minDepth[p] + 1);
+				maxDepth[o] = Math.max(maxDepth[o], maxDepth[p] + 1);
+			}
+		}
+		for (int o = size - 1; o >= 0; --o) {
+			for (String childId : dag.getNode(o).getChildren()) {
+				height[o] = Math.max(height[o],
+						height[index.getOrdinal(childId)] + 1);
+			}
+		}
+
+		for (int o = 0; o < size; ++o) {
+			Assert.assertEquals(minDepth[o], depths.getMinDepth(o));
+			Assert.assertEquals(maxDepth[o], depths.getMaxDepth(o));
+			Assert.assertEquals(height[o], depths.getHeight(o));
+		}
+		checkLevels(minDepth, depths.getDepthLevelCount(), new Level() {
+			public int[] get(int level, DepthIndex depths) {
+				return depths.getDepthLevel(level);
+			}
+		}, depths);
+		checkLevels(maxDepth, depths.getMaxDepthLevelCount(), new Level() {
+			public int[] get(int level, DepthIndex depths) {
+				return depths.getMaxDepthLevel(level);
+			}
+		}, depths);
+		checkLevels(height, depths.getHeightLevelCount(), new Level() {
+			public int[] get(int level, DepthIndex depths) {
+				return depths.getHeightLevel(level);
+			}
+		}, depths);
+	}
+
+	private interface Level {
+		int[] get(int level, DepthIndex depths);
+	}
+
+	/**
+	 * Checks that each level holds the nodes with that value, sorted.
+	 */
+	private static void checkLevels(int[] values, int count, Level level,
+			DepthIndex depths) {
+		int max = 0;
+		for (int value : values) {
+			max = Math.max(max, value);
+		}
+		Assert.assertEquals(max + 1, count);
+		for (int l = 0; l < count; ++l) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int o = 0; o < values.length; ++o) {
+				if (values[o] == l) {
+					expected.add(o);
+				}
+			}
+			List<Integer> actual = new ArrayList<Integer>();
+			for (int o : level.get(l, depths)) {
+				actual.add(o);
+			}
+			Assert.assertEquals(expected, actual);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DescendantClosureTest {
+	@Test
+	public void testDiamond() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		DescendantClosure closure = DescendantClosure.build(dag
+				.getOrdinalIndex());
+		check(dag, closure);
+		OrdinalIndex index = dag.getOrdinalIndex();
+		int a = index.getOrdinal("a");
+		int c = index.getOrdinal("c");
+		int h = index.getOrdinal("h");
+		Assert.assertEquals(8, closure.getDescendantCount(a));
+		Assert.assertEquals(5, closure.getDescendantCount(c));
+		Assert.assertEquals(1, closure.getLeafCount());
+		Assert.assertEquals(1, closure.getDescendantLeafCount(a));
+		Assert.assertEquals(0, closure.getIntrinsicIC(a), 1e-9);
+		Assert.assertEquals(1, closure.getIntrinsicIC(h), 1e-9);
+		Assert.assertTrue(closure.getIntrinsicIC(c) > 0
+				&& closure.getIntrinsicIC(c) < 1);
+	}
+
+	@Test
+	public void testRandom() {
+		DAG<DAGNode> dag = SampleDAGs.random(500, 6);
+		check(dag, DescendantClosure.build(dag.getOrdinalIndex()));
+	}
+
+	private static void check(DAG<DAGNode> dag, DescendantClosure closure) {
+		OrdinalIndex index = dag.getOrdinalIndex();
+		int size = index.size();
+		Assert.assertSame(index, closure.getIndex());
+		Assert.assertEquals(size, closure.size());
+
+		// The descendants of a node are the nodes it is an ancestor of
+		BitSet[] expected = new BitSet[size];
+		BitSet leaves = new BitSet();
+		for (int o = 0; o < size; ++o) {
+			expected[o] = new BitSet();
+			if (dag.getNode(o).getChildren().isEmpty()) {
+				leaves.set(o);
+			}
+		}
+		for (int o = 0; o < size; ++o) {
+			BitSet ancestors = SampleDAGs.getAncestors(dag, o);
+			for (int a = ancestors.nextSetBit(0); a >= 0; a = ancestors
+					.nextSetBit(a + 1)) {
+				expected[a].set(o);
+			}
+		}
+		Assert.assertEquals(leaves.cardinality(), closure.getLeafCount());
+		for (int o = 0; o < size; ++o) {
+			Assert.assertArrayEquals(SampleDAGs.toArray(expected[o]), closure
+					.getDescendants(o));
+			Assert.assertEquals(expected[o].cardinality(), closure
+					.getDescendantCount(o));
+			BitSet leafDescendants = (BitSet) expected[o].clone();
+			leafDescendants.and(leaves);
+			Assert.assertEquals(leafDescendants.cardinality(), closure
+					.getDescendantLeafCount(o));
+			for (int d = 0; d < size; d += 5) {
+				Assert.assertEquals(expected[o].get(d), closure.isDescendant(
+						d, o));
+			}
+		}
+		for (int o1 = 0; o1 < size; o1 += 7) {
+			for (int o2 = 0; o2 < size; o2 += 3) {
+				BitSet common = (BitSet) expected[o1].clone();
+				common.and(expected[o2]);
+				Assert.assertEquals(common.cardinality(), closure
+						.getCommonDescendantCount(o1, o2));
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NeighborListTest {
+	@Test
+	public void testRandomChanges() {
+		Random random = new Random(5);
+		for (int round = 0; round < 500; ++round) {
+			NeighborList list = new NeighborList();
+			List<String> expected = new ArrayList<String>();
+			int range = 1 + random.nextInt(40);
+			for (int k = 0; k < 200; ++k) {
+				String id = "N:" + random.nextInt(range);
+				if (random.nextBoolean()) {
+					Assert.assertEquals(!expected.contains(id), list.add(id));
+					if (!expected.contains(id)) {
+						expected.add(id);
+					}
+				} else {
+					Assert.assertEquals(expected.remove(id), list.remove(id));
+				}
+				Assert.assertEquals(expected.contains(id), list.contains(id));
+				Assert.assertEquals(expected.indexOf(id), list.indexOf(id));
+			}
+			Assert.assertEquals(expected, list);
+			Assert.assertEquals(expected, new NeighborList(list));
+		}
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		NeighborList list = new NeighborList();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 30; ++i) {
+			list.add("N:" + i);
+			expected.add("N:" + i);
+		}
+		list.remove("N:4");
+		expected.remove("N:4");
+		Iterator<String> it = list.iterator();
+		while (it.hasNext()) {
+			if (it.next().hashCode() % 3 == 0) {
+				it.remove();
+			}
+		}
+		it = expected.iterator();
+		while (it.hasNext()) {
+			if (it.next().hashCode() % 3 == 0) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(expected, list);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testInsertNotSupported() {
+		new NeighborList().add(0, "N:0");
+	}
+
+	@Test
+	public void testFrozenNodesReadFromIndex() {
+		DAG<DAGNode> dag = SampleDAGs.random(300, 1);
+		List<String> before = describe(dag);
+		dag.freeze();
+		Assert.assertEquals(before, describe(dag));
+		for (DAGNode node : dag.getNodes()) {
+			for (String parentId : node.getParents()) {
+				Assert.assertTrue(node.hasParent(parentId));
+				Assert.assertTrue(dag.getNode(parentId).hasChild(node.getId()));
+			}
+			Assert.assertFalse(node.hasParent(node.getId()));
+			Assert.assertFalse(node.hasParent("unknown"));
+		}
+
+		// Changes copy the arcs out of the index
+		DAG<DAGNode> expected = SampleDAGs.random(300, 1);
+		List<String> removed = Arrays.asList("N:0000010", "N:0000100",
+				"N:0000200");
+		expected.removeNodes(removed);
+		dag.removeNodes(removed);
+		Assert.assertEquals(describe(expected), describe(dag));
+		dag.freeze();
+		Assert.assertEquals(describe(expected), describe(dag));
+	}
+
+	@Test
+	public void testChangeFrozenList() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		dag.freeze();
+		DAGNode h = dag.getNode("h");
+		List<String> copy = new NeighborList((NeighborList) h.getParents());
+		Assert.assertTrue(h.addParent("a"));
+		Assert.assertFalse(h.addParent("f"));
+		Assert.assertEquals(Arrays.asList("f", "g", "a"), h.getParents());
+		Assert.assertEquals(Arrays.asList("f", "g"), copy);
+		Assert.assertTrue(h.removeParent("f"));
+		Assert.assertEquals(Arrays.asList("g", "a"), h.getParents());
+		DAGNode a = dag.getNode("a");
+		a.getChildren().clear();
+		Assert.assertTrue(a.getChildren().isEmpty());
+	}
+
+	@Test
+	public void testLargeFrozenList() {
+		DAG<DAGNode> dag = new DAG<DAGNode>();
+		DAGNode root = new DAGNode("root");
+		dag.addNode(root);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 50; ++i) {
+			DAGNode child = new DAGNode("N:" + i);
+			child.addParent(root);
+			root.addChild(child);
+			dag.addNode(child);
+			expected.add(child.getId());
+		}
+		dag.freeze();
+		List<String> children = dag.getNode("root").getChildren();
+		for (int i = 0; i < 50; ++i) {
+			Assert.assertEquals(i, children.indexOf("N:" + i));
+		}
+		Assert.assertFalse(children.contains("N:50"));
+
+		Assert.assertTrue(children.remove("N:20"));
+		expected.remove("N:20");
+		Assert.assertTrue(children.add("N:50"));
+		expected.add("N:50");
+		Assert.assertEquals(expected, children);
+		for (String id : expected) {
+			Assert.assertEquals(expected.indexOf(id), children.indexOf(id));
+		}
+	}
+
+	private static List<String> describe(DAG<DAGNode> dag) {
+		List<String> result = new ArrayList<String>();
+		for (DAGNode node : dag.getNodes()) {
+			result.add(node.getId() + " " + node.getParents() + " "
+					+ node.getChildren());
+		}
+		return result;
+	}
+}
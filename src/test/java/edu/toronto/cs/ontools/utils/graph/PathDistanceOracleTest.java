@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathDistanceOracleTest {
+	@Test
+	public void testDiamond() {
+		DAG<DAGNode> dag = SampleDAGs.diamond();
+		PathDistanceOracle oracle = dag.getPathDistanceOracle();
+		int e = dag.getOrdinal("e"), h = dag.getOrdinal("h");
+		// Through c rather than through d and b
+		Assert.assertEquals(2, oracle.getAncestorDistance(e, dag
+				.getOrdinal("a")));
+		Assert.assertEquals(3, oracle.getAncestorDistance(h, dag
+				.getOrdinal("a")));
+		Assert.assertEquals(-1, oracle.getAncestorDistance(e, dag
+				.getOrdinal("g")));
+		Assert.assertEquals(0, oracle.getDistance(h, h));
+		Assert.assertEquals(4, oracle.getDistance(dag.getOrdinal("d"), dag
+				.getOrdinal("g")));
+		check(dag);
+	}
+
+	@Test
+	public void testRandom() {
+		check(SampleDAGs.random(400, 1));
+	}
+
+	@Test
+	public void testParallel() {
+		DAG<DAGNode> dag = SampleDAGs.random(2000, 2);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			dag.setTraversalPool(pool);
+			dag.getTraversal().setParallelThreshold(16);
+			check(dag);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void check(DAG<DAGNode> dag) {
+		PathDistanceOracle oracle = dag.getPathDistanceOracle();
+		DepthIndex depths = dag.getDepthIndex();
+		int size = dag.size();
+		int[][] up = new int[size][];
+		for (int o = 0; o < size; ++o) {
+			up[o] = SampleDAGs.getUpDistances(dag, o);
+			for (int a = 0; a < size; ++a) {
+				Assert.assertEquals(up[o][a], oracle.getAncestorDistance(o, a));
+			}
+		}
+		for (int o1 = 0; o1 < size; o1 += 3) {
+			for (int o2 = 0; o2 < size; o2 += 5) {
+				int distance = -1;
+				double similarity = 0;
+				for (int a = 0; a < size; ++a) {
+					if (up[o1][a] >= 0 && up[o2][a] >= 0) {
+						int d = up[o1][a] + up[o2][a];
+						if (distance < 0 || d < distance) {
+							distance = d;
+						}
+						double depth = depths.getMinDepth(a) + 1;
+						similarity = Math.max(similarity, 2 * depth
+								/ (d + 2 * depth));
+					}
+				}
+				Assert.assertEquals(distance, oracle.getDistance(o1, o2));
+				Assert.assertEquals(similarity, oracle.getWuPalmerSimilarity(
+						o1, o2), 1e-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReachabilityIndexTest {
+	@Test
+	public void testDiamond() {
+		check(SampleDAGs.diamond());
+	}
+
+	@Test
+	public void testRandom() {
+		check(SampleDAGs.random(200, 1));
+		check(SampleDAGs.random(1000, 2));
+	}
+
+	@Test
+	public void testAfterRemoval() {
+		DAG<DAGNode> dag = SampleDAGs.random(300, 3);
+		for (int i = 10; i < 300; i += 10) {
+			dag.removeNode(String.format("N:%07d", i));
+		}
+		check(dag);
+	}
+
+	private static void check(DAG<DAGNode> dag) {
+		OrdinalIndex index = dag.getOrdinalIndex();
+		AncestorClosure closure = DenseAncestorClosure.build(index);
+		ReachabilityIndex reachability = ReachabilityIndex.build(index);
+		Assert.assertSame(index, reachability.getIndex());
+		for (int o = 0; o < index.size(); ++o) {
+			for (int a = 0; a < index.size(); ++a) {
+				Assert.assertEquals(closure.isAncestor(a, o), reachability
+						.isAncestor(a, o));
+			}
+		}
+	}
+}
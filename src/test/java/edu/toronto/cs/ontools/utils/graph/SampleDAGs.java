@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package edu.toronto.cs.ontools.utils.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Small DAGs used by the tests, and the reference answers computed on them
+ * by plain breadth-first searches over the node arcs.
+ */
+final class SampleDAGs {
+	private SampleDAGs() {
+	}
+
+	/**
+	 * A root, a diamond with one long and one short side, and a node with
+	 * two unrelated parents.
+	 */
+	public static DAG<DAGNode> diamond() {
+		DAG<DAGNode> dag = new DAG<DAGNode>();
+		String[][] arcs = { { "b", "a" }, { "c", "a" }, { "d", "b" },
+				{ "e", "d" }, { "e", "c" }, { "f", "e" }, { "g", "c" },
+				{ "h", "f" }, { "h", "g" } };
+		List<DAGNode> nodes = new ArrayList<DAGNode>();
+		for (char id = 'a'; id <= 'h'; ++id) {
+			nodes.add(new DAGNode(String.valueOf(id)));
+		}
+		for (String[] arc : arcs) {
+			link(nodes.get(arc[0].charAt(0) - 'a'), nodes.get(arc[1]
+					.charAt(0) - 'a'));
+		}
+		for (DAGNode node : nodes) {
+			dag.addNode(node);
+		}
+		return dag;
+	}
+
+	/**
+	 * A random DAG with one root, where each node has up to three parents
+	 * added before it; nodes are added in reverse order.
+	 */
+	public static DAG<DAGNode> random(int size, long seed) {
+		Random random = new Random(seed);
+		DAGNode[] nodes = new DAGNode[size];
+		for (int i = 0; i < size; ++i) {
+			nodes[i] = new DAGNode(String.format("N:%07d", i));
+			int parents = i == 0 ? 0 : 1 + random.nextInt(3);
+			for (int k = 0; k < parents; ++k) {
+				DAGNode parent = nodes[random.nextInt(i)];
+				if (!nodes[i].hasParent(parent)) {
+					link(nodes[i], parent);
+				}
+			}
+		}
+		DAG<DAGNode> dag = new DAG<DAGNode>();
+		for (int i = size - 1; i >= 0; --i) {
+			dag.addNode(nodes[i]);
+		}
+		return dag;
+	}
+
+	private static void link(DAGNode child, DAGNode parent) {
+		child.addParent(parent);
+		parent.addChild(child);
+	}
+
+	/**
+	 * @return the lengths of the shortest paths from a node up to all the
+	 *         other nodes, {@code -1} for the nodes which are
+	 *         not ancestors of the node
+	 */
+	public static int[] getUpDistances(DAG<DAGNode> dag, int ordinal) {
+		OrdinalIndex index = dag.getOrdinalIndex();
+		int[] result = new int[index.size()];
+		Arrays.fill(result, -1);
+		result[ordinal] = 0;
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		queue.add(ordinal);
+		while (!queue.isEmpty()) {
+			int crt = queue.removeFirst();
+			for (String parentId : dag.getNode(crt).getParents()) {
+				int parent = index.getOrdinal(parentId);
+				if (result[parent] < 0) {
+					result[parent] = result[crt] + 1;
+					queue.add(parent);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the ancestors of a node, including itself
+	 */
+	public static BitSet getAncestors(DAG<DAGNode> dag, int ordinal) {
+		int[] distances = getUpDistances(dag, ordinal);
+		BitSet result = new BitSet();
+		for (int i = 0; i < distances.length; ++i) {
+			if (distances[i] >= 0) {
+				result.set(i);
+			}
+		}
+		return result;
+	}
+
+	public static int[] toArray(BitSet bits) {
+		int[] result = new int[bits.cardinality()];
+		for (int i = bits.nextSetBit(0), k = 0; i >= 0; i = bits
+				.nextSetBit(i + 1)) {
+			result[k++] = i;
+		}
+		return result;
+	}
+}